@@ -1,12 +1,25 @@
 package org.aksw.sessa.candidate;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.aksw.sessa.importing.dictionary.DictionaryInterface;
+import org.aksw.sessa.importing.dictionary.energy.EnergyScoreCache;
 import org.aksw.sessa.query.models.NGramEntryPosition;
 import org.aksw.sessa.query.models.NGramHierarchy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Created by Simon Bordewisch on 08.06.17. Given a mapping of n-grams to URIs, provides a mapping
@@ -14,56 +27,208 @@ import org.aksw.sessa.query.models.NGramHierarchy;
  */
 public class CandidateGenerator {
 
+  private static final Logger log = LoggerFactory.getLogger(CandidateGenerator.class);
+  // orders the positions by their first word, longer n-grams (i.e. ancestors) first
+  private static final Comparator<NGramEntryPosition> COVERING_FIRST = Comparator
+      .comparingInt(NGramEntryPosition::getPosition)
+      .thenComparing(Comparator.comparingInt(NGramEntryPosition::getLength).reversed());
+
   private DictionaryInterface dictionary;
+  private ExecutorService executor;
+  private long timeout;
+  // true if n-grams were skipped in the last call, because the time ran out
+  private boolean partial;
 
   /**
-   * Initialize with a mapping of n-grams to URIs.
+   * Initialize with a mapping of n-grams to URIs. The n-grams are looked up one after another and
+   * without time limit.
    *
    * @param dictionary mapping of n-grams to URIs
    */
   public CandidateGenerator(DictionaryInterface dictionary) {
+    this(dictionary, null, Long.MAX_VALUE);
+  }
+
+  /**
+   * Initialize with a mapping of n-grams to URIs, whose lookups are executed concurrently on the
+   * given executor if the dictionary is thread-safe (see {@link
+   * DictionaryInterface#isThreadSafe()}). N-grams which could not be looked up within the given
+   * time are treated as if the dictionary contained no mapping for them.
+   *
+   * @param dictionary mapping of n-grams to URIs
+   * @param executor executor on which the lookups are executed; null to look up the n-grams one
+   * after another
+   * @param timeout maximum time (in ms) for looking up all n-grams of a hierarchy
+   */
+  public CandidateGenerator(DictionaryInterface dictionary, ExecutorService executor,
+      long timeout) {
     this.dictionary = dictionary;
+    this.executor = executor;
+    this.timeout = timeout;
   }
 
   /**
    * Given a n-gram hierarchy, provides the candidates for all n-grams. In this process, the
-   * children will also be pruned of candidates which already present in their parents.
+   * children will also be pruned of candidates which already present in their parents. The energy
+   * scores are cached for all n-grams of the hierarchy, so every candidate is scored at most once
+   * per energy function. If an executor is given, the n-grams are looked up concurrently.
    *
    * @param nGramHierarchy n-gram hierarchy, for which the candidates should be found
    */
   public Map<NGramEntryPosition, Set<Candidate>> getCandidateMapping(
       NGramHierarchy nGramHierarchy) {
-    Map<NGramEntryPosition, Set<Candidate>> candidateMap = new HashMap<>();
+    return getCandidateMapping(nGramHierarchy, Long.MAX_VALUE);
+  }
+
+  /**
+   * Given a n-gram hierarchy, provides the candidates for all n-grams (see {@link
+   * #getCandidateMapping(NGramHierarchy)}). N-grams which could not be looked up before the given
+   * deadline or within the timeout of this generator are treated as if the dictionary contained no
+   * mapping for them (see {@link #isPartial()}).
+   *
+   * @param nGramHierarchy n-gram hierarchy, for which the candidates should be found
+   * @param deadline point in time (in ms, see {@link System#currentTimeMillis()}) after which no
+   * more n-grams are looked up
+   */
+  public Map<NGramEntryPosition, Set<Candidate>> getCandidateMapping(
+      NGramHierarchy nGramHierarchy, long deadline) {
+    partial = false;
+    long timeoutDeadline = System.currentTimeMillis() + timeout;
+    if (timeoutDeadline < timeout) {
+      // overflow, i.e. no time limit
+      timeoutDeadline = Long.MAX_VALUE;
+    }
+    deadline = Math.min(deadline, timeoutDeadline);
 
     // first iteration: only add to candidateMap
+    Map<NGramEntryPosition, Set<Candidate>> candidateMap;
+    if (executor != null && dictionary.isThreadSafe()) {
+      candidateMap = lookUpConcurrently(nGramHierarchy, deadline);
+    } else {
+      candidateMap = lookUp(nGramHierarchy, deadline);
+    }
+
+    // second iteration: prune from children
+    prune(candidateMap);
+    return candidateMap;
+  }
+
+  /**
+   * Returns true if n-grams were skipped in the last candidate mapping, because they could not be
+   * looked up in time.
+   *
+   * @return true if the last candidate mapping is incomplete
+   */
+  public boolean isPartial() {
+    return partial;
+  }
+
+  /**
+   * Removes every candidate whose URI is also a candidate of an ancestor of its n-gram, i.e. every
+   * URI is only kept at the longest n-grams covering it. For this, the positions of every URI are
+   * collected once and sorted by their first word (longer n-grams first). A position then has an
+   * ancestor with the same URI iff one of the previous positions ends with or after it, so the
+   * candidates are pruned in a single pass instead of comparing all ancestors and descendants.
+   *
+   * @param candidateMap candidates of all n-grams, which are pruned in place
+   */
+  private static void prune(Map<NGramEntryPosition, Set<Candidate>> candidateMap) {
+    Map<String, List<NGramEntryPosition>> positionsByUri = new HashMap<>();
+    for (Entry<NGramEntryPosition, Set<Candidate>> entry : candidateMap.entrySet()) {
+      for (Candidate candidate : entry.getValue()) {
+        List<NGramEntryPosition> positions =
+            positionsByUri.computeIfAbsent(candidate.getUri(), uri -> new ArrayList<>());
+        // the same URI may be found with different keys for one n-gram
+        if (positions.isEmpty() || positions.get(positions.size() - 1) != entry.getKey()) {
+          positions.add(entry.getKey());
+        }
+      }
+    }
+
+    Map<NGramEntryPosition, Set<String>> prunedUris = new HashMap<>();
+    for (Entry<String, List<NGramEntryPosition>> entry : positionsByUri.entrySet()) {
+      List<NGramEntryPosition> positions = entry.getValue();
+      if (positions.size() < 2) {
+        continue;
+      }
+      positions.sort(COVERING_FIRST);
+      int end = 0;
+      for (NGramEntryPosition position : positions) {
+        int positionEnd = position.getPosition() + position.getLength();
+        if (positionEnd <= end) {
+          prunedUris.computeIfAbsent(position, key -> new HashSet<>()).add(entry.getKey());
+        } else {
+          end = positionEnd;
+        }
+      }
+    }
+    for (Entry<NGramEntryPosition, Set<String>> entry : prunedUris.entrySet()) {
+      candidateMap.get(entry.getKey())
+          .removeIf(candidate -> entry.getValue().contains(candidate.getUri()));
+    }
+  }
+
+  private Map<NGramEntryPosition, Set<Candidate>> lookUp(NGramHierarchy nGramHierarchy,
+      long deadline) {
+    Map<NGramEntryPosition, Set<Candidate>> candidateMap = new HashMap<>();
+    EnergyScoreCache cache = new EnergyScoreCache();
     for (NGramEntryPosition nGram : nGramHierarchy.getAllPositions()) {
-      Set<Candidate> nGramMappings;
-      String nGram2 = nGramHierarchy.getNGram(nGram);
-      nGramMappings = dictionary.get(nGram2);
+      Set<Candidate> nGramMappings = null;
+      if (System.currentTimeMillis() < deadline) {
+        nGramMappings = dictionary.get(nGramHierarchy.getNGram(nGram), cache);
+      } else {
+        log.warn("Skipped looking up '{}', as the time for the lookups ran out.",
+            nGramHierarchy.getNGram(nGram));
+        partial = true;
+      }
       if (nGramMappings == null) {
         nGramMappings = new HashSet<>();
       }
       candidateMap.put(nGram, nGramMappings);
     }
+    return candidateMap;
+  }
 
-    // second iteration: prune from children
-    for (NGramEntryPosition parent : candidateMap.keySet()) {
-      for (NGramEntryPosition child : parent.getAllDescendants()) {
-        Set<Candidate> parentCandidates = candidateMap.get(parent);
-        Set<Candidate> childCandidates = candidateMap.get(child);
-        Set<Candidate> tmpPruneSet = new HashSet<>();
-        for (Candidate parentCandidate : parentCandidates) {
-          for (Candidate childCandidate : childCandidates) {
-            if (parentCandidate.getUri().equals(childCandidate.getUri())) {
-              tmpPruneSet.add(childCandidate);
-            }
-          }
+  private Map<NGramEntryPosition, Set<Candidate>> lookUpConcurrently(
+      NGramHierarchy nGramHierarchy, long deadline) {
+    // the cache is thread-safe, so the scores are still shared by all n-grams
+    EnergyScoreCache cache = new EnergyScoreCache();
+    Map<NGramEntryPosition, Future<Set<Candidate>>> futures = new LinkedHashMap<>();
+    for (NGramEntryPosition nGram : nGramHierarchy.getAllPositions()) {
+      String nGramString = nGramHierarchy.getNGram(nGram);
+      // submitted instead of supplied asynchronously, so that cancelling interrupts the lookup
+      futures.put(nGram, executor.submit(() -> dictionary.get(nGramString, cache)));
+    }
+
+    Map<NGramEntryPosition, Set<Candidate>> candidateMap = new HashMap<>();
+    for (Entry<NGramEntryPosition, Future<Set<Candidate>>> future : futures.entrySet()) {
+      Set<Candidate> nGramMappings = null;
+      try {
+        if (!Thread.currentThread().isInterrupted()) {
+          long remaining = Math.max(0, deadline - System.currentTimeMillis());
+          nGramMappings = future.getValue().get(remaining, TimeUnit.MILLISECONDS);
         }
-        childCandidates.removeAll(tmpPruneSet);
-        candidateMap.put(child, childCandidates);
+      } catch (TimeoutException e) {
+        partial = true;
+        log.warn("Gave up on looking up '{}', as the time for the lookups ran out.",
+            nGramHierarchy.getNGram(future.getKey()));
+      } catch (ExecutionException e) {
+        log.error("Could not look up '{}': {}", nGramHierarchy.getNGram(future.getKey()),
+            e.getCause().getLocalizedMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        log.warn("Interrupted while looking up the n-grams.");
+      }
+      if (nGramMappings == null) {
+        // interrupts the lookup, so that it does not keep a thread of the executor busy
+        future.getValue().cancel(true);
+        nGramMappings = new HashSet<>();
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        partial = true;
       }
+      candidateMap.put(future.getKey(), nGramMappings);
     }
     return candidateMap;
   }
-
 }
@@ -1,13 +1,17 @@
 package org.aksw.sessa.colorspreading;
 
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.stream.IntStream;
+import org.aksw.sessa.helper.graph.CompactGraph;
 import org.aksw.sessa.helper.graph.GraphInterface;
 import org.aksw.sessa.helper.graph.Node;
 import org.aksw.sessa.helper.graph.SelfBuildingGraph;
 import org.aksw.sessa.candidate.Candidate;
+import org.aksw.sessa.importing.config.ConfigurationInitializer;
 import org.aksw.sessa.query.models.NGramEntryPosition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,11 +26,31 @@ public class ColorSpreader {
 
 
   private static final Logger log = LoggerFactory.getLogger(ColorSpreader.class);
-  private GraphInterface graph;
-  private Set<Node> lastActivatedNodes;
-  private Set<Node> activatedNodes;
-  private Set<Node> resultNodes;
+  private static final byte UNKNOWN = 0;
+  private static final byte MERGEABLE = 1;
+  private static final byte NOT_MERGEABLE = 2;
+  private static final String PARALLEL_THRESHOLD_KEY = "colorspreading.parallel.frontier_size";
+  private static final int DEFAULT_PARALLEL_THRESHOLD = 256;
+  private CompactGraph graph;
+  // IDs (see CompactGraph#getId(Node)) of the nodes activated in the last step, of all activated
+  // nodes and of the nodes with the highest explanation score
+  private BitSet lastActivatedNodes;
+  private BitSet activatedNodes;
+  private BitSet resultNodes;
   private int bestExplanation;
+  // Minimum number of candidates of an activation step which are checked in parallel
+  private int parallelThreshold;
+  // true if the spreading was stopped by the deadline
+  private boolean partial;
+
+  /*
+   * State derived from the graph, which is rebuilt if the graph was changed (e.g. expanded), see
+   * synchronizeWithGraph(): the number of neighbors with explanation and energy score > 0 per node
+   * and if the colors of a node can be combined with the ones of its neighbors (computed lazily).
+   */
+  private int graphModifications = -1;
+  private int[] activeNeighbors;
+  private byte[] mergeability;
 
   /**
    * Constructs the initial graph in colorspreader with the given candidate mapping.
@@ -34,14 +58,53 @@ public class ColorSpreader {
    * @param nGramMapping provides the mapping (reverse dictionary) of n-grams to candidates
    */
   public ColorSpreader(Map<NGramEntryPosition, Set<Candidate>> nGramMapping) {
-    lastActivatedNodes = new HashSet<>();
-    activatedNodes = new HashSet<>(lastActivatedNodes);
-    resultNodes = new HashSet<>();
+    parallelThreshold = getParallelThresholdFromConfig();
+    lastActivatedNodes = new BitSet();
+    activatedNodes = new BitSet();
+    resultNodes = new BitSet();
     bestExplanation = -1;
     graph = new SelfBuildingGraph();
     initializeWithEmptyGraph(nGramMapping);
   }
 
+  /**
+   * Constructs the color spreader for the given graph, e.g. a graph which was built beforehand.
+   * All nodes with colors which are no fact nodes are activated initially.
+   *
+   * @param graph graph whose colors should be spread
+   */
+  public ColorSpreader(CompactGraph graph) {
+    parallelThreshold = getParallelThresholdFromConfig();
+    lastActivatedNodes = new BitSet();
+    resultNodes = new BitSet();
+    bestExplanation = -1;
+    this.graph = graph;
+    graph.updateNodes();
+    for (int id = 0; id < graph.getNodeCount(); id++) {
+      if (!graph.isFactNode(id) && !graph.getNode(id).getColors().isEmpty()) {
+        lastActivatedNodes.set(id);
+      }
+    }
+    activatedNodes = (BitSet) lastActivatedNodes.clone();
+    updateResult();
+  }
+
+  private static int getParallelThresholdFromConfig() {
+    return ConfigurationInitializer.getConfiguration()
+        .getInt(PARALLEL_THRESHOLD_KEY, DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * Sets the minimum number of candidates (i.e. not yet activated neighbors of the nodes activated
+   * in the last step) for which an activation step checks the candidates in parallel. The result
+   * does not depend on this. Values smaller than 1 disable the parallel checks.
+   *
+   * @param parallelThreshold minimum number of candidates which are checked in parallel
+   */
+  public void setParallelThreshold(int parallelThreshold) {
+    this.parallelThreshold = parallelThreshold;
+  }
+
   /**
    * First step in color-spreading process. Sets the initial explanation scores of the mapped nodes
    *
@@ -56,11 +119,11 @@ public class ColorSpreader {
         if (graph.containsNode(node)) {
           node.newId();
         }
-        lastActivatedNodes.add(node);
         graph.addNode(node);
+        lastActivatedNodes.set(graph.getId(node));
       }
     }
-    activatedNodes.addAll(lastActivatedNodes);
+    activatedNodes.or(lastActivatedNodes);
     updateResult();
   }
 
@@ -70,20 +133,30 @@ public class ColorSpreader {
    */
   private void updateResult() {
     log.debug("Starting Update process for explanation score. {} nodes to check.",
-        lastActivatedNodes.size());
-    for (Node node : lastActivatedNodes) {
-      if (!node.isFactNode()) {
-        log.debug("Checking explanation of node {}", node);
-        if (node.getExplanation() >= bestExplanation) {
-          log.debug("Node has best explanation.");
-          if (node.getExplanation() > bestExplanation) {
-            log.debug(
-                "Node has best explanation score yet. Clearing old result set and updating best explanation.");
-            resultNodes.clear();
-            bestExplanation = node.getExplanation();
-          }
-          resultNodes.add(node);
+        lastActivatedNodes.cardinality());
+    for (int id = lastActivatedNodes.nextSetBit(0); id >= 0;
+        id = lastActivatedNodes.nextSetBit(id + 1)) {
+      updateResult(id);
+    }
+  }
+
+  /**
+   * Adds the given node to the result set if it has the highest explanation score yet.
+   *
+   * @param id ID of the node which was activated
+   */
+  private void updateResult(int id) {
+    if (!graph.isFactNode(id)) {
+      log.debug("Checking explanation of node {}", graph.getNode(id));
+      if (graph.getExplanation(id) >= bestExplanation) {
+        log.debug("Node has best explanation.");
+        if (graph.getExplanation(id) > bestExplanation) {
+          log.debug(
+              "Node has best explanation score yet. Clearing old result set and updating best explanation.");
+          resultNodes.clear();
+          bestExplanation = graph.getExplanation(id);
         }
+        resultNodes.set(id);
       }
     }
   }
@@ -92,101 +165,233 @@ public class ColorSpreader {
    * Returns result set, containing all nodes with the highest explanation score.
    */
   public Set<Node> getResult() {
-    return resultNodes;
+    Set<Node> result = new HashSet<>();
+    for (int id = resultNodes.nextSetBit(0); id >= 0; id = resultNodes.nextSetBit(id + 1)) {
+      result.add(graph.getNode(id));
+    }
+    return result;
   }
 
   /**
-   * Updates the scores of a given node based on their neighbours
+   * Returns the new energy score of the given node, i.e. the sum of the energy scores of its
+   * neighbors.
    *
-   * @param node node which should be updated
+   * @param node ID of the node which should be updated
+   * @return new energy score of the node
    */
-  private void updateNode(Node node) {
+  private int computeEnergy(int node) {
     int energy = 0;
-    for (Node neighbor : graph.getAllNeighbors(node)) {
-      energy += neighbor.getEnergy();
+    int neighborCount = graph.getNeighborCount(node);
+    for (int i = 0; i < neighborCount; i++) {
+      energy += graph.getEnergy(graph.getNeighbor(node, i));
+    }
+    return energy;
+  }
+
+  /**
+   * Sets the energy score of the given node. If the node becomes active (or inactive) by this, the
+   * counters of its neighbors are updated.
+   *
+   * @param node ID of the node which should be updated
+   * @param energy new energy score of the node
+   */
+  private void updateNode(int node, int energy) {
+    int neighborCount = graph.getNeighborCount(node);
+    boolean wasActive = isActive(node);
+    graph.setEnergy(node, energy);
+    if (wasActive != isActive(node)) {
+      int change = wasActive ? -1 : 1;
+      for (int i = 0; i < neighborCount; i++) {
+        activeNeighbors[graph.getNeighbor(node, i)] += change;
+      }
+    }
+  }
+
+  /**
+   * Returns true if the given node has an explanation and an energy score greater than 0, i.e. if
+   * it counts for the minimum activation criterion of its neighbors.
+   */
+  private boolean isActive(int node) {
+    return graph.getExplanation(node) > 0 && graph.getEnergy(node) > 0;
+  }
+
+  /**
+   * Expands the graph (see {@link CompactGraph#expand(long)}) until it cannot be expanded any
+   * further or the given deadline is reached. The expansion is also bounded by the graph, e.g. by
+   * the maximum number of rounds and the deadline of a {@link SelfBuildingGraph}.
+   *
+   * @param deadline point in time (in ms) after which the graph should not be further expanded
+   */
+  private void expandGraph(long deadline) {
+    int rounds = 0;
+    while (graph.expand(deadline)) {
+      rounds++;
+    }
+    if (rounds > 0) {
+      log.debug("Expanded graph in {} rounds to {} nodes.", rounds, graph.getNodeCount());
+    }
+    synchronizeWithGraph();
+  }
+
+  /**
+   * Rebuilds the counters of active neighbors and forgets the mergeability of the nodes if the
+   * graph was changed since they were built.
+   */
+  private void synchronizeWithGraph() {
+    if (graphModifications != graph.getModificationCount()) {
+      graphModifications = graph.getModificationCount();
+      int nodeCount = graph.getNodeCount();
+      activeNeighbors = new int[nodeCount];
+      mergeability = new byte[nodeCount];
+      for (int node = 0; node < nodeCount; node++) {
+        if (isActive(node)) {
+          int neighborCount = graph.getNeighborCount(node);
+          for (int i = 0; i < neighborCount; i++) {
+            activeNeighbors[graph.getNeighbor(node, i)]++;
+          }
+        }
+      }
     }
-    node.setEnergy(energy);
   }
 
   /**
    * Makes one step of the spreading activation algorithm. Mainly checks neighbors of nodes which
    * where activated in the last step for the activation criteria and updates their scores if they
-   * fulfill those.
+   * fulfill those. All candidates are checked against the state after the last step, i.e. nodes
+   * activated in this step do not affect the other candidates until the next step. Therefore the
+   * candidates can be checked in parallel (if there are enough of them), while the updates are
+   * applied afterwards in the order of the node IDs. The activation criteria are looked up in the
+   * counters and the cached mergeability instead of checking the neighbors of every candidate
+   * again.
    *
    * @return true if at least one node was updated (i.e. it got a new color)
    */
   private boolean makeActivationStep() {
-    Set<Node> updatedLastActivatedNodes = new HashSet<>();
-    log.debug("Checking if new nodes can be activated. Number of Candidates: {}",
-        lastActivatedNodes.size());
-    for (Node node : lastActivatedNodes) {
-      Set<Node> neighbors = graph.getAllNeighbors(node);
-      for (Node neighbor : neighbors) {
-        log.debug("Checking if following node can be activated:{}", neighbor);
-        boolean fulfillsMinimumActivationCriterion = true;
-
-        /* We are considering neighbors of already activated nodes,
-         * therefore only fact nodes could potentially not fulfill the
-         * minimum activation criterion.
-         */
-        if (neighbor.isFactNode()) {
-          Set<Node> neighborsOfFactNode = graph.getAllNeighbors(neighbor);
-          int countActivated = 0;
-          for (Node factNodeNeighbor : neighborsOfFactNode) {
-            if (factNodeNeighbor.getExplanation() > 0 && factNodeNeighbor.getEnergy() > 0) {
-              countActivated++;
-            }
-          }
-          if (countActivated < 2) {
-            fulfillsMinimumActivationCriterion = false;
-          }
-        }
-        if (fulfillsMinimumActivationCriterion &&
-            colorsCanBeCombined(neighbor) &&
-            !activatedNodes.contains(neighbor)) {
-          log.debug("Node can be updated");
-          updateNode(neighbor);
-          updatedLastActivatedNodes.add(neighbor);
+    BitSet candidateNodes = new BitSet();
+    for (int node = lastActivatedNodes.nextSetBit(0); node >= 0;
+        node = lastActivatedNodes.nextSetBit(node + 1)) {
+      int neighborCount = graph.getNeighborCount(node);
+      for (int i = 0; i < neighborCount; i++) {
+        int neighbor = graph.getNeighbor(node, i);
+        if (!activatedNodes.get(neighbor)) {
+          candidateNodes.set(neighbor);
         }
       }
     }
+    int[] candidates = candidateNodes.stream().toArray();
+    log.debug("Checking if new nodes can be activated. Number of Candidates: {}",
+        candidates.length);
+
+    boolean[] canBeActivated = new boolean[candidates.length];
+    int[] energies = new int[candidates.length];
+    IntStream indices = IntStream.range(0, candidates.length);
+    if (parallelThreshold > 0 && candidates.length >= parallelThreshold) {
+      indices = indices.parallel();
+    }
+    indices.forEach(i -> {
+      canBeActivated[i] = canBeActivated(candidates[i]);
+      if (canBeActivated[i]) {
+        energies[i] = computeEnergy(candidates[i]);
+      }
+    });
+
+    BitSet updatedLastActivatedNodes = new BitSet();
+    for (int i = 0; i < candidates.length; i++) {
+      if (canBeActivated[i]) {
+        updateNode(candidates[i], energies[i]);
+        activatedNodes.set(candidates[i]);
+        updatedLastActivatedNodes.set(candidates[i]);
+        updateResult(candidates[i]);
+      }
+    }
     lastActivatedNodes = updatedLastActivatedNodes;
-    activatedNodes.addAll(lastActivatedNodes);
-    updateResult();
     return !lastActivatedNodes.isEmpty();
 
   }
 
   /**
-   * Checks if the given node can combine the colors of the neighbors.
+   * Checks if the given node fulfills the activation criteria.
    *
-   * @param node Node to check the criterion for
+   * @param node ID of the node which is a neighbor of a node activated in the last step
+   * @return true if the node can be activated
+   */
+  private boolean canBeActivated(int node) {
+    log.debug("Checking if following node can be activated:{}", graph.getNode(node));
+
+    /* We are considering neighbors of already activated nodes,
+     * therefore only fact nodes could potentially not fulfill the
+     * minimum activation criterion.
+     */
+    boolean fulfillsMinimumActivationCriterion =
+        !graph.isFactNode(node) || activeNeighbors[node] >= 2;
+    if (fulfillsMinimumActivationCriterion && colorsCanBeCombined(node)) {
+      log.debug("Node can be updated");
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Checks if the given node can combine the colors of the neighbors. The result is kept until the
+   * graph is changed.
+   *
+   * @param node ID of the node to check the criterion for
    * @return true if the colors can be combined
    */
-  private boolean colorsCanBeCombined(Node node) {
-    Set<Node> neighbors = graph.getAllNeighbors(node);
-    for (Node neighbor : neighbors) {
-      if (!node.colorsAreMergeable(neighbor.getColors())) {
-        log.debug("Nodes {} and {} cannot combine colors.", node, neighbor);
-        return false;
+  private boolean colorsCanBeCombined(int node) {
+    if (mergeability[node] == UNKNOWN) {
+      int neighborCount = graph.getNeighborCount(node);
+      byte nodeMergeability = MERGEABLE;
+      for (int i = 0; i < neighborCount && nodeMergeability == MERGEABLE; i++) {
+        int neighbor = graph.getNeighbor(node, i);
+        if (!graph.colorsAreMergeable(node, neighbor)) {
+          log.debug("Nodes {} and {} cannot combine colors.", graph.getNode(node),
+              graph.getNode(neighbor));
+          nodeMergeability = NOT_MERGEABLE;
+        }
       }
+      mergeability[node] = nodeMergeability;
     }
-    return true;
+    return mergeability[node] == MERGEABLE;
   }
 
   /**
    * Spreads colors until there are no changes, i.e. it repeats the activation step until no node
-   * was updated.
+   * was updated. Before every step, the graph is expanded as far as possible, so accessing the
+   * neighbors during the steps does not change the graph.
    *
    * @return the nodes with the highest explanation score
    */
   public Set<Node> spreadColors() {
+    return spreadColors(Long.MAX_VALUE);
+  }
+
+  /**
+   * Spreads colors until there are no changes (see {@link #spreadColors()}). If the given deadline
+   * is reached, the graph is not expanded any further and the result is marked as partial (see
+   * {@link #isPartial()}). The colors are still spread over the graph expanded until then, as the
+   * expansion may have used up the whole time and the activation steps do not query any triple
+   * source.
+   *
+   * @param deadline point in time (in ms, see {@link System#currentTimeMillis()}) after which no
+   * more graph expansions are started
+   * @return the nodes with the highest explanation score
+   */
+  public Set<Node> spreadColors(long deadline) {
     boolean colorsHaveSpread = true;
     int activationSteps = 0;
     while (colorsHaveSpread) {
       activationSteps++;
       log.debug("Starting new activation step (#{}).", activationSteps);
-      log.debug("\tNumber of nodes in graph: {}", graph.getNodes().size());
+      if (!partial) {
+        expandGraph(deadline);
+        if (System.currentTimeMillis() >= deadline) {
+          log.warn("Deadline reached after {} steps, spreading the colors without expanding the "
+              + "graph any further.", activationSteps - 1);
+          partial = true;
+        }
+      }
+      log.debug("\tNumber of nodes in graph: {}", graph.getNodeCount());
       colorsHaveSpread = makeActivationStep();
     }
     log.debug("Spreading colors completed");
@@ -195,6 +400,16 @@ public class ColorSpreader {
     return getResult();
   }
 
+  /**
+   * Returns true if the color spreading was stopped by the deadline, i.e. if the result only
+   * contains the nodes with the highest explanation score found until then.
+   *
+   * @return true if the result is partial
+   */
+  public boolean isPartial() {
+    return partial;
+  }
+
   /**
    * Returns build graph with all updates.
    *
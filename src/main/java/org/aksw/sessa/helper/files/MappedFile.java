@@ -0,0 +1,140 @@
+package org.aksw.sessa.helper.files;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Provides read-only access to a memory-mapped file of arbitrary size. As a single mapped buffer
+ * is limited to 2 GB, the file is mapped in chunks of 1 GB. Values of primitive types are read in
+ * big-endian order (i.e. as written by {@link java.io.DataOutputStream}) and must be aligned to
+ * their size, so that they do not cross the border of a chunk.
+ *
+ * <p>All read methods use absolute positions, therefore instances of this class can be used by
+ * multiple threads at the same time.</p>
+ */
+public class MappedFile implements AutoCloseable {
+
+  private static final int CHUNK_BITS = 30;
+  private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+  private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer[] chunks;
+  private final long size;
+
+  /**
+   * Maps the given file into memory.
+   *
+   * @param path path of the file
+   * @throws IOException if the file could not be opened or mapped
+   */
+  public MappedFile(Path path) throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+    size = channel.size();
+    chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+    for (int i = 0; i < chunks.length; i++) {
+      long start = i * CHUNK_SIZE;
+      chunks[i] = channel.map(MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+    }
+  }
+
+  /**
+   * Returns the size of the file in bytes.
+   *
+   * @return size of the file in bytes
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns the byte at the given position.
+   *
+   * @param position position in the file
+   * @return byte at the given position
+   */
+  public byte get(long position) {
+    return chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & CHUNK_MASK));
+  }
+
+  /**
+   * Returns the int at the given (4-byte aligned) position.
+   *
+   * @param position position in the file
+   * @return int at the given position
+   */
+  public int getInt(long position) {
+    return chunks[(int) (position >>> CHUNK_BITS)].getInt((int) (position & CHUNK_MASK));
+  }
+
+  /**
+   * Returns the float at the given (4-byte aligned) position.
+   *
+   * @param position position in the file
+   * @return float at the given position
+   */
+  public float getFloat(long position) {
+    return chunks[(int) (position >>> CHUNK_BITS)].getFloat((int) (position & CHUNK_MASK));
+  }
+
+  /**
+   * Returns the long at the given (8-byte aligned) position.
+   *
+   * @param position position in the file
+   * @return long at the given position
+   */
+  public long getLong(long position) {
+    return chunks[(int) (position >>> CHUNK_BITS)].getLong((int) (position & CHUNK_MASK));
+  }
+
+  /**
+   * Decodes the UTF-8 encoded string with the given position and length.
+   *
+   * @param position position of the first byte of the string
+   * @param length number of bytes of the string
+   * @return decoded string
+   */
+  public String getString(long position, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = get(position + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Compares the bytes with the given position and length lexicographically (as unsigned values)
+   * to the given bytes.
+   *
+   * @param position position of the first byte
+   * @param length number of bytes to be compared
+   * @param other bytes to be compared with
+   * @return negative value, zero or positive value if the bytes in this file are less than, equal
+   * to or greater than the given bytes
+   */
+  public int compare(long position, int length, byte[] other) {
+    int min = Math.min(length, other.length);
+    for (int i = 0; i < min; i++) {
+      int diff = (get(position + i) & 0xFF) - (other[i] & 0xFF);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return length - other.length;
+  }
+
+  /**
+   * Closes the file. The mapped buffers are released as soon as they are garbage collected.
+   *
+   * @throws IOException if the file could not be closed
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,554 @@
+package org.aksw.sessa.helper.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.aksw.sessa.helper.graph.exception.NodeNotFoundException;
+import org.aksw.sessa.query.models.ColorMask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a graph, in which every node gets a dense ID (in the order in which the
+ * nodes were added). The edges are appended to primitive arrays and, once the neighbors are
+ * requested, sorted into adjacency arrays in compressed sparse row format, i.e. the neighbors of
+ * the node with ID {@code i} are stored in {@code neighbors[offsets[i]]} to {@code
+ * neighbors[offsets[i + 1] - 1]}. The neighbors of a node keep the order in which their edges were
+ * added, so edges added later (e.g. while the graph is being expanded) only append neighbors.
+ *
+ * <p>Besides the methods of {@link GraphInterface}, the graph can be traversed via the IDs of the
+ * nodes (see {@link #getNeighborCount(int)} and {@link #getNeighbor(int, int)}) without any
+ * allocation. The energy and explanation scores, the node types and the colors of the nodes are
+ * kept in parallel primitive arrays for this. They are read from the nodes whenever the graph was
+ * changed; changes made to the nodes directly are seen after {@link #updateNodes()}.</p>
+ *
+ * <p>Reading the graph has no side effects apart from building the adjacency arrays, so once the
+ * neighbors were accessed after the last change, the graph can be read concurrently.</p>
+ */
+public class CompactGraph implements GraphInterface {
+
+  private static final Logger log = LoggerFactory.getLogger(CompactGraph.class);
+  private static final int INITIAL_CAPACITY = 16;
+
+  private Map<Node, Integer> ids = new HashMap<>();
+  private Node[] nodes = new Node[INITIAL_CAPACITY];
+  private int nodeCount = 0;
+
+  // edges in the order they were added
+  private Set<Long> edgeKeys = new HashSet<>();
+  private int[] edgeSources = new int[INITIAL_CAPACITY];
+  private int[] edgeTargets = new int[INITIAL_CAPACITY];
+  private int edgeCount = 0;
+
+  // adjacency arrays, built for the given number of nodes and edges
+  private int indexedNodes = -1;
+  private int indexedEdges = -1;
+  private int[] outOffsets;
+  private int[] outNeighbors;
+  private int[] inOffsets;
+  private int[] inNeighbors;
+  private int[] allOffsets;
+  private int[] allNeighbors;
+
+  // attributes of the nodes; the colors of node i are colorMasks[colorStarts[i]] to
+  // colorMasks[colorEnds[i] - 1], unless colorStarts[i] is negative, i.e. the colors cannot be
+  // represented by masks
+  private float[] energies = new float[INITIAL_CAPACITY];
+  private int[] explanations = new int[INITIAL_CAPACITY];
+  private boolean[] factNodes = new boolean[INITIAL_CAPACITY];
+  private long[] wordMasks = new long[INITIAL_CAPACITY];
+  private int[] colorStarts = new int[INITIAL_CAPACITY];
+  private int[] colorEnds = new int[INITIAL_CAPACITY];
+  private long[] colorMasks = new long[INITIAL_CAPACITY];
+  private int colorCount = 0;
+  private int modifications = 0;
+
+  @Override
+  public void addNode(Node node) {
+    if (ids.containsKey(node)) {
+      return;
+    }
+    if (nodeCount == nodes.length) {
+      int capacity = nodes.length * 2;
+      nodes = Arrays.copyOf(nodes, capacity);
+      energies = Arrays.copyOf(energies, capacity);
+      explanations = Arrays.copyOf(explanations, capacity);
+      factNodes = Arrays.copyOf(factNodes, capacity);
+      wordMasks = Arrays.copyOf(wordMasks, capacity);
+      colorStarts = Arrays.copyOf(colorStarts, capacity);
+      colorEnds = Arrays.copyOf(colorEnds, capacity);
+    }
+    ids.put(node, nodeCount);
+    nodes[nodeCount] = node;
+    updateNode(nodeCount);
+    nodeCount++;
+    modifications++;
+  }
+
+  @Override
+  public void addNodes(Set<Node> nodes) {
+    for (Node node : nodes) {
+      addNode(node);
+    }
+  }
+
+  @Override
+  public Set<Node> getNodes() {
+    return Collections.unmodifiableSet(ids.keySet());
+  }
+
+  @Override
+  public boolean containsNode(Node node) {
+    return ids.containsKey(node);
+  }
+
+  /**
+   * Returns the instance of the given node which is stored in this graph.
+   *
+   * @param node node which should be looked up
+   * @return node stored in this graph which is equal to the given one or null
+   */
+  public Node getNode(Node node) {
+    Integer id = ids.get(node);
+    return id == null ? null : nodes[id];
+  }
+
+  /**
+   * Returns the node with the given ID.
+   *
+   * @param id ID of the node
+   * @return node with the given ID
+   */
+  public Node getNode(int id) {
+    return nodes[id];
+  }
+
+  /**
+   * Returns the ID of the given node, i.e. the number of nodes which were added before it.
+   *
+   * @param node node whose ID should be returned
+   * @return ID of the given node or -1 if it is not in this graph
+   */
+  public int getId(Node node) {
+    Integer id = ids.get(node);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns the number of nodes in this graph. The IDs of the nodes are 0 to this number - 1.
+   *
+   * @return number of nodes in this graph
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  @Override
+  public void addEdge(Node from, Node to) {
+    try {
+      if (!containsNode(from)) {
+        throw new NodeNotFoundException(
+            "Edge cannot be added, because the given node '" + from + "' is not in the graph.",
+            from, this);
+      }
+      if (!containsNode(to)) {
+        throw new NodeNotFoundException(
+            "Edge cannot be added, because the given node is not in the graph.", to, this);
+      }
+      addEdge(ids.get(from), ids.get(to));
+    } catch (NodeNotFoundException ex) {
+      log.error(ex.getLocalizedMessage());
+      log.error(ex.getGraph().toString());
+    }
+  }
+
+  /**
+   * Adds an edge between the nodes with the given IDs, if it is not already present.
+   *
+   * @param from ID of the node from which the edge leads
+   * @param to ID of the node to which the edge leads
+   */
+  public void addEdge(int from, int to) {
+    if (!edgeKeys.add(((long) from << Integer.SIZE) | to)) {
+      return;
+    }
+    if (edgeCount == edgeSources.length) {
+      edgeSources = Arrays.copyOf(edgeSources, edgeCount * 2);
+      edgeTargets = Arrays.copyOf(edgeTargets, edgeCount * 2);
+    }
+    edgeSources[edgeCount] = from;
+    edgeTargets[edgeCount] = to;
+    edgeCount++;
+    modifications++;
+  }
+
+  @Override
+  public void addEdges(Map<Node, Set<Node>> edges) {
+    for (Entry<Node, Set<Node>> edgesFromNode : edges.entrySet()) {
+      addEdges(edgesFromNode);
+    }
+  }
+
+  @Override
+  public void addEdges(Entry<Node, Set<Node>> edgesFromNode) {
+    for (Node toNode : edgesFromNode.getValue()) {
+      addEdge(edgesFromNode.getKey(), toNode);
+    }
+  }
+
+  @Override
+  public Map<Node, Set<Node>> getEdges() {
+    Map<Node, Set<Node>> edges = new HashMap<>();
+    for (int i = 0; i < edgeCount; i++) {
+      edges.computeIfAbsent(nodes[edgeSources[i]], node -> new HashSet<>())
+          .add(nodes[edgeTargets[i]]);
+    }
+    return edges;
+  }
+
+  @Override
+  public void addSubGraph(GraphInterface subGraph) {
+    this.addNodes(subGraph.getNodes());
+    this.addEdges(subGraph.getEdges());
+  }
+
+  @Override
+  public Set<Node> getNeighborsLeadingFrom(Node neighborsOf) {
+    index();
+    return toNodes(neighborsOf, outOffsets, outNeighbors);
+  }
+
+  @Override
+  public Set<Node> getNeighborsLeadingTo(Node neighborsOf) {
+    index();
+    return toNodes(neighborsOf, inOffsets, inNeighbors);
+  }
+
+  @Override
+  public Set<Node> getAllNeighbors(Node neighborsOf) {
+    int id = getId(neighborsOf);
+    if (id < 0) {
+      return new HashSet<>();
+    }
+    int count = getNeighborCount(id);
+    Set<Node> neighbors = new HashSet<>();
+    for (int i = 0; i < count; i++) {
+      neighbors.add(nodes[getNeighbor(id, i)]);
+    }
+    return neighbors;
+  }
+
+  private Set<Node> toNodes(Node node, int[] offsets, int[] neighbors) {
+    Set<Node> nodeSet = new HashSet<>();
+    Integer id = ids.get(node);
+    if (id != null) {
+      for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+        nodeSet.add(nodes[neighbors[i]]);
+      }
+    }
+    return nodeSet;
+  }
+
+  /**
+   * Returns the number of changes of this graph, i.e. of added nodes and edges and calls of {@link
+   * #updateNodes()}. If this number did not change, the neighbors and attributes of the nodes are
+   * the same, apart from the energy scores set via {@link #setEnergy(int, float)}.
+   *
+   * @return number of changes of this graph
+   */
+  public int getModificationCount() {
+    return modifications;
+  }
+
+  /**
+   * Returns the number of neighbors of the given node, i.e. of all nodes for which an edge either
+   * leads to or originates from the given node (see {@link #getAllNeighbors(Node)}).
+   *
+   * @param id ID of the node
+   * @return number of neighbors of the given node
+   */
+  public int getNeighborCount(int id) {
+    index();
+    return allOffsets[id + 1] - allOffsets[id];
+  }
+
+  /**
+   * Returns the ID of a neighbor of the given node. The neighbors are in the order in which their
+   * edges were added, so the index stays valid if edges are added to the graph.
+   *
+   * @param id ID of the node
+   * @param index index of the neighbor, which must be smaller than {@link #getNeighborCount(int)}
+   * @return ID of the neighbor
+   */
+  public int getNeighbor(int id, int index) {
+    return allNeighbors[allOffsets[id] + index];
+  }
+
+  /**
+   * Expands this graph by one round, e.g. by searching for new nodes. This graph cannot be
+   * expanded, but subclasses may add nodes and edges here.
+   *
+   * @return true if a round was made and the graph may be expanded further
+   * @see SelfBuildingGraph
+   */
+  public boolean expand() {
+    return expand(Long.MAX_VALUE);
+  }
+
+  /**
+   * Expands this graph by one round (see {@link #expand()}), unless the given deadline is reached.
+   *
+   * @param deadline point in time (in ms, see {@link System#currentTimeMillis()}) after which the
+   * graph should not be further expanded
+   * @return true if a round was made and the graph may be expanded further
+   */
+  public boolean expand(long deadline) {
+    return false;
+  }
+
+  /**
+   * Returns the energy score of the given node.
+   *
+   * @param id ID of the node
+   * @return energy score of the given node
+   */
+  public float getEnergy(int id) {
+    return energies[id];
+  }
+
+  /**
+   * Sets the energy score of the given node, also in the node itself.
+   *
+   * @param id ID of the node
+   * @param energy new energy score of the node
+   */
+  public void setEnergy(int id, float energy) {
+    energies[id] = energy;
+    nodes[id].setEnergy(energy);
+  }
+
+  /**
+   * Returns the explanation score of the given node.
+   *
+   * @param id ID of the node
+   * @return explanation score of the given node
+   */
+  public int getExplanation(int id) {
+    return explanations[id];
+  }
+
+  /**
+   * Returns true if the given node is a fact node.
+   *
+   * @param id ID of the node
+   * @return true if the given node is a fact node
+   */
+  public boolean isFactNode(int id) {
+    return factNodes[id];
+  }
+
+  /**
+   * Checks if the colors of the given nodes are mergeable (see {@link
+   * Node#colorsAreMergeable(Node)}).
+   *
+   * @param id ID of a node
+   * @param otherId ID of the other node
+   * @return true if the colors of the nodes are mergeable
+   */
+  public boolean colorsAreMergeable(int id, int otherId) {
+    if (colorStarts[id] < 0 || colorStarts[otherId] < 0) {
+      return nodes[id].colorsAreMergeable(nodes[otherId]);
+    }
+    if (!ColorMask.isOverlapping(wordMasks[id], wordMasks[otherId])) {
+      return true;
+    }
+    for (int i = colorStarts[id]; i < colorEnds[id]; i++) {
+      for (int k = colorStarts[otherId]; k < colorEnds[otherId]; k++) {
+        if (!ColorMask.isMergeable(colorMasks[i], colorMasks[k])) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the scores, types and colors of all nodes again, e.g. after they were changed directly.
+   */
+  public void updateNodes() {
+    readNodes();
+    modifications++;
+  }
+
+  private void readNodes() {
+    colorCount = 0;
+    for (int id = 0; id < nodeCount; id++) {
+      updateNode(id);
+    }
+  }
+
+  private void updateNode(int id) {
+    Node node = nodes[id];
+    energies[id] = node.getEnergy();
+    explanations[id] = node.getExplanation();
+    factNodes[id] = node.isFactNode();
+    long[] masks = node.getColorMasks();
+    if (masks == null) {
+      colorStarts[id] = -1;
+      return;
+    }
+    if (colorCount + masks.length > colorMasks.length) {
+      colorMasks = Arrays.copyOf(colorMasks, Math.max(colorMasks.length * 2,
+          colorCount + masks.length));
+    }
+    System.arraycopy(masks, 0, colorMasks, colorCount, masks.length);
+    colorStarts[id] = colorCount;
+    colorCount += masks.length;
+    colorEnds[id] = colorCount;
+    wordMasks[id] = node.getWordMask();
+  }
+
+  /**
+   * Builds the adjacency arrays if nodes or edges were added since they were built last.
+   */
+  private void index() {
+    if (indexedNodes == nodeCount && indexedEdges == edgeCount) {
+      return;
+    }
+    readNodes();
+    outOffsets = new int[nodeCount + 1];
+    outNeighbors = new int[edgeCount];
+    sort(edgeSources, edgeTargets, outOffsets, outNeighbors);
+    inOffsets = new int[nodeCount + 1];
+    inNeighbors = new int[edgeCount];
+    sort(edgeTargets, edgeSources, inOffsets, inNeighbors);
+
+    // the neighbors in both directions, without duplicates
+    int[] offsets = new int[nodeCount + 1];
+    for (int i = 0; i < edgeCount; i++) {
+      offsets[edgeSources[i] + 1]++;
+      offsets[edgeTargets[i] + 1]++;
+    }
+    for (int id = 0; id < nodeCount; id++) {
+      offsets[id + 1] += offsets[id];
+    }
+    int[] neighbors = new int[2 * edgeCount];
+    int[] next = Arrays.copyOf(offsets, nodeCount);
+    for (int i = 0; i < edgeCount; i++) {
+      neighbors[next[edgeSources[i]]++] = edgeTargets[i];
+      neighbors[next[edgeTargets[i]]++] = edgeSources[i];
+    }
+    allOffsets = new int[nodeCount + 1];
+    int[] lastSeen = new int[nodeCount];
+    Arrays.fill(lastSeen, -1);
+    int count = 0;
+    for (int id = 0; id < nodeCount; id++) {
+      allOffsets[id] = count;
+      for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+        if (lastSeen[neighbors[i]] != id) {
+          lastSeen[neighbors[i]] = id;
+          neighbors[count++] = neighbors[i];
+        }
+      }
+    }
+    allOffsets[nodeCount] = count;
+    allNeighbors = Arrays.copyOf(neighbors, count);
+    indexedNodes = nodeCount;
+    indexedEdges = edgeCount;
+  }
+
+  /**
+   * Sorts the edges by the given keys (keeping the order of the edges for every key) into the
+   * given adjacency arrays.
+   */
+  private void sort(int[] keys, int[] values, int[] offsets, int[] sorted) {
+    for (int i = 0; i < edgeCount; i++) {
+      offsets[keys[i] + 1]++;
+    }
+    for (int id = 0; id < nodeCount; id++) {
+      offsets[id + 1] += offsets[id];
+    }
+    int[] next = Arrays.copyOf(offsets, nodeCount);
+    for (int i = 0; i < edgeCount; i++) {
+      sorted[next[keys[i]]++] = values[i];
+    }
+  }
+
+  @Override
+  public Graph findPathsToNodes(Set<Node> nodes) {
+    Graph pathsGraph = new Graph();
+    for (Node node : nodes) {
+      try {
+        if (!this.containsNode(node)) {
+          throw new NodeNotFoundException(
+              "Given node '" + node.getContent().toString() + "' is not in graph.");
+        }
+        pathsGraph.addNode(node);
+        Set<Node> neighbors = this.getNeighborsLeadingTo(node);
+        for (Node neighbor : neighbors) {
+          pathsGraph.addNode(neighbor);
+          pathsGraph.addEdge(neighbor, node);
+        }
+        Graph subGraph = findPathsToNodes(neighbors);
+        pathsGraph.addSubGraph(subGraph);
+      } catch (NodeNotFoundException ex) {
+        log.error(ex.getLocalizedMessage());
+        log.error("Skipping node.");
+      }
+    }
+    return pathsGraph;
+  }
+
+  @Override
+  public Graph findPathsToNode(Node node) {
+    Set<Node> nodes = new HashSet<>();
+    nodes.add(node);
+    return findPathsToNodes(nodes);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("Nodes:\n");
+    for (int id = 0; id < nodeCount; id++) {
+      sb.append("\t");
+      sb.append(nodes[id].toString());
+      sb.append("\n");
+    }
+    sb.append("Edges:\n");
+    for (int i = 0; i < edgeCount; i++) {
+      sb.append("\t");
+      sb.append(nodes[edgeSources[i]].getContent().toString());
+      sb.append(" -> ");
+      sb.append(nodes[edgeTargets[i]].getContent().toString());
+      sb.append("\n");
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String asDOTFormat(String graphName) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("digraph ");
+    sb.append(graphName);
+    sb.append("\n{");
+    for (int i = 0; i < edgeCount; i++) {
+      sb.append("\t\"");
+      sb.append(nodes[edgeSources[i]].getContent().toString());
+      sb.append("\" -> \"");
+      sb.append(nodes[edgeTargets[i]].getContent().toString());
+      sb.append("\";\n");
+    }
+    sb.append("}");
+    return sb.toString();
+  }
+
+  @Override
+  public String asDOTFormat() {
+    return asDOTFormat("graph");
+  }
+}
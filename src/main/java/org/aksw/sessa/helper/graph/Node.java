@@ -1,13 +1,19 @@
 package org.aksw.sessa.helper.graph;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
+import org.aksw.sessa.query.models.ColorMask;
 import org.aksw.sessa.query.models.NGramEntryPosition;
 
 /**
  * This class represents a node in graph with given information of class T. Furthermore it holds the
  * scores and the colors, which are needed for the colors-spreading algorithm.
+ *
+ * <p>Besides the set of colors, the node keeps the colors as bitmasks (see {@link ColorMask}), so
+ * that the color checks need neither iterate over sets nor allocate anything. If a color is not
+ * within the first {@link ColorMask#MAX_WORDS} words, the checks fall back to the set.</p>
  */
 public class Node<T> {
 
@@ -17,6 +23,11 @@ public class Node<T> {
   private float energy;
   private Set<NGramEntryPosition> colors;
   private boolean isFactNode;
+  // bitmasks of the colors and of all words covered by them, only valid if masksAreValid is true
+  private long[] colorMasks;
+  private long wordMask;
+  private boolean masksAreValid;
+  private int explanation;
 
   /**
    * Initializes node with the given information. For example, the information can contain URIs. All
@@ -39,9 +50,10 @@ public class Node<T> {
   public Node(T nodeContent, float energy, Set<NGramEntryPosition> colors, boolean isFactNode) {
     this.nodeContent = nodeContent;
     this.energy = energy;
-    this.colors = colors;
+    this.colors = colors == null ? new HashSet<>() : new HashSet<>(colors);
     this.isFactNode = isFactNode;
     this.id = 0;
+    updateMasks();
   }
 
   /**
@@ -55,10 +67,6 @@ public class Node<T> {
    * Returns the explanation score of this node.
    */
   public int getExplanation() {
-    int explanation = 0;
-    for (NGramEntryPosition color : colors) {
-      explanation += color.getLength();
-    }
     return explanation;
   }
 
@@ -82,12 +90,13 @@ public class Node<T> {
   }
 
   /**
-   * Returns the colors of this node as set.
+   * Returns the colors of this node as unmodifiable set. Use {@link #addColor(NGramEntryPosition)}
+   * to change the colors.
    *
    * @return set of colors of this node
    */
   public Set<NGramEntryPosition> getColors() {
-    return colors;
+    return Collections.unmodifiableSet(colors);
   }
 
   /**
@@ -108,6 +117,27 @@ public class Node<T> {
     }
     colors.removeAll(removeColors);
     this.colors.add(otherColor);
+    updateMasks();
+  }
+
+  /**
+   * Recalculates the explanation score and the masks after the colors were changed.
+   */
+  private void updateMasks() {
+    explanation = 0;
+    wordMask = 0;
+    masksAreValid = true;
+    if (colorMasks == null || colorMasks.length != colors.size()) {
+      colorMasks = new long[colors.size()];
+    }
+    int i = 0;
+    for (NGramEntryPosition color : colors) {
+      explanation += color.getLength();
+      masksAreValid &= ColorMask.isRepresentable(color);
+      colorMasks[i] = masksAreValid ? color.getWordMask() : 0;
+      wordMask |= colorMasks[i];
+      i++;
+    }
   }
 
   /**
@@ -122,6 +152,26 @@ public class Node<T> {
     }
   }
 
+  /**
+   * Returns the masks of the colors of this node (see {@link ColorMask}), which must not be
+   * changed. If a color cannot be represented by a mask, null is returned.
+   *
+   * @return masks of the colors of this node or null
+   */
+  long[] getColorMasks() {
+    return masksAreValid ? colorMasks : null;
+  }
+
+  /**
+   * Returns the mask of all words covered by the colors of this node, which is only valid if
+   * {@link #getColorMasks()} is not null.
+   *
+   * @return mask of all words covered by the colors of this node
+   */
+  long getWordMask() {
+    return wordMask;
+  }
+
   /**
    * Sets the node type, i.e. if the node is a fact node (true) or not (false). Fact nodes are nodes
    * which link normal nodes with each other, showing that they belong together.
@@ -163,6 +213,9 @@ public class Node<T> {
    * @return true if they are related
    */
   public boolean isOverlappingWith(Node<?> other) {
+    if (this.masksAreValid && other.masksAreValid) {
+      return ColorMask.isOverlapping(this.wordMask, other.wordMask);
+    }
     for (NGramEntryPosition thisColor : this.getColors()) {
       for (NGramEntryPosition otherColor : other.getColors()) {
         if (thisColor.isOverlappingWith(otherColor)) {
@@ -181,6 +234,54 @@ public class Node<T> {
    * @return true if colors are mergeable, false if they aren't
    */
   public boolean colorsAreMergeable(Set<NGramEntryPosition> otherColors) {
+    if (masksAreValid) {
+      for (NGramEntryPosition otherColor : otherColors) {
+        if (!ColorMask.isRepresentable(otherColor)) {
+          return colorsAreMergeableWithSets(otherColors);
+        }
+        long otherMask = otherColor.getWordMask();
+        // only colors sharing words with the other color can prevent the merge
+        if (ColorMask.isOverlapping(wordMask, otherMask) && !isMergeable(otherMask)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return colorsAreMergeableWithSets(otherColors);
+  }
+
+  /**
+   * Checks if colors of this node are mergeable with the colors of the given node.
+   *
+   * @param other node whose colors should be checked for mergeability
+   * @return true if colors are mergeable, false if they aren't
+   * @see #colorsAreMergeable(Set)
+   */
+  public boolean colorsAreMergeable(Node<?> other) {
+    if (!this.masksAreValid || !other.masksAreValid) {
+      return colorsAreMergeableWithSets(other.colors);
+    }
+    if (!ColorMask.isOverlapping(this.wordMask, other.wordMask)) {
+      return true;
+    }
+    for (long otherMask : other.colorMasks) {
+      if (ColorMask.isOverlapping(wordMask, otherMask) && !isMergeable(otherMask)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isMergeable(long otherMask) {
+    for (long mask : colorMasks) {
+      if (!ColorMask.isMergeable(mask, otherMask)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean colorsAreMergeableWithSets(Set<NGramEntryPosition> otherColors) {
     for (NGramEntryPosition color : this.colors) {
       if (!color.isMergeable(otherColors)) {
         return false;
@@ -1,31 +1,46 @@
 package org.aksw.sessa.helper.graph;
 
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import org.aksw.sessa.importing.config.ConfigurationInitializer;
+import org.aksw.sessa.importing.rdf.GraphFillerInterface;
 import org.aksw.sessa.importing.rdf.SparqlGraphFiller;
+import org.aksw.sessa.importing.rdf.TripleSourceFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This class implements a graph, that builds itself using its node content to find new nodes. This
- * is currently realized using {@link org.aksw.sessa.importing.rdf.SparqlGraphFiller}. The class
- * only searches for new nodes if every node has an explanation score.
+ * is realized using the graph filler selected in the configuration (see {@link
+ * TripleSourceFactory#getGraphFiller()}). The class only searches for new nodes if every node has
+ * an explanation score. The graph is only expanded when {@link #expand()} is called, e.g. between
+ * the steps of the color spreading, so reading the graph has no side effects. The graph stops
+ * expanding itself after the configured number of rounds or once the configured deadline, which
+ * starts with the construction of the graph, is reached.
  *
  * @author Simon Bordewisch
  */
-public class SelfBuildingGraph extends Graph {
+public class SelfBuildingGraph extends CompactGraph {
 
   /**
    * This variable is used to define how many expansions can be made before the graph should not be
-   * further expanded.
+   * further expanded, if it is not configured otherwise.
    */
-  public static final int MAX_EXPANSIONS = 3;
+  public static final int DEFAULT_MAX_EXPANSIONS = 3;
   private static final Logger log = LoggerFactory.getLogger(SelfBuildingGraph.class);
+  private static final String DEADLINE_KEY = "graph.expansion.deadline";
+  private static final long DEFAULT_DEADLINE = 30000;
+  private static final String MAX_EXPANSIONS_KEY = "graph.expansion.max_rounds";
   private static int factIterator = 0;
   private int currentExpansion;
+  private int maxExpansions;
 
   /**
    * We only want to update the graph with new information. Therefore we store the nodes that got
@@ -34,6 +49,13 @@ public class SelfBuildingGraph extends Graph {
   private Map<Node, Node> lastNewNodes;
   // Stores already compared key pairs so they don't get compared again
   private Map<Node, Set<Node>> comparedNodes;
+  private GraphFillerInterface filler;
+  // Point in time (in ms) after which the graph should not be further expanded
+  private long deadline;
+  // Metrics of the expansion: rounds, time spent (in ms) and number of pairs of nodes queried
+  private int expansionRounds;
+  private long expansionTime;
+  private int queriedPairs;
 
 
   /**
@@ -43,19 +65,29 @@ public class SelfBuildingGraph extends Graph {
     this(new HashSet<>());
   }
 
+  /**
+   * Constructs a graph with given nodes, which uses the given graph filler to find new nodes.
+   */
+  public SelfBuildingGraph(Set<Node> nodes, GraphFillerInterface filler) {
+    this(nodes);
+    this.filler = filler;
+  }
+
   /**
    * Constructs a graph with given nodes.
    */
   public SelfBuildingGraph(Set<Node> nodes) {
     super();
-    this.nodes = new HashMap<>();
     this.lastNewNodes = new HashMap<>();
     for (Node node : nodes) {
-      this.nodes.put(node, node);
-      this.lastNewNodes.put(node, node);
+      addNode(node);
     }
     this.comparedNodes = new HashMap<>();
     this.currentExpansion = 1;
+    this.maxExpansions = ConfigurationInitializer.getConfiguration()
+        .getInt(MAX_EXPANSIONS_KEY, DEFAULT_MAX_EXPANSIONS);
+    this.deadline = System.currentTimeMillis() +
+        ConfigurationInitializer.getConfiguration().getLong(DEADLINE_KEY, DEFAULT_DEADLINE);
   }
 
   @Override
@@ -64,16 +96,56 @@ public class SelfBuildingGraph extends Graph {
     lastNewNodes.put(node, node);
   }
 
+  /**
+   * Makes one round of the expansion (see {@link #expandGraph(long)}) if every node has a color
+   * and neither the maximum number of rounds nor the deadline of this graph or the given one is
+   * reached.
+   *
+   * @param deadline point in time (in ms, see {@link System#currentTimeMillis()}) after which the
+   * graph should not be further expanded
+   * @return true if a round was made, which added new nodes, and the graph may be expanded further
+   */
   @Override
-  public Set<Node> getAllNeighbors(Node neighborsOf) {
-    //TODO: For now expanding graph in here should be enough, but maybe search for better solution
-    if (everyNodeHasColor()) {
-      expandGraph();
+  public boolean expand(long deadline) {
+    if (currentExpansion > maxExpansions || !everyNodeHasColor()) {
+      return false;
     }
-    Set<Node> allNeighbors = new HashSet<>();
-    allNeighbors.addAll(getNeighborsLeadingFrom(neighborsOf));
-    allNeighbors.addAll(getNeighborsLeadingTo(neighborsOf));
-    return allNeighbors;
+    long start = System.currentTimeMillis();
+    int nodeCount = getNodeCount();
+    int round = currentExpansion;
+    expandGraph(Math.min(this.deadline, deadline));
+    long time = System.currentTimeMillis() - start;
+    expansionTime += time;
+    log.debug("Expansion round #{} added {} nodes in {} ms.", round, getNodeCount() - nodeCount,
+        time);
+    return getNodeCount() > nodeCount && currentExpansion <= maxExpansions;
+  }
+
+  /**
+   * Returns the number of rounds in which the graph was expanded.
+   *
+   * @return number of expansion rounds
+   */
+  public int getExpansionRounds() {
+    return expansionRounds;
+  }
+
+  /**
+   * Returns the time spent on expanding the graph.
+   *
+   * @return time (in ms) spent on expanding the graph
+   */
+  public long getExpansionTime() {
+    return expansionTime;
+  }
+
+  /**
+   * Returns the number of pairs of nodes for which complementing nodes were queried.
+   *
+   * @return number of queried pairs of nodes
+   */
+  public int getQueriedPairs() {
+    return queriedPairs;
   }
 
   /**
@@ -84,7 +156,7 @@ public class SelfBuildingGraph extends Graph {
    */
   private boolean everyNodeHasColor() {
     boolean everyNodeHasColor = true;
-    for (Node node : nodes.keySet()) {
+    for (Node node : getNodes()) {
       if (node.getColors().isEmpty()) {
         everyNodeHasColor = false;
         break;
@@ -96,71 +168,126 @@ public class SelfBuildingGraph extends Graph {
   /**
    * This method tries to expand the graph by finding new nodes. It tries to find a pair of nodes
    * whose content will be used in a SPARQL-query to find a complementing content, which will be
-   * used to construct the new node.
+   * used to construct the new node. The complementing contents of all pairs are fetched
+   * concurrently before the new nodes are integrated in the order of the pairs, so the resulting
+   * graph does not depend on the order in which the queries finish.
    *
-   * @see SparqlGraphFiller
+   * @param deadline point in time (in ms) after which the graph should not be further expanded
+   * @see GraphFillerInterface
    */
-  protected void expandGraph() {
-    if (currentExpansion <= MAX_EXPANSIONS) {
-      SparqlGraphFiller filler = new SparqlGraphFiller();
+  protected void expandGraph(long deadline) {
+    if (currentExpansion <= maxExpansions && System.currentTimeMillis() >= deadline) {
+      log.warn("Deadline reached, stopping the expansion of the graph.");
+      currentExpansion = maxExpansions + 1;
+    }
+    if (currentExpansion <= maxExpansions) {
+      if (filler == null) {
+        filler = TripleSourceFactory.getGraphFiller();
+      }
       Map<Node, Node> newNodes = new HashMap<>();
 
       // Copies of the node-sets so we can add nodes to the original ones
-      Map<Node, Node> nodes = new HashMap<>(this.nodes);
+      Map<Node, Node> nodes = new HashMap<>();
+      for (Node node : getNodes()) {
+        nodes.put(node, node);
+      }
       Map<Node, Node> lastNewNodes = new HashMap<>(this.lastNewNodes);
 
+      // Collect the pairs that have not been compared yet
+      List<Entry<Node, Node>> pairs = new ArrayList<>();
       for (Node lastNewNode : lastNewNodes.keySet()) {
         for (Node node : nodes.keySet()) {
           if ((!comparedNodes.containsKey(lastNewNode) ||
               !comparedNodes.get(lastNewNode).contains(node)) &&
               !node.isFactNode()) {
-
             updateComparedNodes(lastNewNode, node);
+            pairs.add(new SimpleEntry<>(lastNewNode, node));
+          }
+        }
+      }
+
+      // Fetch the missing triple elements of all eligible pairs concurrently
+      List<Entry<String, String>> uriPairs = new ArrayList<>();
+      for (Entry<Node, Node> pair : pairs) {
+        if (isExpandable(pair.getKey(), pair.getValue())) {
+          uriPairs.add(toUriPair(pair.getKey(), pair.getValue()));
+        }
+      }
+      queriedPairs += uriPairs.size();
+      Map<Entry<String, String>, Set<String>> foundContents =
+          filler.findMissingTripleElements(uriPairs, deadline);
+
+      for (Entry<Node, Node> pair : pairs) {
+        Node lastNewNode = pair.getKey();
+        Node node = pair.getValue();
+        // Colors may have changed by integrating the nodes of previous pairs
+        if (isExpandable(lastNewNode, node)) {
+          Entry<String, String> uriPair = toUriPair(lastNewNode, node);
+          Set<String> newContent = foundContents.get(uriPair);
+          if (newContent == null && System.currentTimeMillis() < deadline) {
+            // bounded by the deadline like the other pairs, instead of querying without a timeout
+            newContent = filler.findMissingTripleElements(Collections.singletonList(uriPair),
+                deadline).get(uriPair);
+          }
+          if (newContent == null) {
+            continue;
+          }
 
-            if (!node.getColors().isEmpty() &&
-                !lastNewNode.getColors().isEmpty() &&
-                !node.isOverlappingWith(lastNewNode)) {
-              Set<String> newContent = filler.findMissingTripleElement(
-                  node.getContent().toString(),
-                  lastNewNode.getContent().toString());
-
-              for (String content : newContent) {
-                Node<String> foundNode = new Node<>(content);
-                log.debug("SPARQL found new node {} with nodes {} and {}.", foundNode.getContent(),
-                    node.getContent(), lastNewNode.getContent());
-                if (newNodes.containsKey(foundNode) || nodes.containsKey(foundNode)) {
-                  if (newNodes.containsKey(foundNode)) {
-                    foundNode = newNodes.get(foundNode);
-                    log.debug("Node was already found this round with colors {}.",
-                        foundNode.getColors());
-                  }
-                  if (nodes.containsKey(foundNode)) {
-                    foundNode = nodes.get(foundNode);
-                    log.debug("It's already in the node set.");
-                  }
-                  if (foundNode.colorsAreMergeable(lastNewNode.getColors()) &&
-                      foundNode.colorsAreMergeable(node.getColors())) {
-                    log.debug("Colors are mergeable.");
-                  } else {
-                    log.debug("Colors are not mergeable. Creating new node in graph");
-                    foundNode = new Node<>(content);
-                    foundNode.newId();
-                  }
-                }
-                foundNode.addColors(lastNewNode.getColors());
-                foundNode.addColors(node.getColors());
-                newNodes.put(foundNode, foundNode);
-                integrateNewNode(node, lastNewNode, foundNode);
+          for (String content : newContent) {
+            Node<String> foundNode = new Node<>(content);
+            log.debug("SPARQL found new node {} with nodes {} and {}.", foundNode.getContent(),
+                node.getContent(), lastNewNode.getContent());
+            if (newNodes.containsKey(foundNode) || nodes.containsKey(foundNode)) {
+              if (newNodes.containsKey(foundNode)) {
+                foundNode = newNodes.get(foundNode);
+                log.debug("Node was already found this round with colors {}.",
+                    foundNode.getColors());
+              }
+              if (nodes.containsKey(foundNode)) {
+                foundNode = nodes.get(foundNode);
+                log.debug("It's already in the node set.");
+              }
+              if (foundNode.colorsAreMergeable(lastNewNode) &&
+                  foundNode.colorsAreMergeable(node)) {
+                log.debug("Colors are mergeable.");
+              } else {
+                log.debug("Colors are not mergeable. Creating new node in graph");
+                foundNode = new Node<>(content);
+                foundNode.newId();
               }
             }
+            foundNode.addColors(lastNewNode.getColors());
+            foundNode.addColors(node.getColors());
+            newNodes.put(foundNode, foundNode);
+            integrateNewNode(node, lastNewNode, foundNode);
           }
         }
       }
       this.lastNewNodes = newNodes;
       currentExpansion++;
+      expansionRounds++;
     }
   }
 
+  /**
+   * Checks if the given pair of nodes can be used to find new nodes, i.e. if both nodes have colors
+   * and these colors are not overlapping.
+   *
+   * @param lastNewNode node that got added after the last update
+   * @param node node of the graph
+   * @return true if the pair can be used to find new nodes
+   */
+  private boolean isExpandable(Node lastNewNode, Node node) {
+    return !node.getColors().isEmpty() &&
+        !lastNewNode.getColors().isEmpty() &&
+        !node.isOverlappingWith(lastNewNode);
+  }
+
+  private Entry<String, String> toUriPair(Node lastNewNode, Node node) {
+    return SparqlGraphFiller.toPairKey(node.getContent().toString(),
+        lastNewNode.getContent().toString());
+  }
+
   /**
    * Keeps track on which pair nodes where already used to find new nodes. These pairs shouldn't be
    * used again.
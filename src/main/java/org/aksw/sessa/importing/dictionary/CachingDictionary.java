@@ -0,0 +1,324 @@
+package org.aksw.sessa.importing.dictionary;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.aksw.sessa.candidate.Candidate;
+import org.aksw.sessa.importing.dictionary.energy.EnergyFunctionInterface;
+import org.aksw.sessa.importing.dictionary.energy.EnergyScoreCache;
+import org.aksw.sessa.importing.dictionary.util.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the filtered and scored candidates of another dictionary per n-gram. This class is an
+ * implementation of the interface {@link DictionaryInterface}, which delegates all calls to the
+ * given dictionary.
+ *
+ * <p>The cache is bounded by its weight, i.e. the number of characters of the n-grams, keys and
+ * URIs plus a fixed overhead per entry and candidate, and its entries expire after the given time
+ * to live. While the cache is not full, every result is added. Afterwards, the least recently used
+ * entries are the victims which would have to be evicted for a new result. The result is only
+ * added if its n-gram was looked up more often recently than each of these victims (see {@link
+ * FrequencySketch}), so that n-grams which are asked only once do not evict the popular ones
+ * (TinyLFU admission).</p>
+ *
+ * <p>Results are not cached if a lookup failed while they were computed (see {@link
+ * DictionaryInterface#getFailureCount()}), e.g. because the page ranks could not be queried, as
+ * they may be missing candidates or contain default scores.</p>
+ *
+ * <p>The candidates are copied when they are added and when they are returned, so callers may
+ * change the returned candidates and sets. The cache is cleared if a filter or the energy function
+ * is changed via this dictionary. If the entries of the underlying dictionary are changed, {@link
+ * #invalidate()} has to be called.</p>
+ */
+public class CachingDictionary implements DictionaryInterface {
+
+  private static final Logger log = LoggerFactory.getLogger(CachingDictionary.class);
+
+  private static final int ENTRY_OVERHEAD = 64;
+  private static final int CANDIDATE_OVERHEAD = 32;
+  // expected weight of an entry, used to estimate the number of entries for the sketch
+  private static final int AVERAGE_ENTRY_WEIGHT = 2000;
+  private static final int MIN_SKETCH_ELEMENTS = 1024;
+  // cached for n-grams which are not in the dictionary, distinct from an empty result
+  private static final List<Candidate> NOT_FOUND = Collections.unmodifiableList(new ArrayList<>());
+
+  private final DictionaryInterface dictionary;
+  // in access order, i.e. the least recently used entry comes first; guarded by this
+  private final Map<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final FrequencySketch sketch;
+  private final long maxWeight;
+  private final long timeToLive;
+  private final Ticker ticker;
+  // guarded by this
+  private long weight = 0;
+  private final AtomicLong generation = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  /**
+   * Constructs the cache for the given dictionary.
+   *
+   * @param dictionary dictionary whose candidates should be cached
+   * @param maxWeight maximum weight of the cache, i.e. roughly the number of cached characters;
+   * nothing is cached if the weight is not positive
+   * @param timeToLive time (in ms) after which an entry expires
+   */
+  public CachingDictionary(DictionaryInterface dictionary, long maxWeight, long timeToLive) {
+    this(dictionary, maxWeight, timeToLive, Ticker.systemTicker());
+  }
+
+  /**
+   * Constructs the cache for the given dictionary, which reads the time from the given ticker.
+   *
+   * @param dictionary dictionary whose candidates should be cached
+   * @param maxWeight maximum weight of the cache; nothing is cached if it is not positive
+   * @param timeToLive time (in ms) after which an entry expires
+   * @param ticker source of the time (in ns) at which entries are written and read
+   */
+  CachingDictionary(DictionaryInterface dictionary, long maxWeight, long timeToLive,
+      Ticker ticker) {
+    this.dictionary = dictionary;
+    this.maxWeight = Math.max(0, maxWeight);
+    this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+    this.ticker = ticker;
+    sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE,
+        Math.max(MIN_SKETCH_ELEMENTS, this.maxWeight / AVERAGE_ENTRY_WEIGHT)));
+  }
+
+  /**
+   * Returns the cached candidates for the given n-gram or looks them up in the dictionary.
+   *
+   * @param nGram n-gram whose associated value is to be returned
+   * @return copy of the candidates of the n-gram or null if the dictionary contains no mapping
+   */
+  @Override
+  public Set<Candidate> get(String nGram) {
+    return get(nGram, () -> dictionary.get(nGram));
+  }
+
+  /**
+   * Returns the cached candidates for the given n-gram or looks them up in the dictionary, which
+   * looks up the energy scores in and adds them to the given cache.
+   *
+   * @param nGram n-gram whose associated value is to be returned
+   * @param scoreCache cache of the energy scores calculated for the current question
+   * @return copy of the candidates of the n-gram or null if the dictionary contains no mapping
+   */
+  @Override
+  public Set<Candidate> get(String nGram, EnergyScoreCache scoreCache) {
+    return get(nGram, () -> dictionary.get(nGram, scoreCache));
+  }
+
+  private Set<Candidate> get(String nGram, Supplier<Set<Candidate>> lookup) {
+    sketch.increment(nGram);
+    List<Candidate> cached = getIfPresent(nGram);
+    if (cached != null) {
+      hitCount.incrementAndGet();
+      return cached == NOT_FOUND ? null : copy(cached);
+    }
+    missCount.incrementAndGet();
+    long startGeneration = generation.get();
+    long startFailures = dictionary.getFailureCount();
+    Set<Candidate> candidates = lookup.get();
+    if (dictionary.getFailureCount() != startFailures) {
+      log.debug("Not caching the candidates of '{}', as a lookup failed meanwhile.", nGram);
+    } else {
+      put(nGram, candidates == null ? NOT_FOUND : copyToList(candidates), startGeneration);
+    }
+    return candidates;
+  }
+
+  private synchronized List<Candidate> getIfPresent(String nGram) {
+    CacheEntry entry = entries.get(nGram);
+    if (entry == null) {
+      return null;
+    }
+    if (isExpired(entry)) {
+      entries.remove(nGram);
+      weight -= entry.weight;
+      return null;
+    }
+    return entry.candidates;
+  }
+
+  /**
+   * Adds the candidates of the given n-gram, if the cache was not invalidated since the lookup
+   * started and if the n-gram was looked up more often recently than each entry which would have
+   * to be evicted for it. Expired entries are evicted in any case.
+   */
+  private synchronized void put(String nGram, List<Candidate> candidates, long startGeneration) {
+    if (generation.get() != startGeneration) {
+      // not cached if the cache was invalidated during the lookup, as the result may be outdated
+      return;
+    }
+    int entryWeight = weigh(nGram, candidates);
+    CacheEntry previous = entries.remove(nGram);
+    if (previous != null) {
+      // looked up concurrently by another thread
+      weight -= previous.weight;
+    }
+    if (entryWeight > maxWeight) {
+      rejectedCount.incrementAndGet();
+      return;
+    }
+    int frequency = sketch.frequency(nGram);
+    List<String> victims = new ArrayList<>();
+    long freedWeight = 0;
+    Iterator<Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+    while (weight - freedWeight + entryWeight > maxWeight) {
+      Entry<String, CacheEntry> victim = iterator.next();
+      if (!isExpired(victim.getValue()) && frequency <= sketch.frequency(victim.getKey())) {
+        rejectedCount.incrementAndGet();
+        return;
+      }
+      victims.add(victim.getKey());
+      freedWeight += victim.getValue().weight;
+    }
+    for (String victim : victims) {
+      entries.remove(victim);
+      evictionCount.incrementAndGet();
+    }
+    weight -= freedWeight;
+    entries.put(nGram, new CacheEntry(candidates, entryWeight, ticker.read()));
+    weight += entryWeight;
+  }
+
+  private boolean isExpired(CacheEntry entry) {
+    return ticker.read() - entry.writeTime >= timeToLive;
+  }
+
+  /**
+   * Adds the filter to the dictionary and clears the cache.
+   *
+   * @param filter filter to be added
+   */
+  @Override
+  public void addFilter(Filter filter) {
+    dictionary.addFilter(filter);
+    invalidate();
+  }
+
+  /**
+   * Sets the energy function of the dictionary and clears the cache.
+   *
+   * @param energyFunction energy function to be applied
+   */
+  @Override
+  public void setEnergyFunction(EnergyFunctionInterface energyFunction) {
+    dictionary.setEnergyFunction(energyFunction);
+    invalidate();
+  }
+
+  /**
+   * Returns whether the lookups of the dictionary are thread-safe; the cache itself is.
+   *
+   * @return true if the lookups of the dictionary are thread-safe
+   */
+  @Override
+  public boolean isThreadSafe() {
+    return dictionary.isThreadSafe();
+  }
+
+  @Override
+  public int size() {
+    return dictionary.size();
+  }
+
+  @Override
+  public long getFailureCount() {
+    return dictionary.getFailureCount();
+  }
+
+  /**
+   * Removes all cached candidates, e.g. because the entries of the dictionary were changed.
+   */
+  public synchronized void invalidate() {
+    generation.incrementAndGet();
+    entries.clear();
+    weight = 0;
+  }
+
+  /**
+   * Returns the statistics of this cache, i.e. the number of hits, misses and evictions.
+   *
+   * @return statistics of this cache
+   */
+  public CacheStats getStats() {
+    return new CacheStats(hitCount.get(), missCount.get(), 0, 0, 0, evictionCount.get());
+  }
+
+  /**
+   * Returns the number of results which were not added to the cache, because it was full and their
+   * n-gram was not looked up more often than the entries which would have been evicted.
+   *
+   * @return number of results which were not added to the cache
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /**
+   * Returns the number of n-grams in this cache.
+   *
+   * @return number of n-grams in this cache
+   */
+  public synchronized long cacheSize() {
+    return entries.size();
+  }
+
+  private static List<Candidate> copyToList(Set<Candidate> candidates) {
+    ImmutableList.Builder<Candidate> copies = ImmutableList.builder();
+    for (Candidate candidate : candidates) {
+      copies.add(new Candidate(candidate.getUri(), candidate.getKey(), candidate.getEnergy()));
+    }
+    return copies.build();
+  }
+
+  private static Set<Candidate> copy(List<Candidate> candidates) {
+    Set<Candidate> copies = new HashSet<>();
+    for (Candidate candidate : candidates) {
+      copies.add(new Candidate(candidate.getUri(), candidate.getKey(), candidate.getEnergy()));
+    }
+    return copies;
+  }
+
+  private static int weigh(String nGram, List<Candidate> candidates) {
+    int weight = ENTRY_OVERHEAD + nGram.length();
+    for (Candidate candidate : candidates) {
+      weight += CANDIDATE_OVERHEAD + candidate.getUri().length() + candidate.getKey().length();
+    }
+    return weight;
+  }
+
+  /**
+   * Cached candidates of an n-gram together with their weight and the time they were added.
+   */
+  private static final class CacheEntry {
+
+    private final List<Candidate> candidates;
+    private final int weight;
+    private final long writeTime;
+
+    private CacheEntry(List<Candidate> candidates, int weight, long writeTime) {
+      this.candidates = candidates;
+      this.weight = weight;
+      this.writeTime = writeTime;
+    }
+  }
+}
@@ -2,6 +2,7 @@ package org.aksw.sessa.importing.dictionary;
 
 import java.util.Set;
 import org.aksw.sessa.importing.dictionary.energy.EnergyFunctionInterface;
+import org.aksw.sessa.importing.dictionary.energy.EnergyScoreCache;
 import org.aksw.sessa.importing.dictionary.util.Filter;
 import org.aksw.sessa.candidate.Candidate;
 
@@ -23,6 +24,19 @@ public interface DictionaryInterface {
    */
   Set<Candidate> get(String nGram);
 
+  /**
+   * Given a n-gram, returns a set of candidate URIs related to it or null if this map contains no
+   * mapping for the key. The energy scores are looked up in and added to the given cache, which can
+   * be shared by all n-grams of a question. By default, the cache is not used.
+   *
+   * @param nGram n-gram whose associated value is to be returned
+   * @param cache cache of the energy scores calculated for the current question
+   * @return mapping of n-grams to set of URIs
+   */
+  default Set<Candidate> get(String nGram, EnergyScoreCache cache) {
+    return get(nGram);
+  }
+
   /**
    * Adds filter to the results in the {@link #get(String) get}-method.
    *
@@ -37,6 +51,30 @@ public interface DictionaryInterface {
    */
   void setEnergyFunction(EnergyFunctionInterface energyFunction);
 
+  /**
+   * Returns whether the lookups (i.e. {@link #get(String)} and {@link #get(String,
+   * EnergyScoreCache)}) may be called by multiple threads at once, e.g. to look up all n-grams of a
+   * question in parallel. Adding filters or setting the energy function is not thread-safe in any
+   * case. By default, the lookups are not thread-safe.
+   *
+   * @return true if the lookups of this dictionary are thread-safe
+   */
+  default boolean isThreadSafe() {
+    return false;
+  }
+
+  /**
+   * Returns the number of lookups which failed so far, e.g. because the energy scores could not be
+   * queried, and which therefore returned incomplete candidates or default scores instead. The
+   * number only has to increase with every failure, so callers can compare it before and after a
+   * lookup to find out whether its result may be degraded. By default, no failures are counted.
+   *
+   * @return number of failed lookups so far
+   */
+  default long getFailureCount() {
+    return 0;
+  }
+
   /**
    * Returns the size of the dictionary, i.e. how many pairs of keys and values.
    */
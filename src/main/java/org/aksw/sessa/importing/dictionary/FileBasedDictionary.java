@@ -1,13 +1,17 @@
 package org.aksw.sessa.importing.dictionary;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import org.aksw.sessa.candidate.Candidate;
 import org.aksw.sessa.helper.files.handler.FileHandlerInterface;
 import org.aksw.sessa.importing.dictionary.energy.EnergyFunctionInterface;
+import org.aksw.sessa.importing.dictionary.energy.EnergyScoreCache;
 import org.aksw.sessa.importing.dictionary.util.Filter;
 import org.slf4j.LoggerFactory;
 
@@ -18,7 +22,11 @@ import org.slf4j.LoggerFactory;
 public abstract class FileBasedDictionary implements DictionaryInterface {
 
   protected PriorityQueue<Filter> filterQue;
-  protected EnergyFunctionInterface energyFunction;
+  // filters in the order they are applied, see buildFilterChain
+  private volatile List<Filter> filterChain = new ArrayList<>();
+  protected volatile EnergyFunctionInterface energyFunction;
+  // number of lookups which failed in the dictionary itself, see getFailureCount
+  protected final AtomicLong failureCount = new AtomicLong();
 
   protected org.slf4j.Logger log = LoggerFactory.getLogger(FileBasedDictionary.class);
 
@@ -38,6 +46,31 @@ public abstract class FileBasedDictionary implements DictionaryInterface {
    */
   public abstract void putAll(FileHandlerInterface handler);
 
+  /**
+   * Given a n-gram, returns a set of candidate URIs related to it or null if this map contains no
+   * mapping for the key. As no cache is given, the energy scores are only shared between the
+   * filters and the final energy calculation of this n-gram.
+   *
+   * @param nGram n-gram whose associated value is to be returned
+   * @return mapping of n-grams to set of URIs
+   */
+  @Override
+  public Set<Candidate> get(String nGram) {
+    return get(nGram, new EnergyScoreCache());
+  }
+
+  /**
+   * Given a n-gram, returns a set of candidate URIs related to it or null if this map contains no
+   * mapping for the key. The filters and the final energy calculation look up the energy scores in
+   * and add them to the given cache.
+   *
+   * @param nGram n-gram whose associated value is to be returned
+   * @param cache cache of the energy scores calculated for the current question
+   * @return mapping of n-grams to set of URIs
+   */
+  @Override
+  public abstract Set<Candidate> get(String nGram, EnergyScoreCache cache);
+
   /**
    * Adds filter to the filter-queue. The filters added here are applied, order depending on their
    * given number of results (descending), after the dictionary found all candidates.
@@ -47,20 +80,47 @@ public abstract class FileBasedDictionary implements DictionaryInterface {
   @Override
   public void addFilter(Filter filter) {
     filterQue.add(filter);
+    filterChain = buildFilterChain(filterQue);
+  }
+
+  /**
+   * Sorts the given filters by their number of results (descending) and fuses consecutive filters
+   * with the same energy function and order, as only the one with the smallest number of results
+   * has an effect.
+   */
+  private static List<Filter> buildFilterChain(Collection<Filter> filters) {
+    List<Filter> sortedFilters = new ArrayList<>(filters);
+    sortedFilters.sort(
+        Collections.reverseOrder(Comparator.comparing(Filter::getNumberOfResults)));
+    List<Filter> chain = new ArrayList<>();
+    for (Filter filter : sortedFilters) {
+      int last = chain.size() - 1;
+      if (last >= 0 && chain.get(last).getEnergyFunction() == filter.getEnergyFunction()
+          && chain.get(last).isDescendingOrder() == filter.isDescendingOrder()) {
+        chain.set(last, filter);
+      } else {
+        chain.add(filter);
+      }
+    }
+    return chain;
   }
 
   /**
-   * Allows the dictionary to filter based on the added filters.
+   * Allows the dictionary to filter based on the added filters. The filters are applied in
+   * descending order of their number of results. Consecutive filters with the same energy function
+   * are fused, i.e. only the last of them is applied. The given set is not copied, so it is
+   * returned if no filter removes a candidate.
    *
    * @param keyword the initial keyword for the search in the dictionary
    * @param candidateSet found set of candidates for the keyword
+   * @param cache cache of the energy scores calculated for the current question
    * @return filtered set of candidates
    */
-  protected Set<Candidate> filter(String keyword, Set<Candidate> candidateSet) {
-    Set<Candidate> filteredCandidateSet = new HashSet<>();
-    filteredCandidateSet.addAll(candidateSet);
-    for (Filter filter : filterQue) {
-      filteredCandidateSet = filter.filter(keyword, filteredCandidateSet);
+  protected Set<Candidate> filter(String keyword, Set<Candidate> candidateSet,
+      EnergyScoreCache cache) {
+    Set<Candidate> filteredCandidateSet = candidateSet;
+    for (Filter filter : filterChain) {
+      filteredCandidateSet = filter.filter(keyword, filteredCandidateSet, cache);
       log.debug("Used filter for keyword {} with {} with result limit of {}. Got list: {}",
           keyword,
           filter.getEnergyFunction().getClass().getSimpleName(),
@@ -80,20 +140,39 @@ public abstract class FileBasedDictionary implements DictionaryInterface {
     this.energyFunction = energyFunction;
   }
 
+  /**
+   * Returns the number of failed lookups of this dictionary plus the number of failed calculations
+   * of its energy function and of the energy functions of its filters.
+   *
+   * @return number of failed lookups and calculations so far
+   */
+  @Override
+  public long getFailureCount() {
+    long failures = failureCount.get() + energyFunction.getFailureCount();
+    for (Filter filter : filterChain) {
+      failures += filter.getEnergyFunction().getFailureCount();
+    }
+    return failures;
+  }
+
   /**
    * Calculates the energy of all candidates based on all information in the candidate and the query
-   * string.
+   * string. The scores of all candidates are calculated at once (see {@link
+   * EnergyFunctionInterface#calculateEnergyScores(String, List)}). Scores which were already
+   * calculated by a filter with the same energy function are taken from the cache.
    *
    * @param candidateSet candidate set, in which all candidates should get their energy calculated
    * @param query query string, i.e. the string with which the candidate was found in the
    * dictionary
+   * @param cache cache of the energy scores calculated for the current question
    * @return updated candidate set with energy function applied
    */
-  protected Set<Candidate> calculateEnergy(Set<Candidate> candidateSet, String query) {
-    for (Candidate candidate : candidateSet) {
-      float energy = energyFunction
-          .calculateEnergyScore(query, candidate.getUri(), candidate.getKey());
-      candidate.setEnergy(energy);
+  protected Set<Candidate> calculateEnergy(Set<Candidate> candidateSet, String query,
+      EnergyScoreCache cache) {
+    List<Candidate> candidates = new ArrayList<>(candidateSet);
+    float[] energies = cache.getScores(energyFunction, query, candidates);
+    for (int i = 0; i < energies.length; i++) {
+      candidates.get(i).setEnergy(energies[i]);
     }
     return candidateSet;
   }
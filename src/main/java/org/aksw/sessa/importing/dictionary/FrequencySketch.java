@@ -0,0 +1,87 @@
+package org.aksw.sessa.importing.dictionary;
+
+/**
+ * Estimates how often elements were accessed recently, as proposed for the TinyLFU admission
+ * policy. The estimates are kept in a count-min sketch with four rows of 4-bit counters, i.e. an
+ * estimate may be too high, but never too low. All counters are halved after a sample of accesses,
+ * so that the estimates reflect the recent popularity of the elements.
+ */
+class FrequencySketch {
+
+  private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+      0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MAX_COUNT = 15;
+
+  // every long contains 16 counters
+  private final long[] table;
+  private final int counterMask;
+  private final int sampleSize;
+  private int accesses = 0;
+
+  /**
+   * Constructs a sketch for the given number of elements.
+   *
+   * @param expectedElements number of elements whose frequency should be estimated accurately
+   */
+  FrequencySketch(int expectedElements) {
+    // the number of counters is the next power of two, so that the index can be masked
+    int elements = Math.max(16, Math.min(expectedElements, 1 << 26));
+    int counters = Integer.highestOneBit(elements - 1) << 1;
+    table = new long[counters / 16];
+    counterMask = counters - 1;
+    sampleSize = 10 * counters;
+  }
+
+  /**
+   * Records an access of the given element.
+   *
+   * @param element accessed element
+   */
+  synchronized void increment(Object element) {
+    int hash = element.hashCode();
+    for (long seed : SEEDS) {
+      int index = indexOf(hash, seed);
+      int shift = (index & 15) << 2;
+      if (((table[index >>> 4] >>> shift) & 0xF) < MAX_COUNT) {
+        table[index >>> 4] += 1L << shift;
+      }
+    }
+    if (++accesses >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Returns the estimated number of recent accesses of the given element.
+   *
+   * @param element element whose frequency should be estimated
+   * @return estimated number of recent accesses, at most 15
+   */
+  synchronized int frequency(Object element) {
+    int hash = element.hashCode();
+    int frequency = MAX_COUNT;
+    for (long seed : SEEDS) {
+      int index = indexOf(hash, seed);
+      int count = (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & 0xF);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  private int indexOf(int hash, long seed) {
+    long mixed = (hash + seed) * seed;
+    mixed ^= mixed >>> 32;
+    return (int) mixed & counterMask;
+  }
+
+  /**
+   * Halves all counters, so that old accesses count less than new ones.
+   */
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    accesses /= 2;
+  }
+}
@@ -1,5 +1,8 @@
 package org.aksw.sessa.importing.dictionary.energy;
 
+import java.util.List;
+import org.aksw.sessa.candidate.Candidate;
+
 /**
  * This interface is used for implementations of the energy function. The energy function
  * approximates the probability that a node should be part of or lead to the solution generated by
@@ -18,4 +21,63 @@ public interface EnergyFunctionInterface {
    */
   float calculateEnergyScore(String nGram, String foundURI, String foundKey);
 
+  /**
+   * Returns the energy score of an URI with the given data if it is at least the given minimum
+   * score. Otherwise, any value lower than the minimum score can be returned, so implementations
+   * can stop the calculation as soon as the minimum can not be reached anymore. By default, the
+   * score is calculated completely with {@link #calculateEnergyScore(String, String, String)}.
+   *
+   * @param nGram original n-gram with which the uri was found
+   * @param foundURI found URI for which the energy score should be calculated
+   * @param foundKey key of the dictionary for which the URI is the value
+   * @param minScore minimum score the caller is interested in
+   * @return the energy score of an URI with the given data or a value lower than the minimum score
+   */
+  default float calculateEnergyScore(String nGram, String foundURI, String foundKey,
+      float minScore) {
+    return calculateEnergyScore(nGram, foundURI, foundKey);
+  }
+
+  /**
+   * Returns the energy scores of all given candidates, which were found with the given n-gram.
+   * Implementations can override this method to calculate the scores of all candidates at once,
+   * e.g. with a single query. By default, the scores are calculated one after another with {@link
+   * #calculateEnergyScore(String, String, String)}.
+   *
+   * @param nGram original n-gram with which the candidates were found
+   * @param candidates candidates for which the energy scores should be calculated
+   * @return energy scores of the candidates in the same order as the candidates
+   */
+  default float[] calculateEnergyScores(String nGram, List<Candidate> candidates) {
+    float[] scores = new float[candidates.size()];
+    for (int i = 0; i < scores.length; i++) {
+      Candidate candidate = candidates.get(i);
+      scores[i] = calculateEnergyScore(nGram, candidate.getUri(), candidate.getKey());
+    }
+    return scores;
+  }
+
+  /**
+   * Returns true if the scores of multiple candidates should be calculated at once with {@link
+   * #calculateEnergyScores(String, List)}, e.g. because every calculation needs a remote query.
+   * Otherwise, the candidates can be scored one after another, which allows callers to skip
+   * candidates early (see {@link #calculateEnergyScore(String, String, String, float)}). By
+   * default, this method returns false.
+   *
+   * @return true if the scores should be calculated at once
+   */
+  default boolean prefersBatchScoring() {
+    return false;
+  }
+
+  /**
+   * Returns the number of calculations which failed so far, e.g. because a remote lookup failed,
+   * and which therefore returned a default score instead. The number only has to increase with
+   * every failure. By default, no failures are counted.
+   *
+   * @return number of failed calculations so far
+   */
+  default long getFailureCount() {
+    return 0;
+  }
 }
@@ -0,0 +1,131 @@
+package org.aksw.sessa.importing.dictionary.energy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import org.aksw.sessa.candidate.Candidate;
+
+/**
+ * This class memoizes the energy scores calculated while answering one question. A score is
+ * identified by the energy function (i.e. the instance), the n-gram, the URI and the key of the
+ * candidate, so every function is called at most once per candidate, even if the candidate is
+ * scored by a filter and afterwards by the final energy calculation or if it is found again for
+ * another n-gram of the question.
+ *
+ * <p>The cache is meant to live as long as one question is answered. It can be used by multiple
+ * threads at the same time.</p>
+ */
+public class EnergyScoreCache {
+
+  private final Map<ScoreKey, Float> scores = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the energy scores of all given candidates. Only the scores which are not cached yet
+   * are calculated, which is done with one call of {@link
+   * EnergyFunctionInterface#calculateEnergyScores(String, List)}.
+   *
+   * @param function energy function which calculates the scores
+   * @param nGram original n-gram with which the candidates were found
+   * @param candidates candidates for which the energy scores should be returned
+   * @return energy scores of the candidates in the same order as the candidates
+   */
+  public float[] getScores(EnergyFunctionInterface function, String nGram,
+      List<Candidate> candidates) {
+    float[] result = new float[candidates.size()];
+    List<Candidate> missing = new ArrayList<>();
+    List<Integer> missingIndices = new ArrayList<>();
+    for (int i = 0; i < result.length; i++) {
+      Candidate candidate = candidates.get(i);
+      Float score = scores.get(new ScoreKey(function, nGram, candidate));
+      if (score == null) {
+        missing.add(candidate);
+        missingIndices.add(i);
+      } else {
+        result[i] = score;
+      }
+    }
+    if (!missing.isEmpty()) {
+      float[] calculated = function.calculateEnergyScores(nGram, missing);
+      for (int i = 0; i < calculated.length; i++) {
+        scores.put(new ScoreKey(function, nGram, missing.get(i)), calculated[i]);
+        result[missingIndices.get(i)] = calculated[i];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the cached energy score of the given candidate.
+   *
+   * @param function energy function which calculated the score
+   * @param nGram original n-gram with which the candidate was found
+   * @param candidate candidate for which the energy score should be returned
+   * @return cached energy score or null if the score was not calculated yet
+   */
+  public Float getScore(EnergyFunctionInterface function, String nGram, Candidate candidate) {
+    return scores.get(new ScoreKey(function, nGram, candidate));
+  }
+
+  /**
+   * Adds the given energy score of the given candidate to the cache.
+   *
+   * @param function energy function which calculated the score
+   * @param nGram original n-gram with which the candidate was found
+   * @param candidate candidate for which the energy score was calculated
+   * @param score energy score of the candidate
+   */
+  public void putScore(EnergyFunctionInterface function, String nGram, Candidate candidate,
+      float score) {
+    scores.put(new ScoreKey(function, nGram, candidate), score);
+  }
+
+  /**
+   * Returns the number of cached scores.
+   *
+   * @return number of cached scores
+   */
+  public int size() {
+    return scores.size();
+  }
+
+  /**
+   * Identifies a score, i.e. the energy function together with the calculation parameters.
+   */
+  private static final class ScoreKey {
+
+    private final EnergyFunctionInterface function;
+    private final String nGram;
+    private final String uri;
+    private final String key;
+    private final int hashCode;
+
+    private ScoreKey(EnergyFunctionInterface function, String nGram, Candidate candidate) {
+      this.function = function;
+      this.nGram = nGram;
+      this.uri = candidate.getUri();
+      this.key = candidate.getKey();
+      hashCode = Objects.hash(System.identityHashCode(function), nGram, uri, key);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ScoreKey)) {
+        return false;
+      }
+      ScoreKey other = (ScoreKey) o;
+      // energy functions are compared by identity, as they do not implement equals
+      return function == other.function && nGram.equals(other.nGram) && uri.equals(other.uri)
+          && Objects.equals(key, other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
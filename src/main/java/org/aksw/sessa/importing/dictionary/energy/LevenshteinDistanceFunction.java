@@ -1,10 +1,11 @@
 package org.aksw.sessa.importing.dictionary.energy;
 
-import org.apache.lucene.search.spell.LuceneLevenshteinDistance;
-
 /**
  * Provides function to calculate the energy score based on Levenshtein distance. This class is an
- * implementation of the interface {@link EnergyFunctionInterface}.
+ * implementation of the interface {@link EnergyFunctionInterface}. The scores are calculated by
+ * {@link LevenshteinSimilarity}, which gives the same scores as Lucene's {@link
+ * org.apache.lucene.search.spell.LuceneLevenshteinDistance}, but does not allocate memory for
+ * every call.
  */
 public class LevenshteinDistanceFunction implements EnergyFunctionInterface {
 
@@ -21,7 +22,24 @@ public class LevenshteinDistanceFunction implements EnergyFunctionInterface {
    */
   @Override
   public float calculateEnergyScore(String nGram, String foundURI, String foundKey) {
-    LuceneLevenshteinDistance levenshtein = new LuceneLevenshteinDistance();
-    return levenshtein.getDistance(nGram.toLowerCase(), foundKey.toLowerCase());
+    return LevenshteinSimilarity.similarity(nGram, foundKey);
+  }
+
+  /**
+   * Returns the energy score of an URI with the given data like {@link
+   * #calculateEnergyScore(String, String, String)}, but stops the calculation as soon as the score
+   * can not reach the given minimum score anymore.
+   *
+   * @param nGram original n-gram with which the uri was found
+   * @param foundURI found URI for which the energy score should be calculated
+   * @param foundKey key of the dictionary for which the URI is the value
+   * @param minScore minimum score the caller is interested in
+   * @return the energy score of an URI with the given data or {@link Float#NEGATIVE_INFINITY} if it
+   * is lower than the minimum score
+   */
+  @Override
+  public float calculateEnergyScore(String nGram, String foundURI, String foundKey,
+      float minScore) {
+    return LevenshteinSimilarity.similarity(nGram, foundKey, minScore);
   }
 }
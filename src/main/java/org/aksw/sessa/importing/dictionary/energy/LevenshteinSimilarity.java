@@ -0,0 +1,207 @@
+package org.aksw.sessa.importing.dictionary.energy;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Calculates the same normalized, case-insensitive similarity as {@link
+ * org.apache.lucene.search.spell.LuceneLevenshteinDistance} applied to the lower-cased strings,
+ * i.e. {@code 1 - d / min(n, m)} with d being the Levenshtein distance allowing transpositions and
+ * n, m the number of code points of the strings. In contrast to the Lucene implementation, only
+ * three rows of the matrix are kept, which are reused for all calls of the same thread, and ASCII
+ * strings are lower-cased on the fly. So in the common case, no memory is allocated.
+ *
+ * <p>With a minimum similarity, the calculation stops as soon as the minimum can not be reached
+ * anymore, e.g. because the candidate would not make it into the top results of a filter.</p>
+ */
+public final class LevenshteinSimilarity {
+
+  private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+  private LevenshteinSimilarity() {
+  }
+
+  /**
+   * Returns the similarity of the given strings, which is the same as the one calculated by {@code
+   * new LuceneLevenshteinDistance().getDistance(s1.toLowerCase(), s2.toLowerCase())}.
+   *
+   * @param s1 first string
+   * @param s2 second string
+   * @return similarity of the strings (1 if they are identical)
+   */
+  public static float similarity(String s1, String s2) {
+    return similarity(s1, s2, Float.NEGATIVE_INFINITY);
+  }
+
+  /**
+   * Returns the similarity of the given strings if it is at least the given minimum similarity.
+   * Otherwise, {@link Float#NEGATIVE_INFINITY} is returned, possibly without calculating the
+   * distance completely.
+   *
+   * @param s1 first string
+   * @param s2 second string
+   * @param minSimilarity minimum similarity the caller is interested in
+   * @return similarity of the strings or {@link Float#NEGATIVE_INFINITY} if it is lower than the
+   * minimum similarity
+   */
+  public static float similarity(String s1, String s2, float minSimilarity) {
+    Buffers buffers = BUFFERS.get();
+    buffers.target = toLowerCodePoints(s1, buffers.target, buffers);
+    int n = buffers.length;
+    buffers.other = toLowerCodePoints(s2, buffers.other, buffers);
+    int m = buffers.length;
+    if (n == 0 || m == 0) {
+      // same special case as in the Lucene implementation
+      float similarity = n == m ? 0 : Math.max(n, m);
+      return similarity >= minSimilarity ? similarity : Float.NEGATIVE_INFINITY;
+    }
+    int minLength = Math.min(n, m);
+    int maxDistance = maxDistance(minSimilarity, minLength, Math.max(n, m));
+    if (maxDistance < 0 || Math.abs(n - m) > maxDistance) {
+      return Float.NEGATIVE_INFINITY;
+    }
+    int distance = distance(buffers, n, m, maxDistance);
+    if (distance > maxDistance) {
+      return Float.NEGATIVE_INFINITY;
+    }
+    return 1.0f - ((float) distance / minLength);
+  }
+
+  /**
+   * Returns the largest distance whose similarity is at least the given minimum similarity or -1 if
+   * there is none. The distance is never larger than the largest possible one.
+   */
+  private static int maxDistance(float minSimilarity, int minLength, int maxLength) {
+    if (!(minSimilarity > Float.NEGATIVE_INFINITY)) {
+      return maxLength;
+    }
+    double estimate = Math.floor((1.0 - minSimilarity) * minLength) + 1;
+    int distance = (int) Math.min(maxLength, Math.max(-1, estimate));
+    // the estimate is off by at most one because of the float arithmetic
+    while (distance >= 0 && 1.0f - ((float) distance / minLength) < minSimilarity) {
+      distance--;
+    }
+    return distance;
+  }
+
+  /**
+   * Calculates the distance of the code points in the buffers in the same way as the Lucene
+   * implementation (iterating over the second string in the outer loop). Returns a value larger
+   * than the maximum distance if the distance is larger.
+   */
+  private static int distance(Buffers buffers, int n, int m, int maxDistance) {
+    int[] target = buffers.target;
+    int[] other = buffers.other;
+    buffers.ensureRowCapacity(n + 1);
+    // rows j-2, j-1 and j of the matrix
+    int[] beforePrevious = buffers.row0;
+    int[] previous = buffers.row1;
+    int[] current = buffers.row2;
+    for (int i = 0; i <= n; i++) {
+      previous[i] = i;
+    }
+    int previousMin = 0;
+    for (int j = 1; j <= m; j++) {
+      int otherJ = other[j - 1];
+      current[0] = j;
+      int currentMin = j;
+      for (int i = 1; i <= n; i++) {
+        int cost = target[i - 1] == otherJ ? 0 : 1;
+        int value = Math.min(Math.min(current[i - 1] + 1, previous[i] + 1),
+            previous[i - 1] + cost);
+        if (i > 1 && j > 1 && target[i - 1] == other[j - 2] && target[i - 2] == otherJ) {
+          value = Math.min(value, beforePrevious[i - 2] + cost);
+        }
+        current[i] = value;
+        if (value < currentMin) {
+          currentMin = value;
+        }
+      }
+      // every cell depends only on the two previous rows (and cells of the same row, which start
+      // with j), so the distance can not get below the minimum of these rows anymore
+      if (currentMin > maxDistance && previousMin > maxDistance) {
+        return maxDistance + 1;
+      }
+      previousMin = currentMin;
+      int[] tmp = beforePrevious;
+      beforePrevious = previous;
+      previous = current;
+      current = tmp;
+    }
+    return previous[n];
+  }
+
+  /**
+   * Writes the code points of the lower-cased string into the given buffer, which is grown if
+   * needed, and sets the length of the buffers. ASCII strings are lower-cased without allocating a
+   * new string; all other strings are lower-cased with {@link String#toLowerCase()}, which handles
+   * the special cases of some languages and characters.
+   */
+  private static int[] toLowerCodePoints(String string, int[] buffer, Buffers buffers) {
+    if (isAscii(string) && !hasSpecialAsciiCasing(Locale.getDefault())) {
+      int length = string.length();
+      if (buffer.length < length) {
+        buffer = new int[Math.max(length, 2 * buffer.length)];
+      }
+      for (int i = 0; i < length; i++) {
+        char c = string.charAt(i);
+        buffer[i] = c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+      }
+      buffers.length = length;
+      return buffer;
+    }
+    String lowerCase = string.toLowerCase();
+    int length = lowerCase.codePointCount(0, lowerCase.length());
+    if (buffer.length < length) {
+      buffer = new int[Math.max(length, 2 * buffer.length)];
+    }
+    int index = 0;
+    for (int i = 0; i < lowerCase.length(); ) {
+      int codePoint = lowerCase.codePointAt(i);
+      buffer[index++] = codePoint;
+      i += Character.charCount(codePoint);
+    }
+    buffers.length = length;
+    return buffer;
+  }
+
+  private static boolean isAscii(String string) {
+    for (int i = 0; i < string.length(); i++) {
+      if (string.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks if the locale lower-cases ASCII letters differently, e.g. 'I' to a dotless i in Turkish.
+   */
+  private static boolean hasSpecialAsciiCasing(Locale locale) {
+    String language = locale.getLanguage();
+    return "tr".equals(language) || "az".equals(language);
+  }
+
+  /**
+   * Buffers of one thread.
+   */
+  private static final class Buffers {
+
+    private int[] target = new int[64];
+    private int[] other = new int[64];
+    // length of the last string written by toLowerCodePoints
+    private int length;
+    private int[] row0 = new int[65];
+    private int[] row1 = new int[65];
+    private int[] row2 = new int[65];
+
+    private void ensureRowCapacity(int capacity) {
+      if (row0.length < capacity) {
+        int newCapacity = Math.max(capacity, 2 * row0.length);
+        row0 = Arrays.copyOf(row0, newCapacity);
+        row1 = Arrays.copyOf(row1, newCapacity);
+        row2 = Arrays.copyOf(row2, newCapacity);
+      }
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package org.aksw.sessa.importing.dictionary.energy;
+
+/**
+ * Provides function to calculate the energy score based on wikipedia page rank of given URI. In
+ * contrast to {@link PageRankFunction}, the ranks are looked up in a local {@link PageRankStore}
+ * instead of querying them via SPARQL. This class is an implementation of the interface {@link
+ * EnergyFunctionInterface}.
+ */
+public class LocalPageRankFunction implements EnergyFunctionInterface {
+
+  private final PageRankStore store;
+
+  /**
+   * Constructs the function with the given store.
+   *
+   * @param store store containing the page ranks
+   */
+  public LocalPageRankFunction(PageRankStore store) {
+    this.store = store;
+  }
+
+  /**
+   * Returns the wikipedia page rank of given URI. If the store contains no rank for the URI, 0 is
+   * returned.
+   *
+   * @param nGram original n-gram with which the uri was found
+   * @param foundURI found URI for which the energy score should be calculated
+   * @param foundKey key of the dictionary for which the URI is the value
+   * @return the energy score of an URI with the given data
+   */
+  @Override
+  public float calculateEnergyScore(String nGram, String foundURI, String foundKey) {
+    return store.getRank(foundURI);
+  }
+}
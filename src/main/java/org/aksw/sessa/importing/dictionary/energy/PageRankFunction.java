@@ -1,26 +1,48 @@
 package org.aksw.sessa.importing.dictionary.energy;
 
 import java.util.Formatter;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import org.apache.jena.query.Query;
-import org.apache.jena.query.QueryExecution;
-import org.apache.jena.query.QueryExecutionFactory;
-import org.apache.jena.query.QueryFactory;
-import org.apache.jena.query.QuerySolution;
-import org.apache.jena.query.ResultSet;
-import org.apache.jena.sparql.engine.http.QueryEngineHTTP;
+import org.aksw.sessa.candidate.Candidate;
+import org.aksw.sessa.importing.rdf.SparqlQueryService;
 import org.slf4j.LoggerFactory;
 
 /**
  * Provides function to calculate the energy score based on wikipedia page rank of given URI. This
- * class is an implementation of the interface {@link EnergyFunctionInterface}.
+ * class is an implementation of the interface {@link EnergyFunctionInterface}. The ranks are
+ * queried via a {@link SparqlQueryService}, which is shared by all instances unless given otherwise
+ * and which caches the results.
  */
 public class PageRankFunction implements EnergyFunctionInterface {
 
+  /**
+   * Maximum number of URIs for which the ranks are queried at once.
+   */
+  private static final int BATCH_SIZE = 100;
   private org.slf4j.Logger log = LoggerFactory.getLogger(EnergyFunctionInterface.class);
 
+  private SparqlQueryService queryService;
+
+  /**
+   * Constructs the function with the shared query service.
+   */
+  public PageRankFunction() {
+    this(SparqlQueryService.getInstance());
+  }
+
+  /**
+   * Constructs the function with the given query service.
+   *
+   * @param queryService service used to query the ranks
+   */
+  public PageRankFunction(SparqlQueryService queryService) {
+    this.queryService = queryService;
+  }
+
   /**
    * Returns the wikipedia page rank of given URI.
    *
@@ -43,6 +65,54 @@ public class PageRankFunction implements EnergyFunctionInterface {
     return rank;
   }
 
+  /**
+   * Returns the wikipedia page ranks of all given candidates. Instead of one query per candidate,
+   * the ranks of up to {@value #BATCH_SIZE} URIs are queried at once.
+   *
+   * @param nGram original n-gram with which the candidates were found
+   * @param candidates candidates for which the energy scores should be calculated
+   * @return energy scores of the candidates in the same order as the candidates
+   */
+  @Override
+  public float[] calculateEnergyScores(String nGram, List<Candidate> candidates) {
+    Map<String, Float> ranks = new HashMap<>();
+    for (int from = 0; from < candidates.size(); from += BATCH_SIZE) {
+      Set<String> uris = new HashSet<>();
+      for (Candidate candidate : candidates
+          .subList(from, Math.min(from + BATCH_SIZE, candidates.size()))) {
+        uris.add(candidate.getUri());
+      }
+      ranks.putAll(executeBatchQuery(constructBatchQuery(uris)));
+    }
+    float[] scores = new float[candidates.size()];
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = ranks.getOrDefault(candidates.get(i).getUri(), 0F);
+    }
+    return scores;
+  }
+
+  /**
+   * Returns true, as the ranks of multiple candidates are queried at once.
+   *
+   * @return true
+   */
+  @Override
+  public boolean prefersBatchScoring() {
+    return true;
+  }
+
+  /**
+   * Returns the number of queries of the query service which failed so far, in which case the
+   * affected candidates got a rank of 0. The failures of other users of the service are counted as
+   * well.
+   *
+   * @return number of failed queries so far
+   */
+  @Override
+  public long getFailureCount() {
+    return queryService.getFailureCount();
+  }
+
   private String constructQuery(String uri) {
     final String QUERY_STRING =
         "SELECT DISTINCT ?rank " +
@@ -52,29 +122,61 @@ public class PageRankFunction implements EnergyFunctionInterface {
     return new Formatter().format(QUERY_STRING, uri).toString();
   }
 
-  private Set<Float> executeQuery(String queryString) {
-    Query query = QueryFactory.create(queryString);
+  private String constructBatchQuery(Set<String> uris) {
+    final String QUERY_STRING =
+        "SELECT DISTINCT ?uri ?rank " +
+            "FROM <http://dbpedia.org> " +
+            "FROM <http://people.aifb.kit.edu/ath/#DBpedia_PageRank> " +
+            "WHERE { VALUES ?uri { %1$s } " +
+            "?uri <http://purl.org/voc/vrank#hasRank>/<http://purl.org/voc/vrank#rankValue> ?rank. }";
+    StringBuilder values = new StringBuilder();
+    for (String uri : uris) {
+      values.append('<').append(uri).append("> ");
+    }
+    return new Formatter().format(QUERY_STRING, values.toString()).toString();
+  }
 
-    ResultSet rs;
+  private Set<Float> executeQuery(String queryString) {
     Set<Float> finalSet = new HashSet<>();
-
-    try (QueryExecution qexec = QueryExecutionFactory
-        .sparqlService("http://dbpedia.org/sparql", query)) {
-      // Set the DBpedia specific timeout.
-      ((QueryEngineHTTP) qexec).addParam("timeout", "10000");
-      // Execute.
-      rs = qexec.execSelect();
-      String resultVar = rs.getResultVars().get(0);
-      while (rs.hasNext()) {
-        QuerySolution qs = rs.next();
-        finalSet.add(qs.getLiteral(resultVar).getFloat());
+    for (String rank : queryService.executeSelect(queryString)) {
+      Float value = parseRank(rank);
+      if (value != null) {
+        finalSet.add(value);
       }
-    } catch (Exception e) {
-      log.error("Error with query {}", queryString);
-      log.error("Answer set until this point is: {}", finalSet);
-      log.error(e.getLocalizedMessage());
     }
     log.trace("Query: '{}'. Found: {}", queryString, finalSet);
     return finalSet;
   }
+
+  private Map<String, Float> executeBatchQuery(String queryString) {
+    Map<String, Float> ranks = new HashMap<>();
+    for (List<String> row : queryService.executeSelectRows(queryString)) {
+      Float value = parseRank(row.get(1));
+      // like for a single URI, only one of multiple ranks is used
+      if (value != null) {
+        ranks.putIfAbsent(row.get(0), value);
+      }
+    }
+    log.trace("Query: '{}'. Found: {}", queryString, ranks);
+    return ranks;
+  }
+
+  /**
+   * Parses the given rank, which is given as typed literal (e.g. "0.5^^xsd:float").
+   *
+   * @param rank typed literal containing the rank
+   * @return rank as float or null, if it is not a number
+   */
+  private Float parseRank(String rank) {
+    if (rank == null) {
+      return null;
+    }
+    int datatypeStart = rank.indexOf("^^");
+    try {
+      return Float.parseFloat(datatypeStart < 0 ? rank : rank.substring(0, datatypeStart));
+    } catch (NumberFormatException e) {
+      log.error("Could not parse rank '{}'", rank);
+      return null;
+    }
+  }
 }
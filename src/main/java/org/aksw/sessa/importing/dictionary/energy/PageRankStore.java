@@ -0,0 +1,179 @@
+package org.aksw.sessa.importing.dictionary.energy;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import org.aksw.sessa.helper.files.MappedFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides the PageRank of URIs from a local, memory-mapped file, which is built by {@link
+ * PageRankStoreBuilder}. The entries of the file are sorted by the 64-bit hash of their URI. A
+ * directory, which is indexed by the first bits of the hash, points to the first entry of every
+ * bucket. As the number of buckets is at least the number of entries, a lookup checks about one
+ * entry, i.e. it takes constant time. The URIs themselves are stored as well, so that collisions of
+ * the hashes do not lead to wrong ranks.
+ *
+ * <p>Lookups neither allocate memory nor change any state, so the store can be used by multiple
+ * threads at the same time.</p>
+ */
+public class PageRankStore implements AutoCloseable {
+
+  /**
+   * Identifies the files containing a PageRank store.
+   */
+  static final long MAGIC = 0x5345535341505246L;
+  static final int VERSION = 1;
+
+  private static final Logger log = LoggerFactory.getLogger(PageRankStore.class);
+
+  private final MappedFile file;
+  private final int directoryBits;
+  private final long size;
+  private final long directoryPosition;
+  private final long hashesPosition;
+  private final long ranksPosition;
+  private final long keyOffsetsPosition;
+  private final long keyBytesPosition;
+
+  /**
+   * Opens the store in the given file.
+   *
+   * @param location path of the store file
+   * @throws IOException if the file could not be opened or is not a PageRank store
+   */
+  public PageRankStore(String location) throws IOException {
+    file = new MappedFile(Paths.get(location));
+    if (file.size() < 24 || file.getLong(0) != MAGIC || file.getInt(8) != VERSION) {
+      file.close();
+      throw new IOException(String.format("'%s' is not a PageRank store.", location));
+    }
+    directoryBits = file.getInt(12);
+    size = file.getLong(16);
+    directoryPosition = 24;
+    hashesPosition = align(directoryPosition + 4 * ((1L << directoryBits) + 1));
+    ranksPosition = hashesPosition + 8 * size;
+    keyOffsetsPosition = align(ranksPosition + 4 * size);
+    keyBytesPosition = keyOffsetsPosition + 8 * (size + 1);
+    log.info("Opened PageRank store '{}' with {} entries.", location, size);
+  }
+
+  static long align(long position) {
+    return (position + 7) & ~7L;
+  }
+
+  /**
+   * Returns the 64-bit hash of the given URI, which is used to sort and find the entries.
+   *
+   * @param uri URI to be hashed
+   * @return hash of the URI
+   */
+  static long hash(String uri) {
+    // FNV-1a over the characters
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < uri.length(); i++) {
+      hash ^= uri.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    // finalizer of SplitMix64, so that the first bits are well distributed
+    hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+    hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+    return hash ^ (hash >>> 31);
+  }
+
+  /**
+   * Returns the bucket of the given hash in a directory with the given number of bits.
+   */
+  static int bucket(long hash, int directoryBits) {
+    return directoryBits == 0 ? 0 : (int) (hash >>> (64 - directoryBits));
+  }
+
+  /**
+   * Returns the number of entries in the store.
+   *
+   * @return number of entries in the store
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Checks if the store contains a rank for the given URI.
+   *
+   * @param uri URI to be checked
+   * @return true if the store contains a rank for the URI
+   */
+  public boolean contains(String uri) {
+    return find(uri) >= 0;
+  }
+
+  /**
+   * Returns the PageRank of the given URI.
+   *
+   * @param uri URI for which the rank should be returned
+   * @return rank of the URI or 0 if the store contains no rank for it
+   */
+  public float getRank(String uri) {
+    long index = find(uri);
+    return index < 0 ? 0 : file.getFloat(ranksPosition + 4 * index);
+  }
+
+  private long find(String uri) {
+    long hash = hash(uri);
+    int bucket = bucket(hash, directoryBits);
+    long end = file.getInt(directoryPosition + 4L * (bucket + 1));
+    for (long i = file.getInt(directoryPosition + 4L * bucket); i < end; i++) {
+      if (file.getLong(hashesPosition + 8 * i) == hash && keyEquals(i, uri)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Compares the stored URI with the given index to the given URI by encoding the characters of
+   * the given URI to UTF-8 on the fly.
+   */
+  private boolean keyEquals(long index, String uri) {
+    long position = keyBytesPosition + file.getLong(keyOffsetsPosition + 8 * index);
+    long end = keyBytesPosition + file.getLong(keyOffsetsPosition + 8 * (index + 1));
+    for (int i = 0; i < uri.length(); i++) {
+      int codePoint = uri.codePointAt(i);
+      if (Character.isSupplementaryCodePoint(codePoint)) {
+        i++;
+      }
+      if (codePoint < 0x80) {
+        if (position >= end || file.get(position++) != (byte) codePoint) {
+          return false;
+        }
+      } else {
+        int length = codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+        if (position + length > end) {
+          return false;
+        }
+        int leading = length == 2 ? 0xC0 : length == 3 ? 0xE0 : 0xF0;
+        if (file.get(position++) != (byte) (leading | (codePoint >>> (6 * (length - 1))))) {
+          return false;
+        }
+        for (int k = length - 2; k >= 0; k--) {
+          if (file.get(position++) != (byte) (0x80 | ((codePoint >>> (6 * k)) & 0x3F))) {
+            return false;
+          }
+        }
+      }
+    }
+    return position == end;
+  }
+
+  /**
+   * Closes the store file.
+   */
+  @Override
+  public void close() {
+    try {
+      file.close();
+    } catch (IOException ioE) {
+      log.error(ioE.getLocalizedMessage());
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package org.aksw.sessa.importing.dictionary.energy;
+
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class imports the DBpedia PageRank dump of vRank (i.e. triples of the form {@code <uri>
+ * vrank:hasRank ?r. ?r vrank:rankValue ?value.}) into a {@link PageRankStore}. If a URI has
+ * multiple ranks, the first one is used.
+ *
+ * <p>Usage: {@code PageRankStoreBuilder <store file> <RDF file or directory>...}</p>
+ */
+public class PageRankStoreBuilder {
+
+  private static final Logger log = LoggerFactory.getLogger(PageRankStoreBuilder.class);
+  private static final String HAS_RANK_URI = "http://purl.org/voc/vrank#hasRank";
+  private static final String RANK_VALUE_URI = "http://purl.org/voc/vrank#rankValue";
+
+  private final Model model = ModelFactory.createDefaultModel();
+  private final Map<String, Float> ranks = new HashMap<>();
+  // rank nodes for which only one of the two triples was read yet
+  private final Map<Node, String> urisOfRankNodes = new HashMap<>();
+  private final Map<Node, Float> valuesOfRankNodes = new HashMap<>();
+
+  /**
+   * Builds the store file from the RDF files given in the arguments.
+   *
+   * @param args path of the store file, followed by the RDF files or directories
+   * @throws IOException if a file could not be read or the store could not be written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: PageRankStoreBuilder <store file> <RDF file or directory>...");
+      return;
+    }
+    new PageRankStoreBuilder()
+        .build(Arrays.asList(args).subList(1, args.length), Paths.get(args[0]));
+  }
+
+  /**
+   * Imports the ranks from the given RDF files and writes them to the given path.
+   *
+   * @param locations RDF files or directories containing RDF files
+   * @param output path of the store file
+   * @throws IOException if a file could not be read or the store could not be written
+   */
+  public void build(List<String> locations, Path output) throws IOException {
+    long startTime = System.nanoTime();
+    for (String location : locations) {
+      List<String> files;
+      try (Stream<Path> paths = Files.walk(Paths.get(location))) {
+        files = paths.filter(Files::isRegularFile).map(Path::toString).sorted()
+            .collect(Collectors.toList());
+      }
+      for (String file : files) {
+        log.info("Reading ranks from file '{}'.", file);
+        RDFDataMgr.parse(new StreamRDFBase() {
+          @Override
+          public void triple(Triple triple) {
+            addTriple(triple);
+          }
+        }, file);
+      }
+    }
+    if (!urisOfRankNodes.isEmpty()) {
+      log.warn("Found {} URIs with a rank node, but without a rank value.",
+          urisOfRankNodes.size());
+    }
+    write(output);
+    log.info("Finished importing {} ranks (in {}sec).", ranks.size(),
+        (System.nanoTime() - startTime) / (1000 * 1000 * 1000));
+  }
+
+  private void addTriple(Triple triple) {
+    if (!triple.getPredicate().isURI()) {
+      return;
+    }
+    String predicate = triple.getPredicate().getURI();
+    if (HAS_RANK_URI.equals(predicate)) {
+      String uri = model.asRDFNode(triple.getSubject()).toString();
+      Float value = valuesOfRankNodes.remove(triple.getObject());
+      if (value == null) {
+        urisOfRankNodes.put(triple.getObject(), uri);
+      } else {
+        ranks.putIfAbsent(uri, value);
+      }
+    } else if (RANK_VALUE_URI.equals(predicate) && triple.getObject().isLiteral()) {
+      // same conversion as for the results of the SPARQL query
+      float value = model.asRDFNode(triple.getObject()).asLiteral().getFloat();
+      String uri = urisOfRankNodes.remove(triple.getSubject());
+      if (uri == null) {
+        valuesOfRankNodes.put(triple.getSubject(), value);
+      } else {
+        ranks.putIfAbsent(uri, value);
+      }
+    }
+  }
+
+  private void write(Path output) throws IOException {
+    int size = ranks.size();
+    String[] uris = ranks.keySet().toArray(new String[0]);
+    long[] hashes = new long[size];
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      hashes[i] = PageRankStore.hash(uris[i]);
+      order[i] = i;
+    }
+    // unsigned, so that the entries are sorted by their bucket
+    Arrays.sort(order, (i, j) -> Long.compareUnsigned(hashes[i], hashes[j]));
+    int directoryBits = 0;
+    while ((1L << directoryBits) < size && directoryBits < 30) {
+      directoryBits++;
+    }
+
+    CountingOutputStream counter = new CountingOutputStream(
+        new BufferedOutputStream(new FileOutputStream(output.toFile()), 1 << 20));
+    try (DataOutputStream out = new DataOutputStream(counter)) {
+      out.writeLong(PageRankStore.MAGIC);
+      out.writeInt(PageRankStore.VERSION);
+      out.writeInt(directoryBits);
+      out.writeLong(size);
+      // start of every bucket, followed by the end of the last one
+      int entry = 0;
+      for (long bucket = 0; bucket < (1L << directoryBits); bucket++) {
+        while (entry < size
+            && PageRankStore.bucket(hashes[order[entry]], directoryBits) < bucket) {
+          entry++;
+        }
+        out.writeInt(entry);
+      }
+      out.writeInt(size);
+      pad(out, counter);
+      for (Integer i : order) {
+        out.writeLong(hashes[i]);
+      }
+      for (Integer i : order) {
+        out.writeFloat(ranks.get(uris[i]));
+      }
+      pad(out, counter);
+      long offset = 0;
+      out.writeLong(offset);
+      for (Integer i : order) {
+        offset += uris[i].getBytes(StandardCharsets.UTF_8).length;
+        out.writeLong(offset);
+      }
+      for (Integer i : order) {
+        out.write(uris[i].getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  /**
+   * Pads the output with zeros, so that the next value starts at a position divisible by 8.
+   */
+  private static void pad(DataOutputStream out, CountingOutputStream counter)
+      throws IOException {
+    long count = counter.getCount();
+    for (long i = count; i < PageRankStore.align(count); i++) {
+      out.writeByte(0);
+    }
+  }
+}
@@ -0,0 +1,361 @@
+package org.aksw.sessa.importing.dictionary.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.aksw.sessa.candidate.Candidate;
+import org.aksw.sessa.helper.files.handler.FileHandlerInterface;
+import org.aksw.sessa.importing.dictionary.DictionaryInterface;
+import org.aksw.sessa.importing.dictionary.FileBasedDictionary;
+import org.aksw.sessa.importing.dictionary.energy.EnergyScoreCache;
+import org.apache.lucene.search.suggest.Sort;
+import org.apache.lucene.search.suggest.Sort.ByteSequencesReader;
+import org.apache.lucene.search.suggest.Sort.ByteSequencesWriter;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.GrowableByteArrayDataOutput;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.BytesRefFSTEnum;
+import org.apache.lucene.util.fst.BytesRefFSTEnum.InputOutput;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides an in-memory dictionary based on a finite state transducer (FST) given a file handler.
+ * This class is an implementation of the interface {@link DictionaryInterface}.
+ *
+ * <p>The (lower-cased) n-grams are compiled into a Lucene {@link FST}, which shares common prefixes
+ * and suffixes of the n-grams and maps every n-gram to the position of its URI IDs in a byte array.
+ * The IDs are stored delta-encoded, while the URIs themselves are stored only once in a front-coded
+ * {@link UriTable}. Compared to the {@link HashMapDictionary}, which keeps a string and a hash set
+ * per n-gram and a string per URI, the dictionary needs a fraction of the memory.</p>
+ *
+ * <p>As an FST can only be built from sorted input, the entries of all files are collected in a
+ * temporary file and sorted with an external merge sort. The dictionary is built from the sorted
+ * entries as soon as it is used for the first time after new entries were added, i.e. adding
+ * multiple files and building the dictionary once is much faster than building it for every
+ * file.</p>
+ */
+public class FstDictionary extends FileBasedDictionary {
+
+  private static final Logger log = LoggerFactory.getLogger(FstDictionary.class);
+  // separates key and URI in the temporary files; entries containing it are skipped
+  private static final byte SEPARATOR = 0;
+
+  private volatile Index index = new Index(null, new byte[0], new UriTable.Builder().build(), 0);
+  private volatile boolean pending = false;
+  private File pendingFile;
+  private ByteSequencesWriter pendingWriter;
+
+  /**
+   * Initializes an empty dictionary
+   */
+  public FstDictionary() {
+    this(null);
+  }
+
+  /**
+   * Initializes the dictionary with given file handler. The file will be parsed into the
+   * dictionary.
+   *
+   * @param handler handler to be used for filling the dictionary
+   */
+  public FstDictionary(FileHandlerInterface handler) {
+    if (handler != null) {
+      putAll(handler);
+    }
+  }
+
+  /**
+   * Adds the entries in the given file to the dictionary. The entries are collected and the
+   * dictionary is rebuilt as soon as it is used the next time.
+   *
+   * @param handler handler that has file information
+   */
+  @Override
+  public synchronized void putAll(FileHandlerInterface handler) {
+    try {
+      if (!pending) {
+        startPendingEntries();
+      }
+      int count = 0;
+      for (Entry<String, String> entry; (entry = handler.nextEntry()) != null; ) {
+        String key = entry.getKey().toLowerCase();
+        String uri = entry.getValue();
+        if (key.indexOf(SEPARATOR) >= 0 || uri.indexOf(SEPARATOR) >= 0) {
+          log.debug("Skipping entry with null character: {}", entry);
+          continue;
+        }
+        writeEntry(new BytesRef(uri), new BytesRef(key));
+        count++;
+      }
+      log.debug("Collected {} entries from file '{}'", count, handler.getFileName());
+    } catch (IOException e) {
+      log.error(e.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * Given a n-gram, returns a set of URIs related to it or an empty set if this dictionary contains
+   * no mapping for the n-gram. The energy scores are looked up in and added to the given cache.
+   *
+   * @param nGram n-gram whose associated value is to be returned
+   * @param cache cache of the energy scores calculated for the current question
+   * @return mapping of n-grams to set of URIs
+   */
+  @Override
+  public Set<Candidate> get(String nGram, EnergyScoreCache cache) {
+    Index current = getIndex();
+    Set<Candidate> candidateSet = new HashSet<>();
+    if (current.fst != null) {
+      try {
+        Long offset = Util.get(current.fst, new BytesRef(nGram.toLowerCase()));
+        if (offset != null) {
+          ByteArrayDataInput postings = new ByteArrayDataInput(current.postings);
+          postings.setPosition(offset.intValue());
+          int id = 0;
+          for (int count = postings.readVInt(); count > 0; count--) {
+            id += postings.readVInt();
+            candidateSet.add(new Candidate(current.uris.get(id), nGram));
+          }
+        }
+      } catch (IOException e) {
+        log.error(e.getLocalizedMessage());
+      }
+    }
+    Set<Candidate> filteredCandidateSet = this.filter(nGram, candidateSet, cache);
+    filteredCandidateSet = this.calculateEnergy(filteredCandidateSet, nGram, cache);
+    return filteredCandidateSet;
+  }
+
+  /**
+   * Returns true, as the lookups only read the immutable index, which is built at most once by
+   * one of them.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  /**
+   * Returns the size of the dictionary, i.e. how many pairs of keys and values.
+   */
+  @Override
+  public int size() {
+    return (int) Math.min(Integer.MAX_VALUE, getIndex().size);
+  }
+
+  private Index getIndex() {
+    if (pending) {
+      build();
+    }
+    return index;
+  }
+
+  /**
+   * Starts collecting new entries. As the dictionary is rebuilt from scratch, the entries which
+   * are already in the dictionary are collected again.
+   */
+  private void startPendingEntries() throws IOException {
+    pendingFile = File.createTempFile("sessa-fst-", ".entries", Sort.defaultTempDir());
+    pendingFile.deleteOnExit();
+    pendingWriter = new ByteSequencesWriter(pendingFile);
+    pending = true;
+    Index current = index;
+    if (current.fst != null) {
+      BytesRefFSTEnum<Long> fstEnum = new BytesRefFSTEnum<>(current.fst);
+      ByteArrayDataInput postings = new ByteArrayDataInput(current.postings);
+      for (InputOutput<Long> keyOffset; (keyOffset = fstEnum.next()) != null; ) {
+        postings.setPosition(keyOffset.output.intValue());
+        int id = 0;
+        for (int count = postings.readVInt(); count > 0; count--) {
+          id += postings.readVInt();
+          writeEntry(new BytesRef(current.uris.get(id)), keyOffset.input);
+        }
+      }
+    }
+  }
+
+  private void writeEntry(BytesRef uri, BytesRef key) throws IOException {
+    byte[] entry = new byte[uri.length + 1 + key.length];
+    System.arraycopy(uri.bytes, uri.offset, entry, 0, uri.length);
+    entry[uri.length] = SEPARATOR;
+    System.arraycopy(key.bytes, key.offset, entry, uri.length + 1, key.length);
+    pendingWriter.write(entry);
+  }
+
+  /**
+   * Builds the dictionary from the collected entries in two passes. First, the entries are sorted
+   * by URI, so that every URI gets its ID and duplicates are removed. Afterwards, the pairs of key
+   * and ID are sorted by key and added to the FST.
+   */
+  private synchronized void build() {
+    if (!pending) {
+      return;
+    }
+    long startTime = System.nanoTime();
+    File sortedEntries = null;
+    File keyIds = null;
+    File sortedKeyIds = null;
+    try {
+      pendingWriter.close();
+      Sort sort = new Sort();
+      sortedEntries = createTempFile();
+      sort.sort(pendingFile, sortedEntries);
+      UriTable.Builder uris = new UriTable.Builder();
+      keyIds = createTempFile();
+      assignUriIds(sortedEntries, uris, keyIds);
+      sortedKeyIds = createTempFile();
+      sort.sort(keyIds, sortedKeyIds);
+      index = buildIndex(sortedKeyIds, uris.build());
+      log.info("Built FST dictionary with {} entries in {} ms (FST: {} KB, URI IDs: {} KB, "
+              + "URIs: {} KB).", index.size, (System.nanoTime() - startTime) / 1000000,
+          index.fst == null ? 0 : index.fst.sizeInBytes() >> 10, index.postings.length >> 10,
+          index.uris.sizeInBytes() >> 10);
+    } catch (IOException e) {
+      log.error(e.getLocalizedMessage());
+    } finally {
+      pending = false;
+      pendingWriter = null;
+      for (File file : Arrays.asList(pendingFile, sortedEntries, keyIds, sortedKeyIds)) {
+        if (file != null && !file.delete()) {
+          log.debug("Could not delete temporary file '{}'", file);
+        }
+      }
+    }
+  }
+
+  private static File createTempFile() throws IOException {
+    return File.createTempFile("sessa-fst-", ".sorted", Sort.defaultTempDir());
+  }
+
+  /**
+   * Reads the entries sorted by URI, adds every URI to the table and writes the pairs of key and
+   * URI ID to the given file.
+   */
+  private static void assignUriIds(File sortedEntries, UriTable.Builder uris, File keyIds)
+      throws IOException {
+    try (ByteSequencesReader reader = new ByteSequencesReader(sortedEntries);
+        ByteSequencesWriter writer = new ByteSequencesWriter(keyIds)) {
+      BytesRef entry = new BytesRef();
+      BytesRef previousEntry = new BytesRef();
+      BytesRef previousUri = new BytesRef();
+      int id = -1;
+      while (reader.read(entry)) {
+        if (id >= 0 && entry.bytesEquals(previousEntry)) {
+          continue;
+        }
+        int separator = indexOfSeparator(entry);
+        BytesRef uri = new BytesRef(entry.bytes, entry.offset, separator - entry.offset);
+        if (id < 0 || !uri.bytesEquals(previousUri)) {
+          id = uris.add(uri);
+          previousUri.copyBytes(uri);
+        }
+        int keyLength = entry.offset + entry.length - separator - 1;
+        byte[] keyId = new byte[keyLength + 5];
+        System.arraycopy(entry.bytes, separator + 1, keyId, 0, keyLength);
+        keyId[keyLength] = SEPARATOR;
+        // big-endian, so that the IDs of a key are sorted
+        keyId[keyLength + 1] = (byte) (id >>> 24);
+        keyId[keyLength + 2] = (byte) (id >>> 16);
+        keyId[keyLength + 3] = (byte) (id >>> 8);
+        keyId[keyLength + 4] = (byte) id;
+        writer.write(keyId);
+        previousEntry.copyBytes(entry);
+      }
+    }
+  }
+
+  /**
+   * Reads the pairs of key and URI ID sorted by key and builds the FST together with the
+   * delta-encoded URI IDs of every key.
+   */
+  private static Index buildIndex(File sortedKeyIds, UriTable uris) throws IOException {
+    Builder<Long> fstBuilder =
+        new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+    GrowableByteArrayDataOutput postings = new GrowableByteArrayDataOutput(1024);
+    IntsRef scratch = new IntsRef();
+    BytesRef currentKey = new BytesRef();
+    int[] ids = new int[16];
+    int count = 0;
+    long size = 0;
+    try (ByteSequencesReader reader = new ByteSequencesReader(sortedKeyIds)) {
+      BytesRef keyId = new BytesRef();
+      while (reader.read(keyId)) {
+        BytesRef key = new BytesRef(keyId.bytes, keyId.offset, keyId.length - 5);
+        int end = keyId.offset + keyId.length;
+        int id = (keyId.bytes[end - 4] & 0xFF) << 24 | (keyId.bytes[end - 3] & 0xFF) << 16
+            | (keyId.bytes[end - 2] & 0xFF) << 8 | (keyId.bytes[end - 1] & 0xFF);
+        if (count > 0 && !key.bytesEquals(currentKey)) {
+          fstBuilder.add(Util.toIntsRef(currentKey, scratch), (long) postings.length);
+          writeIds(postings, ids, count);
+          size += count;
+          count = 0;
+        }
+        if (count == 0) {
+          currentKey.copyBytes(key);
+        }
+        if (count == 0 || ids[count - 1] != id) {
+          ids = ArrayUtil.grow(ids, count + 1);
+          ids[count++] = id;
+        }
+      }
+    }
+    if (count > 0) {
+      fstBuilder.add(Util.toIntsRef(currentKey, scratch), (long) postings.length);
+      writeIds(postings, ids, count);
+      size += count;
+    }
+    return new Index(fstBuilder.finish(), Arrays.copyOf(postings.bytes, postings.length), uris,
+        size);
+  }
+
+  private static void writeIds(GrowableByteArrayDataOutput postings, int[] ids, int count)
+      throws IOException {
+    postings.writeVInt(count);
+    int previous = 0;
+    for (int i = 0; i < count; i++) {
+      postings.writeVInt(ids[i] - previous);
+      previous = ids[i];
+    }
+  }
+
+  private static int indexOfSeparator(BytesRef entry) {
+    for (int i = entry.offset; i < entry.offset + entry.length; i++) {
+      if (entry.bytes[i] == SEPARATOR) {
+        return i;
+      }
+    }
+    throw new IllegalStateException("Entry without separator.");
+  }
+
+  /**
+   * Immutable state of the dictionary, which is replaced as a whole when the dictionary is
+   * rebuilt.
+   */
+  private static final class Index {
+
+    // null if the dictionary is empty
+    private final FST<Long> fst;
+    private final byte[] postings;
+    private final UriTable uris;
+    private final long size;
+
+    private Index(FST<Long> fst, byte[] postings, UriTable uris, long size) {
+      this.fst = fst;
+      this.postings = postings;
+      this.uris = uris;
+      this.size = size;
+    }
+  }
+}
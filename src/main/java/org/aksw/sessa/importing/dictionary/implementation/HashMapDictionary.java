@@ -10,6 +10,7 @@ import org.aksw.sessa.candidate.Candidate;
 import org.aksw.sessa.helper.files.handler.FileHandlerInterface;
 import org.aksw.sessa.importing.dictionary.DictionaryInterface;
 import org.aksw.sessa.importing.dictionary.FileBasedDictionary;
+import org.aksw.sessa.importing.dictionary.energy.EnergyScoreCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,7 +60,9 @@ public class HashMapDictionary extends FileBasedDictionary {
         if (values == null) {
           values = new HashSet<>();
         }
-        values.add(entry.getValue());
+        if (values.add(entry.getValue())) {
+          dictionarySize++;
+        }
         log.trace("Adding to dictionary: {} - {}", key, values);
         dictionary.put(key, values);
       }
@@ -70,24 +73,24 @@ public class HashMapDictionary extends FileBasedDictionary {
 
   /**
    * Given a n-gram, returns a set of URIs related to it or null if this map contains no mapping for
-   * the key.
+   * the key. The energy scores are looked up in and added to the given cache.
    *
    * @param nGram n-gram whose associated value is to be returned
+   * @param cache cache of the energy scores calculated for the current question
    * @return mapping of n-grams to set of URIs
    */
   @Override
-  public Set<Candidate> get(String nGram) {
+  public Set<Candidate> get(String nGram, EnergyScoreCache cache) {
     Set<String> foundUris = dictionary.get(nGram);
     Set<Candidate> candidateSet = new HashSet<>();
     if (foundUris != null) {
       for (String uri : foundUris) {
         Candidate candidate = new Candidate(uri, nGram);
         candidateSet.add(candidate);
-        dictionarySize++;
       }
     }
-    Set<Candidate> filteredCandidateSet = this.filter(nGram, candidateSet);
-    filteredCandidateSet = this.calculateEnergy(filteredCandidateSet, nGram);
+    Set<Candidate> filteredCandidateSet = this.filter(nGram, candidateSet, cache);
+    filteredCandidateSet = this.calculateEnergy(filteredCandidateSet, nGram, cache);
     return filteredCandidateSet;
   }
 
@@ -100,6 +103,16 @@ public class HashMapDictionary extends FileBasedDictionary {
     addToDictionary(handler);
   }
 
+  /**
+   * Returns true, as the lookups only read the map.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
   /**
    * Returns the size of the dictionary, i.e. how many pairs of keys and values.
    */
@@ -0,0 +1,184 @@
+package org.aksw.sessa.importing.dictionary.implementation;
+
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the import progress of every dictionary file, so that an interrupted import can be
+ * resumed and unchanged files are not imported again. The progress is stored in the user data of
+ * the Lucene commits, i.e. it is always consistent with the committed index.
+ *
+ * <p>For every file, the number of entries read from it is stored together with its fingerprint
+ * (size, modification time and a hash of its content). If the fingerprint of a file is still the
+ * same, completed files are skipped and the first entries of partially imported files are skipped.
+ * As the content hash is only calculated if the size or the modification time changed, touching a
+ * file does not lead to a new import.</p>
+ *
+ * <p>The number of read entries is only increased after the entry was added to the index writer,
+ * so a commit may contain more entries than recorded, but never fewer. The surplus is found again
+ * after a restart and skipped by the duplicate detection of the dictionary.</p>
+ */
+class ImportProgress {
+
+  private static final Logger log = LoggerFactory.getLogger(ImportProgress.class);
+  private static final String KEY_PREFIX = "sessa.import:";
+
+  private final Map<String, FileProgress> files = new ConcurrentHashMap<>();
+
+  /**
+   * Reads the progress from the given user data of a commit.
+   *
+   * @param commitData user data of a commit
+   */
+  ImportProgress(Map<String, String> commitData) {
+    for (Entry<String, String> entry : commitData.entrySet()) {
+      if (entry.getKey().startsWith(KEY_PREFIX)) {
+        try {
+          files.put(entry.getKey().substring(KEY_PREFIX.length()),
+              FileProgress.parse(entry.getValue()));
+        } catch (RuntimeException e) {
+          log.warn("Ignoring malformed import progress '{}'.", entry);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the user data for the next commit, which contains the current progress of all files.
+   *
+   * @return user data for the next commit
+   */
+  Map<String, String> toCommitData() {
+    Map<String, String> commitData = new HashMap<>();
+    for (Entry<String, FileProgress> entry : files.entrySet()) {
+      commitData.put(KEY_PREFIX + entry.getKey(), entry.getValue().toString());
+    }
+    return commitData;
+  }
+
+  /**
+   * Removes the progress of all files, e.g. because the index was cleared.
+   */
+  void clear() {
+    files.clear();
+  }
+
+  /**
+   * Starts the import of the given file and returns its progress. If the file was (partially)
+   * imported before and did not change, the previous progress is returned. Otherwise, the file
+   * starts from the beginning.
+   *
+   * @param fileName name of the file
+   * @return progress of the file
+   * @throws IOException if the file could not be read
+   */
+  FileProgress start(String fileName) throws IOException {
+    File file = new File(fileName).getAbsoluteFile();
+    String key = file.getPath();
+    long size = file.length();
+    long lastModified = file.lastModified();
+    FileProgress previous = files.get(key);
+    if (previous != null) {
+      if (previous.size == size && previous.lastModified == lastModified) {
+        return previous;
+      }
+      String hash = hash(file);
+      if (previous.size == size && previous.hash.equals(hash)) {
+        FileProgress touched = new FileProgress(hash, size, lastModified,
+            previous.readEntries.get(), previous.complete);
+        files.put(key, touched);
+        return touched;
+      }
+      log.info("File '{}' changed since the last import. Importing it again.", fileName);
+      FileProgress changed = new FileProgress(hash, size, lastModified, 0, false);
+      files.put(key, changed);
+      return changed;
+    }
+    FileProgress progress = new FileProgress(hash(file), size, lastModified, 0, false);
+    files.put(key, progress);
+    return progress;
+  }
+
+  /**
+   * Returns the progress of the given file.
+   *
+   * @param fileName name of the file
+   * @return progress of the file or null if the file was not imported
+   */
+  FileProgress get(String fileName) {
+    return files.get(new File(fileName).getAbsoluteFile().getPath());
+  }
+
+  private static String hash(File file) throws IOException {
+    return com.google.common.io.Files.asByteSource(file).hash(Hashing.murmur3_128()).toString();
+  }
+
+  /**
+   * Import progress of a single file.
+   */
+  static final class FileProgress {
+
+    private final String hash;
+    private final long size;
+    private final long lastModified;
+    private final AtomicLong readEntries;
+    private volatile boolean complete;
+
+    private FileProgress(String hash, long size, long lastModified, long readEntries,
+        boolean complete) {
+      this.hash = hash;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.readEntries = new AtomicLong(readEntries);
+      this.complete = complete;
+    }
+
+    private static FileProgress parse(String value) {
+      String[] parts = value.split(";");
+      return new FileProgress(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+          Long.parseLong(parts[3]), Boolean.parseBoolean(parts[4]));
+    }
+
+    /**
+     * Returns the number of entries which were read and (if they were no duplicates) added to the
+     * index writer.
+     *
+     * @return number of processed entries
+     */
+    long getReadEntries() {
+      return readEntries.get();
+    }
+
+    /**
+     * Increases the number of processed entries. Has to be called after the entry was added to the
+     * index writer.
+     */
+    void entryProcessed() {
+      readEntries.incrementAndGet();
+    }
+
+    boolean isComplete() {
+      return complete;
+    }
+
+    /**
+     * Marks the file as completely read.
+     */
+    void complete() {
+      complete = true;
+    }
+
+    @Override
+    public String toString() {
+      return hash + ";" + size + ";" + lastModified + ";" + readEntries.get() + ";" + complete;
+    }
+  }
+}
@@ -1,43 +1,62 @@
 package org.aksw.sessa.importing.dictionary.implementation;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import org.aksw.sessa.candidate.Candidate;
 import org.aksw.sessa.helper.files.handler.FileHandlerInterface;
 import org.aksw.sessa.importing.config.ConfigurationInitializer;
 import org.aksw.sessa.importing.dictionary.DictionaryInterface;
 import org.aksw.sessa.importing.dictionary.FileBasedDictionary;
+import org.aksw.sessa.importing.dictionary.energy.EnergyScoreCache;
 import org.aksw.sessa.importing.dictionary.util.DictionaryEntrySimilarity;
+import org.aksw.sessa.importing.dictionary.util.FuzzyKeyMatcher;
+import org.aksw.sessa.importing.dictionary.util.FuzzyKeyMatcher.Match;
 import org.apache.commons.configuration2.Configuration;
 import org.apache.lucene.analysis.core.SimpleAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
-import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiFields;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.FuzzyQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopScoreDocCollector;
-import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.search.similarities.TFIDFSimilarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.Version;
 
 //import org.apache.lucene.store.RAMDirectory;
@@ -47,6 +66,16 @@ import org.apache.lucene.util.Version;
  * variable DEFAULT_PATH_TO_INDEX. This class is an implementation of the interface {@link
  * DictionaryInterface}.
  *
+ * <p>The searchers are managed by a {@link SearcherManager}, which opens near-real-time readers
+ * from the index writer. Every lookup acquires the current searcher and releases it afterwards, so
+ * readers are closed as soon as they are not used anymore and lookups can run while entries are
+ * imported. Besides after every commit, the searcher is refreshed periodically in the background
+ * (see {@code dictionary.lucene.refresh_interval}).</p>
+ *
+ * <p>The import progress of every file is stored together with each commit (see {@link
+ * ImportProgress}). Files which were completely imported and did not change are skipped, and an
+ * interrupted import continues after the last committed entry of the file.</p>
+ *
  * @author Simon Bordewisch
  */
 public class LuceneDictionary extends FileBasedDictionary implements AutoCloseable {
@@ -61,6 +90,21 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
   public static final List<String> STOP_WORDS = ImmutableList
       .of("the", "of", "on", "in", "for", "at", "to");
   private static final String LUCENE_LOCATION_KEY = "dictionary.lucene.location";
+  private static final String REFRESH_INTERVAL_KEY = "dictionary.lucene.refresh_interval";
+  private static final long DEFAULT_REFRESH_INTERVAL = 1000;
+  private static final String FUZZY_MAX_EDITS_KEY = "dictionary.lucene.fuzzy.max_edits";
+  private static final int DEFAULT_FUZZY_MAX_EDITS = 1;
+  private static final String FUZZY_MIN_LENGTH_KEY = "dictionary.lucene.fuzzy.min_length";
+  private static final int DEFAULT_FUZZY_MIN_LENGTH = 4;
+  private static final String BULK_THREADS_KEY = "dictionary.lucene.bulk_import.threads";
+  private static final int DEFAULT_BULK_THREADS = 4;
+  private static final String BULK_RAM_BUFFER_KEY = "dictionary.lucene.bulk_import.ram_buffer_mb";
+  private static final double DEFAULT_BULK_RAM_BUFFER = 256;
+  private static final String BULK_CHECKPOINT_KEY = "dictionary.lucene.bulk_import.checkpoint";
+  /**
+   * Number of read entries after which the progress of a bulk import is logged.
+   */
+  private static final long BULK_PROGRESS_INTERVAL = 1000000;
   /**
    * Contains the field name for the keys in Lucene.
    */
@@ -77,10 +121,12 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
    */
   private int bufferSize = 1000000;
   private Directory directory;
-  private Similarity similarity;
-  private IndexSearcher iSearcher;
-  private DirectoryReader iReader;
+  private TFIDFSimilarity similarity;
+  private FuzzyKeyMatcher fuzzyKeyMatcher;
+  private SearcherManager searcherManager;
   private IndexWriter iWriter;
+  private ScheduledExecutorService refresher;
+  private ImportProgress importProgress;
   private int maxResultSize;
 
   /**
@@ -134,17 +180,52 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
       similarity = new DictionaryEntrySimilarity();
       config.setSimilarity(similarity);
       iWriter = new IndexWriter(directory, config);
-      commitAndUpdate(); // ones to set the iReader
+      importProgress = new ImportProgress(iWriter.getCommitData());
+      commit();
+      searcherManager = new SearcherManager(iWriter, true, new SearcherFactory() {
+        @Override
+        public IndexSearcher newSearcher(IndexReader reader) {
+          IndexSearcher searcher = new IndexSearcher(reader);
+          searcher.setSimilarity(similarity);
+          return searcher;
+        }
+      });
+      Configuration configuration = ConfigurationInitializer.getConfiguration();
+      fuzzyKeyMatcher = new FuzzyKeyMatcher(
+          configuration.getInt(FUZZY_MAX_EDITS_KEY, DEFAULT_FUZZY_MAX_EDITS),
+          configuration.getInt(FUZZY_MIN_LENGTH_KEY, DEFAULT_FUZZY_MIN_LENGTH), similarity);
+      startRefresher(configuration.getLong(REFRESH_INTERVAL_KEY, DEFAULT_REFRESH_INTERVAL));
       if (handler != null) {
         putAll(handler);
       }
-      log.debug("Loaded LuceneDictionary. Total number of entries in dictionary: {}",
-          iReader.numDocs());
+      log.debug("Loaded LuceneDictionary. Total number of entries in dictionary: {}", size());
     } catch (Exception e) {
       log.error(e.getLocalizedMessage());
     }
   }
 
+  /**
+   * Refreshes the searcher periodically with the given interval, so that entries added by another
+   * thread become visible without waiting for the next commit.
+   *
+   * @param interval refresh interval in milliseconds; the searcher is not refreshed periodically if
+   * the interval is not positive
+   */
+  private void startRefresher(long interval) {
+    if (interval <= 0) {
+      return;
+    }
+    refresher = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("lucene-refresh-%d").setDaemon(true).build());
+    refresher.scheduleWithFixedDelay(() -> {
+      try {
+        searcherManager.maybeRefresh();
+      } catch (Exception e) {
+        log.error("Could not refresh the Lucene searcher: {}", e.getLocalizedMessage());
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
   /**
    * Contains the buffer size, i.e. the number of entries in the buffer-hashmap before the changes
    * are committed to the Lucene dictionary. Smaller numbers will lead to performance loss due to
@@ -156,57 +237,84 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
 
   /**
    * Given a n-gram, returns a set of URIs related to it or null if this map contains no mapping for
-   * the key.
+   * the key. The energy scores are looked up in and added to the given cache.
+   *
+   * <p>The keys are found by a {@link FuzzyKeyMatcher}, i.e. every word of the n-gram has to be
+   * contained in the key, where words with at least {@code dictionary.lucene.fuzzy.min_length}
+   * characters may differ by up to {@code dictionary.lucene.fuzzy.max_edits} edits.</p>
    *
    * @param nGram n-gram whose associated value is to be returned
+   * @param cache cache of the energy scores calculated for the current question
    * @return mapping of n-grams to set of URIs
    */
   @Override
-  public Set<Candidate> get(final String nGram) {
+  public Set<Candidate> get(final String nGram, EnergyScoreCache cache) {
     if (STOP_WORDS.contains(nGram.toLowerCase())) {
       return new HashSet<>();
     }
     Set<Candidate> foundCandidateSet = new HashSet<>();
+    IndexSearcher iSearcher = null;
     try {
-      String[] uniGrams = nGram.split(" ");
-      BooleanQuery queryTerms = new BooleanQuery();
-      for (String uniGram : uniGrams) {
-        Query query;
-        if (uniGram.length() < 4) {
-          query = new TermQuery(new Term(FIELD_NAME_KEY, uniGram));
-        } else {
-          query = new FuzzyQuery(new Term(FIELD_NAME_KEY, uniGram), 1);
-        }
-        queryTerms.add(query, BooleanClause.Occur.MUST);
-      }
-      log.trace("{}", queryTerms.toString());
-
-      TopScoreDocCollector collector = TopScoreDocCollector
-          .create(maxResultSize, true);
-      iSearcher.search(queryTerms, collector);
-      ScoreDoc[] hits = collector.topDocs().scoreDocs;
-      log.trace("{}", hits);
-      for (ScoreDoc hit : hits) {
-        Document hitDoc = iSearcher.doc(hit.doc);
+      iSearcher = searcherManager.acquire();
+      long startTime = System.nanoTime();
+      List<Match> matches = fuzzyKeyMatcher
+          .match(iSearcher.getIndexReader(), FIELD_NAME_KEY, nGram, maxResultSize);
+      for (Match match : matches) {
+        Document hitDoc = iSearcher.doc(match.getDoc());
         String key = hitDoc.get(FIELD_NAME_KEY);
         String uri = hitDoc.get(FIELD_NAME_VALUE);
+        log.trace("Found '{}' for '{}' with {} edits", key, nGram, match.getEdits());
         Candidate candidate = new Candidate(uri, key);
         foundCandidateSet.add(candidate);
       }
+      log.debug("Lookup of '{}' found {} entries in {} \u00b5s", nGram, matches.size(),
+          (System.nanoTime() - startTime) / 1000);
     } catch (Exception e) {
+      failureCount.incrementAndGet();
       log.error(e.getLocalizedMessage() + " -> " + nGram, e);
+    } finally {
+      release(iSearcher);
     }
-    foundCandidateSet = this.filter(nGram, foundCandidateSet);
-    foundCandidateSet = this.calculateEnergy(foundCandidateSet, nGram);
+    foundCandidateSet = this.filter(nGram, foundCandidateSet, cache);
+    foundCandidateSet = this.calculateEnergy(foundCandidateSet, nGram, cache);
     return foundCandidateSet;
   }
 
+  /**
+   * Returns true, as every lookup acquires its own searcher from the searcher manager.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
   /**
    * Returns the size of the dictionary, i.e. how many pairs of keys and values.
    */
   @Override
   public int size() {
-    return iReader.numDocs();
+    IndexSearcher iSearcher = null;
+    try {
+      iSearcher = searcherManager.acquire();
+      return iSearcher.getIndexReader().numDocs();
+    } catch (IOException ioE) {
+      log.error(ioE.getLocalizedMessage());
+      return 0;
+    } finally {
+      release(iSearcher);
+    }
+  }
+
+  private void release(IndexSearcher iSearcher) {
+    if (iSearcher != null) {
+      try {
+        searcherManager.release(iSearcher);
+      } catch (IOException ioE) {
+        log.error(ioE.getLocalizedMessage());
+      }
+    }
   }
 
   /**
@@ -214,8 +322,13 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
    */
   @Override
   public void close() {
+    if (refresher != null) {
+      refresher.shutdownNow();
+    }
     try {
-      iReader.close();
+      searcherManager.close();
+      // pending entries are committed together with their import progress
+      commit();
       iWriter.close();
       directory.close();
     } catch (IOException e) {
@@ -229,6 +342,7 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
   public void clearIndex() {
     try {
       iWriter.deleteAll();
+      importProgress.clear();
       commitAndUpdate();
     } catch (IOException ioE) {
       log.error(ioE.getLocalizedMessage());
@@ -244,9 +358,16 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
   public void putAll(FileHandlerInterface handler) {
     try {
       log.debug("Starting indexing for file '{}'", handler.getFileName());
+      ImportProgress.FileProgress progress = importProgress.start(handler.getFileName());
+      if (progress.isComplete()) {
+        log.info("Skipping file '{}', which was already imported.", handler.getFileName());
+        return;
+      }
+      long skippedEntries = skipImportedEntries(handler, progress);
       int count = 0;
       Map<String, Set<String>> candidateEntries = new HashMap<>();
       for (Entry<String, String> entry; (entry = handler.nextEntry()) != null; ) {
+        boolean added = false;
         String key = entry.getKey().toLowerCase();
         String value = entry.getValue();
         log.trace("Checking entry {}", entry);
@@ -261,6 +382,7 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
               candidateEntries.put(key, tmp);
               addDocumentToIndex(key, value);
               count++;
+              added = true;
             }
           } else {
             log.trace("\tEntry not in buffer");
@@ -269,21 +391,198 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
             candidateEntries.put(key, tmp);
             addDocumentToIndex(key, value);
             count++;
+            added = true;
           }
         }
-        if (count % bufferSize == 0) {
+        progress.entryProcessed();
+        // only commits when the count just reached the buffer size, not for every skipped entry
+        if (added && count % bufferSize == 0) {
           candidateEntries.clear();
           commitAndUpdate();
         }
       }
+      progress.complete();
       commitAndUpdate();
+      log.debug("Number of entries skipped (imported before): {}", skippedEntries);
       log.debug("Number of entries added: {}", count);
-      log.debug("Total number of entries in index: {}", iReader.numDocs());
+      log.debug("Total number of entries in index: {}", size());
     } catch (IOException e) {
       log.error(e.getLocalizedMessage());
     }
   }
 
+  /**
+   * Adds the entries of the given files to the dictionary in bulk mode. In contrast to {@link
+   * #putAll(FileHandlerInterface)}, the index is not searched for every entry. Instead, the
+   * hashes of all (key, URI) pairs in the index and of all imported pairs are kept in an {@link
+   * OffHeapLongSet}, so that duplicates are skipped (the chance that a new pair is skipped because
+   * of a collision of the 64-bit hashes is negligible).
+   *
+   * <p>The files are parsed by multiple threads (see {@code
+   * dictionary.lucene.bulk_import.threads}), each of them with its own file handler, which add the
+   * documents to the (thread-safe) index writer. During the import, the RAM buffer of the writer
+   * is set to {@code dictionary.lucene.bulk_import.ram_buffer_mb}. Changes are committed at the
+   * end and, if {@code dictionary.lucene.bulk_import.checkpoint} is positive, after every given
+   * number of added entries. The throughput and the peak heap usage are logged.</p>
+   *
+   * @param files files which should be imported
+   * @param handlerFactory creates a new file handler for every file
+   */
+  public void putAllBulk(List<String> files, Supplier<FileHandlerInterface> handlerFactory) {
+    Configuration configuration = ConfigurationInitializer.getConfiguration();
+    int threads = Math.max(1, configuration.getInt(BULK_THREADS_KEY, DEFAULT_BULK_THREADS));
+    double ramBufferSize = configuration.getDouble(BULK_RAM_BUFFER_KEY, DEFAULT_BULK_RAM_BUFFER);
+    long checkpoint = configuration.getLong(BULK_CHECKPOINT_KEY, 0);
+
+    long startTime = System.nanoTime();
+    resetPeakHeapUsage();
+    OffHeapLongSet importedEntries = new OffHeapLongSet();
+    AtomicLong readCount = new AtomicLong();
+    AtomicLong addedCount = new AtomicLong();
+    double oldRamBufferSize = iWriter.getConfig().getRAMBufferSizeMB();
+    iWriter.getConfig().setRAMBufferSizeMB(ramBufferSize);
+    ExecutorService parsers = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("lucene-bulk-import-%d").setDaemon(true).build());
+    try {
+      addIndexedEntries(importedEntries);
+      log.info("Starting bulk import of {} files with {} threads ({} entries in index).",
+          files.size(), threads, importedEntries.size());
+      List<Future<?>> futures = new ArrayList<>();
+      // files are only imported once, as their progress is tracked per file
+      for (String file : new LinkedHashSet<>(files)) {
+        futures.add(parsers.submit(() -> {
+          importFile(file, handlerFactory.get(), importedEntries, readCount, addedCount,
+              checkpoint, startTime);
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException eE) {
+          log.error("Bulk import failed for a file: {}", eE.getCause().getLocalizedMessage());
+        }
+      }
+      commitAndUpdate();
+    } catch (IOException | InterruptedException e) {
+      log.error(e.getLocalizedMessage());
+    } finally {
+      parsers.shutdownNow();
+      iWriter.getConfig().setRAMBufferSizeMB(oldRamBufferSize);
+    }
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+    log.info("Finished bulk import: read {} entries, added {} entries in {} sec ({} entries/sec). "
+            + "Peak heap usage: {} MB, off-heap set: {} MB. Total number of entries in index: {}",
+        readCount.get(), addedCount.get(), String.format("%.1f", seconds),
+        (long) (readCount.get() / Math.max(seconds, 1e-3)), getPeakHeapUsage() >> 20,
+        importedEntries.allocatedBytes() >> 20, size());
+  }
+
+  /**
+   * Adds the hashes of all entries in the index to the given set.
+   */
+  private void addIndexedEntries(OffHeapLongSet entries) throws IOException {
+    IndexSearcher iSearcher = searcherManager.acquire();
+    try {
+      IndexReader reader = iSearcher.getIndexReader();
+      Bits liveDocs = MultiFields.getLiveDocs(reader);
+      for (int doc = 0; doc < reader.maxDoc(); doc++) {
+        if (liveDocs == null || liveDocs.get(doc)) {
+          Document document = reader.document(doc);
+          entries.add(hashEntry(document.get(FIELD_NAME_KEY), document.get(FIELD_NAME_VALUE)));
+        }
+      }
+    } finally {
+      release(iSearcher);
+    }
+  }
+
+  private void importFile(String file, FileHandlerInterface handler,
+      OffHeapLongSet importedEntries, AtomicLong readCount, AtomicLong addedCount,
+      long checkpoint, long startTime) throws IOException {
+    log.debug("Starting bulk indexing for file '{}'", file);
+    // the document and its fields are reused for all entries of the file
+    TextField keyField = new TextField(FIELD_NAME_KEY, "", Store.YES);
+    StringField valueField = new StringField(FIELD_NAME_VALUE, "", Store.YES);
+    Document doc = new Document();
+    doc.add(keyField);
+    doc.add(valueField);
+    try {
+      ImportProgress.FileProgress progress = importProgress.start(file);
+      if (progress.isComplete()) {
+        log.info("Skipping file '{}', which was already imported.", file);
+        return;
+      }
+      handler.loadFile(file);
+      readCount.addAndGet(skipImportedEntries(handler, progress));
+      for (Entry<String, String> entry; (entry = handler.nextEntry()) != null; ) {
+        String key = entry.getKey().toLowerCase();
+        String value = entry.getValue();
+        long read = readCount.incrementAndGet();
+        if (read % BULK_PROGRESS_INTERVAL == 0) {
+          log.info("Read {} entries ({} entries/sec).", read,
+              (long) (read / Math.max((System.nanoTime() - startTime) / 1e9, 1e-3)));
+        }
+        if (importedEntries.add(hashEntry(key, value))) {
+          keyField.setStringValue(key);
+          valueField.setStringValue(value);
+          iWriter.addDocument(doc);
+          progress.entryProcessed();
+          long added = addedCount.incrementAndGet();
+          if (checkpoint > 0 && added % checkpoint == 0) {
+            commit();
+            log.info("Committed checkpoint after {} added entries.", added);
+          }
+        } else {
+          progress.entryProcessed();
+        }
+      }
+      progress.complete();
+    } finally {
+      handler.close();
+    }
+  }
+
+  /**
+   * Returns the 64-bit hash of the given entry. Like in {@link #putAll(FileHandlerInterface)}, the
+   * key and the URI are compared case-insensitively.
+   */
+  static long hashEntry(String key, String uri) {
+    long hash = 0xcbf29ce484222325L;
+    String lowerCaseKey = key.toLowerCase();
+    for (int i = 0; i < lowerCaseKey.length(); i++) {
+      hash = (hash ^ lowerCaseKey.charAt(i)) * 0x100000001b3L;
+    }
+    // separates the key from the URI
+    hash = (hash ^ 0xFFFF) * 0x100000001b3L;
+    String lowerCaseUri = uri.toLowerCase();
+    for (int i = 0; i < lowerCaseUri.length(); i++) {
+      hash = (hash ^ lowerCaseUri.charAt(i)) * 0x100000001b3L;
+    }
+    // finalizer of SplitMix64, so that all bits are well distributed
+    hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+    hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+    return hash ^ (hash >>> 31);
+  }
+
+  private static void resetPeakHeapUsage() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  private static long getPeakHeapUsage() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
   private void addDocumentToIndex(String key, String value) throws IOException {
     Document doc = new Document();
     doc.add(new TextField(FIELD_NAME_KEY, key, Store.YES));
@@ -298,7 +597,9 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
     TopScoreDocCollector collector = TopScoreDocCollector
         .create(5, true);
     Map<String, String> foundEntries = new HashMap<>();
+    IndexSearcher iSearcher = null;
     try {
+      iSearcher = searcherManager.acquire();
       iSearcher.search(queryTerms, collector);
       ScoreDoc[] hits = collector.topDocs().scoreDocs;
       for (ScoreDoc hit : hits) {
@@ -309,6 +610,8 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
       }
     } catch (IOException ioE) {
       log.error(ioE.getLocalizedMessage());
+    } finally {
+      release(iSearcher);
     }
     String key = entry.getKey().toLowerCase();
     if (foundEntries.containsKey(key)) {
@@ -322,13 +625,55 @@ public class LuceneDictionary extends FileBasedDictionary implements AutoCloseab
 
 
   /**
-   * Commits all pending write operations and updates iReader and iSearcher
+   * Skips the entries of the file in the given handler which were imported before.
+   *
+   * @return number of skipped entries
    */
-  private void commitAndUpdate() throws IOException {
+  private long skipImportedEntries(FileHandlerInterface handler,
+      ImportProgress.FileProgress progress) throws IOException {
+    long importedEntries = progress.getReadEntries();
+    long skipped = 0;
+    while (skipped < importedEntries && handler.nextEntry() != null) {
+      skipped++;
+    }
+    if (skipped > 0) {
+      log.info("Resuming import of file '{}' after {} entries.", handler.getFileName(), skipped);
+    }
+    return skipped;
+  }
+
+  /**
+   * Returns the import progress of the dictionary files. This method is mainly for testing
+   * purposes.
+   *
+   * @return import progress of the dictionary files
+   */
+  ImportProgress getImportProgress() {
+    return importProgress;
+  }
+
+  /**
+   * Commits all pending write operations together with the current import progress. The progress
+   * is taken before the commit starts, so it never contains entries which are not committed. If
+   * neither the index nor the progress changed, nothing is committed, as setting the progress
+   * alone would already result in a new (synced) commit.
+   */
+  private synchronized void commit() throws IOException {
+    Map<String, String> commitData = importProgress.toCommitData();
+    if (!iWriter.hasUncommittedChanges() && commitData.equals(iWriter.getCommitData())) {
+      return;
+    }
+    iWriter.setCommitData(commitData);
     iWriter.commit();
-    iReader = DirectoryReader.open(directory);
-    iSearcher = new IndexSearcher(iReader);
-    iSearcher.setSimilarity(similarity);
+  }
+
+  /**
+   * Commits all pending write operations and refreshes the searcher. Readers of the old searcher
+   * are closed by the searcher manager as soon as they are released.
+   */
+  private void commitAndUpdate() throws IOException {
+    commit();
+    searcherManager.maybeRefreshBlocking();
   }
 }
 
@@ -0,0 +1,147 @@
+package org.aksw.sessa.importing.dictionary.implementation;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Set of 64-bit values, which are stored outside of the Java heap in direct buffers. The set is
+ * split into segments by the first bits of the values. Every segment is an open-addressing hash
+ * table with linear probing, which is locked on its own, so multiple threads can add values at the
+ * same time. As the values are expected to be (well distributed) hashes, they are not hashed again.
+ */
+class OffHeapLongSet {
+
+  private static final int SEGMENT_BITS = 4;
+  private static final int INITIAL_SEGMENT_CAPACITY = 1 << 12;
+  // a direct buffer can hold at most 2^31 - 1 bytes
+  private static final int MAX_SEGMENT_CAPACITY = 1 << 27;
+
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+  /**
+   * Constructs an empty set.
+   */
+  OffHeapLongSet() {
+    this(MAX_SEGMENT_CAPACITY);
+  }
+
+  /**
+   * Constructs an empty set, whose segments grow up to the given capacity.
+   *
+   * @param maxSegmentCapacity maximum number of slots per segment, a power of two
+   */
+  OffHeapLongSet(int maxSegmentCapacity) {
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment(Math.min(INITIAL_SEGMENT_CAPACITY, maxSegmentCapacity),
+          maxSegmentCapacity);
+    }
+  }
+
+  /**
+   * Adds the given value to the set.
+   *
+   * @param value value to be added
+   * @return true if the value was not contained in the set before
+   */
+  boolean add(long value) {
+    // 0 marks empty slots
+    if (value == 0) {
+      value = 1;
+    }
+    return segments[(int) (value >>> (64 - SEGMENT_BITS))].add(value);
+  }
+
+  /**
+   * Returns the number of values in the set.
+   *
+   * @return number of values in the set
+   */
+  long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the number of bytes allocated outside of the heap.
+   *
+   * @return number of bytes allocated outside of the heap
+   */
+  long allocatedBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        bytes += 8L * segment.table.capacity();
+      }
+    }
+    return bytes;
+  }
+
+  private static final class Segment {
+
+    private final int maxCapacity;
+    private LongBuffer table;
+    private int size = 0;
+
+    private Segment(int initialCapacity, int maxCapacity) {
+      this.maxCapacity = maxCapacity;
+      table = allocate(initialCapacity);
+    }
+
+    private static LongBuffer allocate(int capacity) {
+      // direct buffers are initialized with zeros
+      return ByteBuffer.allocateDirect(8 * capacity).asLongBuffer();
+    }
+
+    private synchronized boolean add(long value) {
+      // contained values are found even if the segment is full
+      int slot = findSlot(table, value);
+      if (table.get(slot) == value) {
+        return false;
+      }
+      if (2 * (size + 1) > table.capacity() && table.capacity() < maxCapacity) {
+        grow();
+        slot = findSlot(table, value);
+      }
+      // at least one slot stays empty, so that the probing of absent values terminates
+      if (size + 1 >= table.capacity()) {
+        throw new IllegalStateException("Set is full.");
+      }
+      table.put(slot, value);
+      size++;
+      return true;
+    }
+
+    /**
+     * Returns the slot which contains the given value or the empty slot in which it would be
+     * inserted.
+     */
+    private static int findSlot(LongBuffer table, long value) {
+      int mask = table.capacity() - 1;
+      // the lower bits are used, as the upper ones select the segment
+      int slot = (int) value & mask;
+      while (true) {
+        long current = table.get(slot);
+        if (current == 0 || current == value) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+
+    private void grow() {
+      LongBuffer newTable = allocate(2 * table.capacity());
+      for (int i = 0; i < table.capacity(); i++) {
+        long value = table.get(i);
+        if (value != 0) {
+          newTable.put(findSlot(newTable, value), value);
+        }
+      }
+      table = newTable;
+    }
+  }
+}
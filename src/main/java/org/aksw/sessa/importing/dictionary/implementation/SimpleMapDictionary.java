@@ -95,6 +95,16 @@ public class SimpleMapDictionary implements DictionaryInterface {
     energyFunction = function;
   }
 
+  /**
+   * Returns true, as the lookups only read the map.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
   /**
    * Returns the size of the dictionary, i.e. how many pairs of keys and values. As this is mainly a
    * test class, the method will provide a constant negative value.
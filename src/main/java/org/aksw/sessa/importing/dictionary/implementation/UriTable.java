@@ -0,0 +1,124 @@
+package org.aksw.sessa.importing.dictionary.implementation;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.GrowableByteArrayDataOutput;
+
+/**
+ * Immutable table of sorted URIs, which are identified by their position in the table. The URIs
+ * are stored front-coded in a single byte array: they are split into blocks and every URI of a
+ * block only stores the suffix which differs from the URI before, so common prefixes like {@code
+ * http://dbpedia.org/resource/} are stored once per block.
+ */
+class UriTable {
+
+  private static final int BLOCK_SIZE = 16;
+
+  private final byte[] bytes;
+  private final int[] blockOffsets;
+  private final int size;
+
+  private UriTable(byte[] bytes, int[] blockOffsets, int size) {
+    this.bytes = bytes;
+    this.blockOffsets = blockOffsets;
+    this.size = size;
+  }
+
+  /**
+   * Returns the URI with the given ID.
+   *
+   * @param id ID of the URI, i.e. its position in the table
+   * @return URI with the given ID
+   */
+  String get(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("No URI with ID " + id);
+    }
+    ByteArrayDataInput input = new ByteArrayDataInput(bytes);
+    input.setPosition(blockOffsets[id / BLOCK_SIZE]);
+    BytesRef uri = new BytesRef();
+    for (int i = 0; i <= id % BLOCK_SIZE; i++) {
+      int prefixLength = input.readVInt();
+      int suffixLength = input.readVInt();
+      uri.bytes = ArrayUtil.grow(uri.bytes, prefixLength + suffixLength);
+      input.readBytes(uri.bytes, prefixLength, suffixLength);
+      uri.length = prefixLength + suffixLength;
+    }
+    return uri.utf8ToString();
+  }
+
+  /**
+   * Returns the number of URIs in the table.
+   *
+   * @return number of URIs in the table
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of bytes used by the table.
+   *
+   * @return number of bytes used by the table
+   */
+  long sizeInBytes() {
+    return bytes.length + 4L * blockOffsets.length;
+  }
+
+  /**
+   * Builds a {@link UriTable} from URIs, which have to be added in sorted order.
+   */
+  static class Builder {
+
+    private final GrowableByteArrayDataOutput output = new GrowableByteArrayDataOutput(1024);
+    private int[] blockOffsets = new int[16];
+    private final BytesRef previous = new BytesRef();
+    private int size = 0;
+
+    /**
+     * Adds the given URI to the table. The URIs have to be added in sorted order and without
+     * duplicates.
+     *
+     * @param uri UTF-8 encoded URI
+     * @return ID of the added URI
+     */
+    int add(BytesRef uri) {
+      int prefixLength = 0;
+      if (size % BLOCK_SIZE == 0) {
+        int block = size / BLOCK_SIZE;
+        blockOffsets = ArrayUtil.grow(blockOffsets, block + 1);
+        blockOffsets[block] = output.length;
+      } else {
+        int maxPrefixLength = Math.min(previous.length, uri.length);
+        while (prefixLength < maxPrefixLength && previous.bytes[previous.offset + prefixLength]
+            == uri.bytes[uri.offset + prefixLength]) {
+          prefixLength++;
+        }
+      }
+      try {
+        output.writeVInt(prefixLength);
+        output.writeVInt(uri.length - prefixLength);
+        output.writeBytes(uri.bytes, uri.offset + prefixLength, uri.length - prefixLength);
+      } catch (IOException e) {
+        // cannot happen, as the bytes are written to an array
+        throw new IllegalStateException(e);
+      }
+      previous.copyBytes(uri);
+      return size++;
+    }
+
+    /**
+     * Builds the table with all added URIs.
+     *
+     * @return table with all added URIs
+     */
+    UriTable build() {
+      int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      return new UriTable(Arrays.copyOf(output.bytes, output.length),
+          Arrays.copyOf(blockOffsets, blocks), size);
+    }
+  }
+}
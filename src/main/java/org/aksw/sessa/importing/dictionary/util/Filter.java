@@ -1,13 +1,11 @@
 package org.aksw.sessa.importing.dictionary.util;
 
-import java.util.AbstractMap.SimpleEntry;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Map.Entry;
-import java.util.PriorityQueue;
+import java.util.List;
 import java.util.Set;
 import org.aksw.sessa.importing.dictionary.energy.EnergyFunctionInterface;
+import org.aksw.sessa.importing.dictionary.energy.EnergyScoreCache;
 import org.aksw.sessa.candidate.Candidate;
 
 /**
@@ -17,6 +15,8 @@ import org.aksw.sessa.candidate.Candidate;
  */
 public class Filter {
 
+  private static final ThreadLocal<TopK> TOP_K = ThreadLocal.withInitial(TopK::new);
+
   /**
    * Number of returned results.
    */
@@ -59,26 +59,67 @@ public class Filter {
    * @return filtered set of candidates
    */
   public Set<Candidate> filter(String keyword, Set<Candidate> candidateSet) {
+    return filter(keyword, candidateSet, new EnergyScoreCache());
+  }
 
-    PriorityQueue<Entry<Candidate, Float>> sortedResults;
-    if (descendingOrder) {
-      sortedResults = new PriorityQueue<>(100,
-          Collections.reverseOrder(Comparator.comparing(Entry::getValue)));
+  /**
+   * Main filter method. Returns a number of results with the highest rank (based on the rank
+   * implementation). The ranks are looked up in and added to the given cache. If the set does not
+   * contain more candidates than the number of results, it is returned as it is without calculating
+   * any rank.
+   *
+   * <p>The candidates are selected in one pass with a heap of the best ranks found so far, i.e. in
+   * O(n log k) for n candidates and k results. Unless the energy function prefers to score all
+   * candidates at once (see {@link EnergyFunctionInterface#prefersBatchScoring()}), the rank of the
+   * worst candidate in the full heap is given to the energy function as minimum score, so it can
+   * stop calculating the ranks of candidates which would not make it into the results anyway.</p>
+   *
+   * @param keyword keyword with which the entries where found
+   * @param candidateSet entry set of n-grams and uris (candidates)
+   * @param cache cache of the energy scores calculated for the current question
+   * @return filtered set of candidates
+   */
+  public Set<Candidate> filter(String keyword, Set<Candidate> candidateSet,
+      EnergyScoreCache cache) {
+    if (candidateSet.size() <= numberOfResults) {
+      return candidateSet;
+    }
+    TopK topK = TOP_K.get();
+    topK.reset(numberOfResults);
+    if (energyFunction.prefersBatchScoring()) {
+      List<Candidate> candidates = new ArrayList<>(candidateSet);
+      float[] ranks = getRanks(keyword, candidates, cache);
+      for (int i = 0; i < ranks.length; i++) {
+        topK.offer(candidates.get(i), toHeapKey(ranks[i]));
+      }
     } else {
-      sortedResults = new PriorityQueue<>(100, Comparator.comparing(Entry::getValue));
+      for (Candidate candidate : candidateSet) {
+        Float rank = cache.getScore(energyFunction, keyword, candidate);
+        if (rank == null) {
+          if (descendingOrder && topK.isFull()) {
+            float minRank = topK.minKey();
+            rank = energyFunction.calculateEnergyScore(keyword, candidate.getUri(),
+                candidate.getKey(), minRank);
+            if (Float.compare(rank, minRank) < 0) {
+              // the rank may be incomplete, so it is not cached
+              continue;
+            }
+          } else {
+            rank = getRank(keyword, candidate.getUri(), candidate.getKey());
+          }
+          cache.putScore(energyFunction, keyword, candidate, rank);
+        }
+        topK.offer(candidate, toHeapKey(rank));
+      }
     }
+    return topK.drain();
+  }
 
-    for (Candidate candidate : candidateSet) {
-      float rank = getRank(keyword, candidate.getUri(), candidate.getKey());
-      sortedResults.add(new SimpleEntry<>(candidate, rank));
-    }
-    Set<Candidate> finalResultSet = new HashSet<>();
-    for (int resultSize = 0;
-        resultSize < numberOfResults && !sortedResults.isEmpty();
-        resultSize++) {
-      finalResultSet.add(sortedResults.poll().getKey());
-    }
-    return finalResultSet;
+  /**
+   * Returns the key of the given rank in the heap, which keeps the largest keys.
+   */
+  private float toHeapKey(float rank) {
+    return descendingOrder ? rank : -rank;
   }
 
   /**
@@ -94,6 +135,33 @@ public class Filter {
     return energyFunction.calculateEnergyScore(keyword, foundURI, foundKey);
   }
 
+  /**
+   * Ranking method for multiple candidates. Returns the ranks/scores for all given candidates,
+   * which are calculated at once by the energy function (see {@link
+   * EnergyFunctionInterface#calculateEnergyScores(String, List)}).
+   *
+   * @param keyword original n-gram with which the candidates were found
+   * @param candidates candidates for which the ranks should be calculated
+   * @return ranks of the candidates in the same order as the candidates
+   */
+  protected float[] getRanks(String keyword, List<Candidate> candidates) {
+    return energyFunction.calculateEnergyScores(keyword, candidates);
+  }
+
+  /**
+   * Ranking method for multiple candidates. Returns the ranks/scores for all given candidates.
+   * Only the ranks which are not contained in the given cache are calculated.
+   *
+   * @param keyword original n-gram with which the candidates were found
+   * @param candidates candidates for which the ranks should be calculated
+   * @param cache cache of the energy scores calculated for the current question
+   * @return ranks of the candidates in the same order as the candidates
+   */
+  protected float[] getRanks(String keyword, List<Candidate> candidates,
+      EnergyScoreCache cache) {
+    return cache.getScores(energyFunction, keyword, candidates);
+  }
+
   /**
    * Returns how many results should be returned
    *
@@ -103,6 +171,15 @@ public class Filter {
     return numberOfResults;
   }
 
+  /**
+   * Returns true if the lowest scores are filtered out.
+   *
+   * @return true if the lowest scores are filtered out, false if the highest ones are
+   */
+  public boolean isDescendingOrder() {
+    return descendingOrder;
+  }
+
   /**
    * Returns the used energy function.
    * @return the used energy function
@@ -110,4 +187,85 @@ public class Filter {
   public EnergyFunctionInterface getEnergyFunction() {
     return energyFunction;
   }
+
+  /**
+   * Bounded min-heap of candidates and their keys, which keeps the candidates with the largest
+   * keys. On equal keys, the candidate added first is kept. Every thread reuses its heap for all
+   * filters.
+   */
+  private static final class TopK {
+
+    private Candidate[] candidates = new Candidate[16];
+    private float[] keys = new float[16];
+    private int capacity;
+    private int size;
+
+    private void reset(int capacity) {
+      if (candidates.length < capacity) {
+        candidates = new Candidate[capacity];
+        keys = new float[capacity];
+      }
+      this.capacity = capacity;
+      size = 0;
+    }
+
+    private boolean isFull() {
+      return size == capacity;
+    }
+
+    private float minKey() {
+      return keys[0];
+    }
+
+    private void offer(Candidate candidate, float key) {
+      if (size < capacity) {
+        int i = size++;
+        // sift up
+        while (i > 0) {
+          int parent = (i - 1) >>> 1;
+          if (Float.compare(keys[parent], key) <= 0) {
+            break;
+          }
+          candidates[i] = candidates[parent];
+          keys[i] = keys[parent];
+          i = parent;
+        }
+        candidates[i] = candidate;
+        keys[i] = key;
+      } else if (capacity > 0 && Float.compare(key, keys[0]) > 0) {
+        // replace the minimum and sift down
+        int i = 0;
+        while (true) {
+          int child = 2 * i + 1;
+          if (child >= size) {
+            break;
+          }
+          if (child + 1 < size && Float.compare(keys[child + 1], keys[child]) < 0) {
+            child++;
+          }
+          if (Float.compare(key, keys[child]) <= 0) {
+            break;
+          }
+          candidates[i] = candidates[child];
+          keys[i] = keys[child];
+          i = child;
+        }
+        candidates[i] = candidate;
+        keys[i] = key;
+      }
+    }
+
+    /**
+     * Returns the candidates in the heap and removes the references to them.
+     */
+    private Set<Candidate> drain() {
+      Set<Candidate> result = new HashSet<>(2 * size);
+      for (int i = 0; i < size; i++) {
+        result.add(candidates[i]);
+        candidates[i] = null;
+      }
+      size = 0;
+      return result;
+    }
+  }
 }
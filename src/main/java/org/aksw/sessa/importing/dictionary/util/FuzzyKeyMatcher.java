@@ -0,0 +1,298 @@
+package org.aksw.sessa.importing.dictionary.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.similarities.TFIDFSimilarity;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.automaton.LevenshteinAutomata;
+
+/**
+ * Finds the dictionary entries whose key contains every word of an n-gram, allowing a configurable
+ * number of edits for words which are long enough. This is the same what a conjunction of {@link
+ * org.apache.lucene.search.FuzzyQuery FuzzyQueries} would find, but the terms of every word are
+ * only enumerated once per index segment by intersecting its Levenshtein automaton with the terms
+ * of the key field, and the documents are intersected directly on the postings, starting with the
+ * rarest word, instead of being scored by a query.
+ *
+ * <p>Every match contains the smallest number of edits needed per word, summed up over all words.
+ * The matches are ranked like the former query: every word contributes its similarity {@code 1 -
+ * edits / min(length of word, length of term)}, which is multiplied with the length norm of the key
+ * (i.e. shorter keys are preferred).</p>
+ */
+public class FuzzyKeyMatcher {
+
+  private static final Comparator<Match> RANKING = Comparator
+      .comparing(Match::getScore).reversed().thenComparing(Match::getDoc);
+
+  private final int maxEdits;
+  private final int minLength;
+  private final TFIDFSimilarity similarity;
+
+  /**
+   * Constructs a matcher with the given settings.
+   *
+   * @param maxEdits maximum number of edits per word; at most {@link
+   * LevenshteinAutomata#MAXIMUM_SUPPORTED_DISTANCE} edits are supported
+   * @param minLength minimum length of a word for which edits are allowed; shorter words have to
+   * match exactly
+   * @param similarity similarity with which the norms of the key field were encoded
+   */
+  public FuzzyKeyMatcher(int maxEdits, int minLength, TFIDFSimilarity similarity) {
+    this.maxEdits =
+        Math.max(0, Math.min(maxEdits, LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE));
+    this.minLength = minLength;
+    this.similarity = similarity;
+  }
+
+  /**
+   * Returns the best matches for the given n-gram, ordered by their score.
+   *
+   * @param reader reader of the index
+   * @param field name of the key field
+   * @param nGram n-gram whose words (separated by spaces) have to be contained in the key
+   * @param maxResults maximum number of returned matches
+   * @return best matches for the given n-gram
+   * @throws IOException if the index could not be read
+   */
+  public List<Match> match(IndexReader reader, String field, String nGram, int maxResults)
+      throws IOException {
+    String[] words = nGram.toLowerCase().split(" ");
+    CompiledAutomaton[][] automata = new CompiledAutomaton[words.length][];
+    for (int i = 0; i < words.length; i++) {
+      automata[i] = compile(words[i]);
+    }
+    PriorityQueue<Match> best = new PriorityQueue<>(RANKING.reversed());
+    for (AtomicReaderContext leaf : reader.leaves()) {
+      Terms terms = leaf.reader().terms(field);
+      if (terms == null) {
+        continue;
+      }
+      for (Match match : match(leaf, terms, field, words, automata)) {
+        best.add(match);
+        if (best.size() > maxResults) {
+          best.poll();
+        }
+      }
+    }
+    List<Match> result = new ArrayList<>(best);
+    result.sort(RANKING);
+    return result;
+  }
+
+  /**
+   * Returns the automata for the given word, one for every number of edits.
+   */
+  private CompiledAutomaton[] compile(String word) {
+    int edits = word.codePointCount(0, word.length()) < minLength ? 0 : maxEdits;
+    LevenshteinAutomata levenshtein = new LevenshteinAutomata(word, true);
+    CompiledAutomaton[] automata = new CompiledAutomaton[edits + 1];
+    for (int i = 0; i <= edits; i++) {
+      automata[i] = new CompiledAutomaton(levenshtein.toAutomaton(i), true, false);
+    }
+    return automata;
+  }
+
+  private List<Match> match(AtomicReaderContext leaf, Terms terms, String field, String[] words,
+      CompiledAutomaton[][] automata) throws IOException {
+    List<List<TermMatch>> termMatches = new ArrayList<>();
+    for (int i = 0; i < words.length; i++) {
+      List<TermMatch> wordMatches = expand(terms, words[i], automata[i]);
+      if (wordMatches.isEmpty()) {
+        return new ArrayList<>();
+      }
+      termMatches.add(wordMatches);
+    }
+    // the rarest word determines the candidate documents
+    termMatches.sort(Comparator.comparingLong(FuzzyKeyMatcher::docFreq));
+
+    Bits liveDocs = leaf.reader().getLiveDocs();
+    TermsEnum termsEnum = terms.iterator(null);
+    Map<Integer, TermMatch> firstMatches = new HashMap<>();
+    DocsEnum docsEnum = null;
+    for (TermMatch termMatch : termMatches.get(0)) {
+      termsEnum.seekExact(termMatch.term, termMatch.state);
+      docsEnum = termsEnum.docs(liveDocs, docsEnum, DocsEnum.FLAG_NONE);
+      for (int doc; (doc = docsEnum.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS; ) {
+        TermMatch previous = firstMatches.get(doc);
+        if (previous == null || termMatch.similarity > previous.similarity) {
+          firstMatches.put(doc, termMatch);
+        }
+      }
+    }
+    int[] docs = new int[firstMatches.size()];
+    int count = 0;
+    for (int doc : firstMatches.keySet()) {
+      docs[count++] = doc;
+    }
+    Arrays.sort(docs);
+    float[] similarities = new float[count];
+    int[] edits = new int[count];
+    for (int i = 0; i < count; i++) {
+      TermMatch termMatch = firstMatches.get(docs[i]);
+      similarities[i] = termMatch.similarity;
+      edits[i] = termMatch.edits;
+    }
+
+    float[] wordSimilarities = new float[count];
+    int[] wordEdits = new int[count];
+    for (int word = 1; word < termMatches.size() && count > 0; word++) {
+      Arrays.fill(wordSimilarities, 0, count, -1);
+      for (TermMatch termMatch : termMatches.get(word)) {
+        termsEnum.seekExact(termMatch.term, termMatch.state);
+        docsEnum = termsEnum.docs(liveDocs, docsEnum, DocsEnum.FLAG_NONE);
+        int current = -1;
+        for (int i = 0; i < count; i++) {
+          if (current < docs[i]) {
+            current = docsEnum.advance(docs[i]);
+            if (current == DocIdSetIterator.NO_MORE_DOCS) {
+              break;
+            }
+          }
+          if (current == docs[i] && termMatch.similarity > wordSimilarities[i]) {
+            wordSimilarities[i] = termMatch.similarity;
+            wordEdits[i] = termMatch.edits;
+          }
+        }
+      }
+      int remaining = 0;
+      for (int i = 0; i < count; i++) {
+        if (wordSimilarities[i] >= 0) {
+          docs[remaining] = docs[i];
+          similarities[remaining] = similarities[i] + wordSimilarities[i];
+          edits[remaining] = edits[i] + wordEdits[i];
+          remaining++;
+        }
+      }
+      count = remaining;
+    }
+
+    NumericDocValues norms = leaf.reader().getNormValues(field);
+    List<Match> matches = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      float norm = norms == null ? 1 : similarity.decodeNormValue(norms.get(docs[i]));
+      matches.add(new Match(leaf.docBase + docs[i], edits[i], similarities[i] * norm));
+    }
+    return matches;
+  }
+
+  /**
+   * Returns all terms which match the given word, each with the smallest number of edits.
+   */
+  private static List<TermMatch> expand(Terms terms, String word, CompiledAutomaton[] automata)
+      throws IOException {
+    List<TermMatch> matches = new ArrayList<>();
+    Set<BytesRef> found = new HashSet<>();
+    int wordLength = word.codePointCount(0, word.length());
+    for (int edits = 0; edits < automata.length; edits++) {
+      TermsEnum termsEnum = automata[edits].getTermsEnum(terms);
+      for (BytesRef term; (term = termsEnum.next()) != null; ) {
+        BytesRef copy = BytesRef.deepCopyOf(term);
+        if (!found.add(copy)) {
+          continue;
+        }
+        float similarity = 1;
+        if (edits > 0) {
+          String text = term.utf8ToString();
+          similarity -= (float) edits / Math.min(wordLength, text.codePointCount(0, text.length()));
+          // like the fuzzy query, terms which are completely different are skipped
+          if (similarity <= 0) {
+            continue;
+          }
+        }
+        matches.add(new TermMatch(copy, termsEnum.termState(), edits, similarity,
+            termsEnum.docFreq()));
+      }
+    }
+    return matches;
+  }
+
+  private static long docFreq(List<TermMatch> termMatches) {
+    long docFreq = 0;
+    for (TermMatch termMatch : termMatches) {
+      docFreq += termMatch.docFreq;
+    }
+    return docFreq;
+  }
+
+  /**
+   * Term of the index which matches a word of the n-gram.
+   */
+  private static final class TermMatch {
+
+    private final BytesRef term;
+    private final TermState state;
+    private final int edits;
+    private final float similarity;
+    private final int docFreq;
+
+    private TermMatch(BytesRef term, TermState state, int edits, float similarity, int docFreq) {
+      this.term = term;
+      this.state = state;
+      this.edits = edits;
+      this.similarity = similarity;
+      this.docFreq = docFreq;
+    }
+  }
+
+  /**
+   * Document whose key matches all words of an n-gram.
+   */
+  public static final class Match {
+
+    private final int doc;
+    private final int edits;
+    private final float score;
+
+    private Match(int doc, int edits, float score) {
+      this.doc = doc;
+      this.edits = edits;
+      this.score = score;
+    }
+
+    /**
+     * Returns the ID of the matching document in the index reader.
+     *
+     * @return ID of the matching document
+     */
+    public int getDoc() {
+      return doc;
+    }
+
+    /**
+     * Returns the number of edits needed to match all words of the n-gram, i.e. the sum of the
+     * smallest number of edits of every word.
+     *
+     * @return number of edits needed to match all words of the n-gram
+     */
+    public int getEdits() {
+      return edits;
+    }
+
+    /**
+     * Returns the score of the match, which is higher for better matches.
+     *
+     * @return score of the match
+     */
+    public float getScore() {
+      return score;
+    }
+  }
+}
@@ -1,28 +1,33 @@
 package org.aksw.sessa.importing.rdf;
 
-import java.util.Formatter;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import org.aksw.jena_sparql_api.core.QueryExecutionFactory;
-import org.aksw.jena_sparql_api.http.QueryExecutionFactoryHttp;
-import org.aksw.jena_sparql_api.pagination.core.QueryExecutionFactoryPaginated;
-import org.aksw.jena_sparql_api.retry.core.QueryExecutionFactoryRetry;
-import org.apache.jena.query.QueryExecution;
-import org.apache.jena.query.QuerySolution;
-import org.apache.jena.query.ResultSet;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 
 /**
- * This class uses the DBpedia-SPARQL interface to provide a query interface for this project.
+ * This class uses the DBpedia-SPARQL interface to provide a query interface for this project. The
+ * queries are executed by a {@link SparqlQueryService}, which is shared by all instances unless
+ * given otherwise and which caches the results. This is the remote triple source.
  */
-public class DbpediaSparqlQuery {
+public class DbpediaSparqlQuery implements TripleSourceInterface {
 
-  private static final Logger log = LoggerFactory.getLogger(DbpediaSparqlQuery.class);
-  public final String DBPEDIA_URI = "http://dbpedia.org/sparql";
-  // one day for now
-  private final long TIME_TO_LIVE = 24L * 60L * 60L * 1000L;
+  private SparqlQueryService queryService;
+
+  /**
+   * Constructs the query interface with the shared query service.
+   */
+  public DbpediaSparqlQuery() {
+    this(SparqlQueryService.getInstance());
+  }
+
+  /**
+   * Constructs the query interface with the given query service.
+   *
+   * @param queryService service used to execute the queries
+   */
+  public DbpediaSparqlQuery(SparqlQueryService queryService) {
+    this.queryService = queryService;
+  }
 
   /**
    * Returns a set of results for the given query.
@@ -30,75 +35,32 @@ public class DbpediaSparqlQuery {
    * @param queryString valid SPARQL query
    * @return set of triple elements
    */
+  @Override
   public Set<String> executeQuery(String queryString) {
-
-    QueryExecutionFactory qef = new QueryExecutionFactoryHttp(DBPEDIA_URI, "http://dbpedia.org");
-    qef = new QueryExecutionFactoryRetry(qef, 5, 5000);
-
-    ResultSet rs;
-    Set<String> finalSet = new HashSet<>();
-
-    try {
-      // Add pagination
-      qef = new QueryExecutionFactoryPaginated(qef, 900);
-      QueryExecution qe = qef.createQueryExecution(queryString);
-      rs = qe.execSelect();
-      String varName = rs.getResultVars().get(0);
-      while (rs.hasNext()) {
-        QuerySolution qs = rs.next();
-        finalSet.add(qs.get(varName).toString());
-      }
-
-    } catch (Exception e) {
-      log.error("Error with query {}", queryString);
-      log.error(e.getLocalizedMessage());
-    }
-    log.trace("Query: '{}'. Found: {}", queryString, finalSet);
-    return finalSet;
+    return queryService.executeSelect(queryString);
   }
 
   /**
-   * Queries an ASK-query to DBpedia with given valid SPARQL ask-query
+   * Returns all rows for the given query, i.e. the values of all result variables in the order of
+   * their declaration.
    *
-   * @param queryString valid SPARQL ask-query
-   * @return true if ASK-query true, false otherwise
+   * @param queryString valid SPARQL query
+   * @return list of rows with the values of the result variables
+   * @throws org.apache.jena.query.QueryException if the query failed
    */
-  public boolean askQuery(String queryString) {
-
-    QueryExecutionFactory qef = new QueryExecutionFactoryHttp(DBPEDIA_URI, "http://dbpedia.org");
-    qef = new QueryExecutionFactoryRetry(qef, 5, 5000);
-
-    boolean answer = false;
-    Set<String> finalSet = new HashSet<>();
-
-    try {
-      // Add pagination
-      qef = new QueryExecutionFactoryPaginated(qef, 900);
-      QueryExecution qe = qef.createQueryExecution(queryString);
-      answer = qe.execAsk();
-
-    } catch (Exception e) {
-      log.error("Error with query {}", queryString);
-      log.error(e.getLocalizedMessage());
-    }
-    log.trace("Query: '{}'. Found: {}", queryString, finalSet);
-    return answer;
+  @Override
+  public List<List<String>> executeRowQuery(String queryString) {
+    return queryService.executeSelectRowsOrFail(queryString);
   }
 
   /**
-   * Queries an ASK-query to DBpedia with given triple.
+   * Queries an ASK-query to DBpedia with given valid SPARQL ask-query
    *
-   * @param subject subject of the triple
-   * @param predicate predicate of the triple
-   * @param object object of the triple
+   * @param queryString valid SPARQL ask-query
    * @return true if ASK-query true, false otherwise
    */
-  public boolean askQuery(String subject, String predicate, String object) {
-    final String QUERY_STRING =
-        "ASK{ <%1$s> <%2$s> <%3$s>. }";
-    Formatter formatter = new Formatter().format(QUERY_STRING, subject, predicate, object);
-    log.debug(formatter.toString());
-    return askQuery(formatter.toString());
+  @Override
+  public boolean askQuery(String queryString) {
+    return queryService.executeAsk(queryString);
   }
-
 }
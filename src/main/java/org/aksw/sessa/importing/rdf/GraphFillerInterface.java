@@ -0,0 +1,50 @@
+package org.aksw.sessa.importing.rdf;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Interface for classes which find the missing triple elements for pairs of URIs, which are used
+ * to expand the graph (see {@link org.aksw.sessa.helper.graph.SelfBuildingGraph}).
+ */
+public interface GraphFillerInterface {
+
+  /**
+   * Given two URIs, it tries to find the missing triple element. Example (URIs shortened): Given
+   * dbr:Bill_Gates and dbo:birthPlace this method should at least provide dbr:Seattle, because
+   * 'dbr:Bill_Gates dbo:birthPlace dbr:Seattle.' is a valid triple in the DBpedia-database.
+   *
+   * @param uri1 first URI
+   * @param uri2 second URI
+   * @return set of triple elements which can be used to complement the two given URIs
+   */
+  Set<String> findMissingTripleElement(String uri1, String uri2);
+
+  /**
+   * Given multiple pairs of URIs, it tries to find the missing triple elements for every pair (see
+   * {@link #findMissingTripleElement(String, String)}). Pairs which could not be resolved before
+   * the given deadline are mapped to an empty set.
+   *
+   * @param uriPairs pairs of URIs for which the missing triple elements should be found
+   * @param deadline point in time (in ms, see {@link System#currentTimeMillis()}) after which no
+   * more pairs are resolved
+   * @return mapping of pairs (see {@link SparqlGraphFiller#toPairKey(String, String)}) to the found
+   * elements; every given pair is contained in the mapping
+   */
+  default Map<Entry<String, String>, Set<String>> findMissingTripleElements(
+      Collection<Entry<String, String>> uriPairs, long deadline) {
+    Map<Entry<String, String>, Set<String>> results = new HashMap<>();
+    for (Entry<String, String> pair : uriPairs) {
+      Entry<String, String> pairKey = SparqlGraphFiller.toPairKey(pair.getKey(), pair.getValue());
+      if (!results.containsKey(pairKey)) {
+        results.put(pairKey, System.currentTimeMillis() < deadline ?
+            findMissingTripleElement(pairKey.getKey(), pairKey.getValue()) : new HashSet<>());
+      }
+    }
+    return results;
+  }
+}
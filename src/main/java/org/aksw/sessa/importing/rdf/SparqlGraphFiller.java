@@ -1,41 +1,189 @@
 package org.aksw.sessa.importing.rdf;
 
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Formatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.aksw.sessa.importing.config.ConfigurationInitializer;
+import org.apache.commons.configuration2.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
- * This class uses the DBPedia-SPARQL interface to provide information about the missing triple
- * elements.
+ * This class uses a triple source (see {@link TripleSourceInterface}) to provide information about
+ * the missing triple elements. By default, the triple source selected in the configuration is used
+ * (see {@link TripleSourceFactory}). Multiple pairs of URIs can be resolved together using {@link
+ * #findMissingTripleElements(Collection)}, which sends one query per batch of pairs instead of one
+ * query per pair. The batches are queried concurrently on a bounded executor, which is shared by
+ * all graph fillers unless given otherwise.
  */
-//FIXME hard coded DBpedia
-public class SparqlGraphFiller {
+public class SparqlGraphFiller implements GraphFillerInterface {
 
   private static final Logger log = LoggerFactory.getLogger(SparqlGraphFiller.class);
-  private final String QUERY_STRING =
-      "SELECT DISTINCT ?o WHERE {" +
-          "{ <%1$s> <%2$s> ?o. } UNION" +
+  private static final String BATCH_SIZE_KEY = "graph.expansion.batch_size";
+  private static final int DEFAULT_BATCH_SIZE = 20;
+  private static final String PARALLELISM_KEY = "graph.expansion.parallelism";
+  private static final int DEFAULT_PARALLELISM = 8;
+  private static final String QUERY_TIMEOUT_KEY = "graph.expansion.query_timeout";
+  private static final long DEFAULT_QUERY_TIMEOUT = 10000;
+  /**
+   * Maximum number of found elements per pair of URIs.
+   */
+  private static final int RESULT_LIMIT = 100;
+  private final String PAIR_PATTERN =
+      "{ <%1$s> <%2$s> ?o. } UNION" +
           "{ <%1$s> ?o <%2$s>. } UNION" +
           "{ ?o <%1$s> <%2$s>. } UNION" +
           "{ <%2$s> <%1$s> ?o. } UNION" +
           "{ <%2$s> ?o <%1$s>. } UNION" +
-          "{ ?o <%2$s> <%1$s>. }" +
-          "} LIMIT 100";
-  // one day for now
-  private final long TIME_TO_LIVE = 24L * 60L * 60L * 1000L;
+          "{ ?o <%2$s> <%1$s>. }";
+  private final String QUERY_STRING =
+      "SELECT DISTINCT ?o WHERE {" + PAIR_PATTERN + "} LIMIT " + RESULT_LIMIT;
+  // the same query as for a single pair, so that every pair is limited on its own
+  private final String BATCH_PAIR_QUERY_STRING =
+      "{ SELECT DISTINCT (<%1$s> AS ?a) (<%2$s> AS ?b) ?o WHERE {" + PAIR_PATTERN + "} LIMIT "
+          + RESULT_LIMIT + " }";
+  private final String BATCH_QUERY_STRING = "SELECT ?a ?b ?o WHERE { %1$s }";
+
+  private static ExecutorService sharedExecutor;
+
+  private TripleSourceInterface tripleSource;
+  private int batchSize;
+  private ExecutorService executor;
+  private long queryTimeout;
+
+  /**
+   * Constructs the graph filler, which uses the configured triple source, the shared executor and
+   * the configured batch size and query timeout.
+   */
+  public SparqlGraphFiller() {
+    this(TripleSourceFactory.getTripleSource(), ConfigurationInitializer.getConfiguration());
+  }
+
+  /**
+   * Constructs the graph filler with the given triple source.
+   *
+   * @param tripleSource triple source used to find the missing triple elements
+   */
+  public SparqlGraphFiller(TripleSourceInterface tripleSource) {
+    this(tripleSource, DEFAULT_BATCH_SIZE);
+  }
 
   /**
-   * Builds query with given URIs to find the missing triple.
+   * Constructs the graph filler with the given triple source and batch size.
+   *
+   * @param tripleSource triple source used to find the missing triple elements
+   * @param batchSize maximum number of URI pairs resolved with one query; values smaller than 2
+   * result in one query per pair
+   */
+  public SparqlGraphFiller(TripleSourceInterface tripleSource, int batchSize) {
+    this(tripleSource, batchSize, getSharedExecutor(), DEFAULT_QUERY_TIMEOUT);
+  }
+
+  private SparqlGraphFiller(TripleSourceInterface tripleSource, Configuration configuration) {
+    this(tripleSource, configuration.getInt(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE),
+        getSharedExecutor(), configuration.getLong(QUERY_TIMEOUT_KEY, DEFAULT_QUERY_TIMEOUT));
+  }
+
+  /**
+   * Constructs the graph filler with the given triple source, batch size, executor and query
+   * timeout.
+   *
+   * @param tripleSource triple source used to find the missing triple elements
+   * @param batchSize maximum number of URI pairs resolved with one query; values smaller than 2
+   * result in one query per pair
+   * @param executor executor on which the queries are executed concurrently
+   * @param queryTimeout maximum time (in ms) to wait for the results of all queries of one call
+   */
+  public SparqlGraphFiller(TripleSourceInterface tripleSource, int batchSize,
+      ExecutorService executor, long queryTimeout) {
+    this.tripleSource = tripleSource;
+    this.batchSize = batchSize;
+    this.executor = executor;
+    this.queryTimeout = queryTimeout;
+  }
+
+  /**
+   * Returns the executor shared by all graph fillers. Its number of threads, i.e. the maximum
+   * number of concurrent queries, is given by the configuration.
+   *
+   * @return executor shared by all graph fillers
+   */
+  private static synchronized ExecutorService getSharedExecutor() {
+    if (sharedExecutor == null) {
+      int parallelism = ConfigurationInitializer.getConfiguration()
+          .getInt(PARALLELISM_KEY, DEFAULT_PARALLELISM);
+      sharedExecutor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+          new ThreadFactoryBuilder().setNameFormat("graph-expansion-%d").setDaemon(true).build());
+    }
+    return sharedExecutor;
+  }
+
+  /**
+   * Returns the key under which the results for the given URIs are stored in the map returned by
+   * {@link #findMissingTripleElements(Collection)}. As the order of the URIs does not matter, both
+   * orders result in the same key.
+   *
+   * @param uri1 first URI of the pair
+   * @param uri2 second URI of the pair
+   * @return key for the unordered pair of URIs
+   */
+  public static Entry<String, String> toPairKey(String uri1, String uri2) {
+    if (uri1.compareTo(uri2) > 0) {
+      return new SimpleEntry<>(uri2, uri1);
+    }
+    return new SimpleEntry<>(uri1, uri2);
+  }
+
+  /**
+   * Builds query with given URIs to find the missing triple. As the query covers both orders of the
+   * URIs, the URIs are sorted first, so that both orders result in the same query (and therefore
+   * share the same entry in the result cache).
    *
    * @param uri1 first URI to be used for the SPARQL-query
    * @param uri2 second URI to be used for the SPARQL-query
    * @return SPARQL query which can be used to find the missing triple
    */
   private String buildQuery(String uri1, String uri2) {
-    return new Formatter().format(QUERY_STRING, uri1, uri2).toString();
+    Entry<String, String> pair = toPairKey(uri1, uri2);
+    return new Formatter().format(QUERY_STRING, pair.getKey(), pair.getValue()).toString();
+  }
+
+  /**
+   * Builds a query which finds the missing triple elements for all given pairs at once. Every pair
+   * is resolved by its own subquery with the same limit as the query for a single pair (see {@link
+   * #buildQuery(String, String)}), so that pairs with many results do not crowd out the others. The
+   * pairs are returned together with the found element.
+   *
+   * @param pairs (ordered) pairs of URIs to be used for the SPARQL-query
+   * @return SPARQL query which can be used to find the missing triples
+   */
+  private String buildBatchQuery(List<Entry<String, String>> pairs) {
+    StringBuilder subqueries = new StringBuilder();
+    for (Entry<String, String> pair : pairs) {
+      if (subqueries.length() > 0) {
+        subqueries.append(" UNION ");
+      }
+      new Formatter(subqueries).format(BATCH_PAIR_QUERY_STRING, pair.getKey(), pair.getValue());
+    }
+    return new Formatter().format(BATCH_QUERY_STRING, subqueries.toString()).toString();
   }
 
   /**
@@ -47,9 +195,127 @@ public class SparqlGraphFiller {
    * @param uri2 second URI to be used for the SPARQL-query
    * @return set of triple elements which ca be used to complement the two given URIs
    */
+  @Override
   public Set<String> findMissingTripleElement(String uri1, String uri2) {
     String queryString = buildQuery(uri1, uri2);
-    DbpediaSparqlQuery dbpQ = new DbpediaSparqlQuery();
-    return dbpQ.executeQuery(queryString);
+    return tripleSource.executeQuery(queryString);
+  }
+
+  /**
+   * Given multiple pairs of URIs, it tries to find the missing triple elements for every pair (see
+   * {@link #findMissingTripleElement(String, String)}). The pairs are resolved in batches of the
+   * configured size, i.e. with one query per batch.
+   *
+   * @param uriPairs pairs of URIs for which the missing triple elements should be found
+   * @return mapping of pairs (see {@link #toPairKey(String, String)}) to the found elements; every
+   * given pair is contained in the mapping
+   */
+  public Map<Entry<String, String>, Set<String>> findMissingTripleElements(
+      Collection<Entry<String, String>> uriPairs) {
+    return findMissingTripleElements(uriPairs, Long.MAX_VALUE);
+  }
+
+  /**
+   * Given multiple pairs of URIs, it tries to find the missing triple elements for every pair (see
+   * {@link #findMissingTripleElement(String, String)}). The pairs are resolved in batches of the
+   * configured size, which are queried concurrently. If the query of a batch fails, its pairs are
+   * resolved one by one instead. Queries which do not finish within the query timeout or before the
+   * given deadline are given up, i.e. they are cancelled and their pairs are mapped to an empty
+   * set. Both limits apply to all queries together.
+   *
+   * @param uriPairs pairs of URIs for which the missing triple elements should be found
+   * @param deadline point in time (in ms, see {@link System#currentTimeMillis()}) after which no
+   * more results are waited for
+   * @return mapping of pairs (see {@link #toPairKey(String, String)}) to the found elements; every
+   * given pair is contained in the mapping
+   */
+  @Override
+  public Map<Entry<String, String>, Set<String>> findMissingTripleElements(
+      Collection<Entry<String, String>> uriPairs, long deadline) {
+    Set<Entry<String, String>> pairKeys = new LinkedHashSet<>();
+    for (Entry<String, String> pair : uriPairs) {
+      pairKeys.add(toPairKey(pair.getKey(), pair.getValue()));
+    }
+    List<List<Entry<String, String>>> batches = new ArrayList<>();
+    List<Future<Map<Entry<String, String>, Set<String>>>> futures = new ArrayList<>();
+    List<Entry<String, String>> batch = new ArrayList<>();
+    for (Entry<String, String> pair : pairKeys) {
+      batch.add(pair);
+      if (batch.size() >= batchSize) {
+        batches.add(batch);
+        futures.add(submit(batch));
+        batch = new ArrayList<>();
+      }
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+      futures.add(submit(batch));
+    }
+
+    Map<Entry<String, String>, Set<String>> results = new HashMap<>();
+    long start = System.currentTimeMillis();
+    long timeoutDeadline = start + queryTimeout < start ? Long.MAX_VALUE : start + queryTimeout;
+    deadline = Math.min(deadline, timeoutDeadline);
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        if (!Thread.currentThread().isInterrupted()) {
+          long remaining = Math.max(0, deadline - System.currentTimeMillis());
+          results.putAll(futures.get(i).get(remaining, TimeUnit.MILLISECONDS));
+          continue;
+        }
+      } catch (TimeoutException e) {
+        log.warn("Gave up on finding missing triple elements for {} pairs after {} ms.",
+            batches.get(i).size(), System.currentTimeMillis() - start);
+      } catch (ExecutionException e) {
+        if (batches.get(i).size() > 1) {
+          log.warn("Could not resolve {} pairs with one query, resolving them one by one: {}",
+              batches.get(i).size(), e.getCause().getLocalizedMessage());
+          for (Entry<String, String> pair : batches.get(i)) {
+            List<Entry<String, String>> singlePair = Collections.singletonList(pair);
+            batches.add(singlePair);
+            futures.add(submit(singlePair));
+          }
+          continue;
+        }
+        log.error("Could not find missing triple elements for {} pairs: {}",
+            batches.get(i).size(), e.getCause().getLocalizedMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        log.warn("Interrupted while finding missing triple elements.");
+      }
+      // interrupts the query, so that it does not keep a thread of the executor busy
+      futures.get(i).cancel(true);
+      for (Entry<String, String> pair : batches.get(i)) {
+        results.put(pair, new HashSet<>());
+      }
+    }
+    return results;
+  }
+
+  private Future<Map<Entry<String, String>, Set<String>>> submit(
+      List<Entry<String, String>> batch) {
+    return executor.submit(() -> resolveBatch(batch));
+  }
+
+  private Map<Entry<String, String>, Set<String>> resolveBatch(List<Entry<String, String>> batch) {
+    Map<Entry<String, String>, Set<String>> results = new HashMap<>();
+    if (batch.size() == 1) {
+      Entry<String, String> pair = batch.get(0);
+      results.put(pair, findMissingTripleElement(pair.getKey(), pair.getValue()));
+      return results;
+    }
+    for (Entry<String, String> pair : batch) {
+      results.put(pair, new HashSet<>());
+    }
+    String queryString = buildBatchQuery(batch);
+    log.debug("Resolving {} pairs with one query.", batch.size());
+    // a failed query is passed to the caller, which resolves the pairs one by one instead
+    for (List<String> row : tripleSource.executeRowQuery(queryString)) {
+      Set<String> found = results.get(toPairKey(row.get(0), row.get(1)));
+      if (found != null) {
+        found.add(row.get(2));
+      }
+    }
+    return results;
   }
 }
@@ -0,0 +1,495 @@
+package org.aksw.sessa.importing.rdf;
+
+import com.google.common.cache.CacheStats;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import org.aksw.jena_sparql_api.cache.core.QueryExecutionFactoryCacheEx;
+import org.aksw.jena_sparql_api.cache.extra.CacheFrontendImpl;
+import org.aksw.jena_sparql_api.cache.file.CacheBackendFile;
+import org.aksw.jena_sparql_api.core.QueryExecutionDecorator;
+import org.aksw.jena_sparql_api.core.QueryExecutionFactory;
+import org.aksw.jena_sparql_api.core.QueryExecutionFactoryDecorator;
+import org.aksw.jena_sparql_api.http.QueryExecutionFactoryHttp;
+import org.aksw.jena_sparql_api.http.QueryExecutionHttpWrapper;
+import org.aksw.jena_sparql_api.pagination.core.QueryExecutionFactoryPaginated;
+import org.aksw.jena_sparql_api.timeout.QueryExecutionFactoryTimeout;
+import org.aksw.sessa.importing.config.ConfigurationInitializer;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryException;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.sparql.core.DatasetDescription;
+import org.apache.jena.sparql.engine.http.QueryEngineHTTP;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class provides a long-lived and thread-safe execution stack for SPARQL queries against the
+ * configured endpoint. All queries share one pooled HTTP client, so connections are kept alive and
+ * reused between queries instead of being set up for every single query. The endpoint, the default
+ * graph, the pool size and the timeouts are read from the configuration.
+ *
+ * <p>Queries which failed transiently (i.e. the endpoint was not reachable, timed out or answered
+ * with a server error) are retried the configured number of times, unless the executing thread is
+ * interrupted, e.g. because the caller gave up on the query. Other failures, e.g. malformed
+ * queries, are not retried.</p>
+ *
+ * <p>The results of the queries are cached in memory for the configured time to live. Optionally,
+ * the results can additionally be cached in a local directory, so that they survive restarts.</p>
+ *
+ * <p>The shared instance can be retrieved via {@link #getInstance()}.</p>
+ */
+public class SparqlQueryService implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(SparqlQueryService.class);
+
+  private static final String ENDPOINT_KEY = "sparql.endpoint";
+  private static final String DEFAULT_GRAPH_KEY = "sparql.default_graph";
+  private static final String POOL_SIZE_KEY = "sparql.pool.max_connections";
+  private static final String CONNECT_TIMEOUT_KEY = "sparql.timeout.connect";
+  private static final String QUERY_TIMEOUT_KEY = "sparql.timeout.query";
+  private static final String RETRY_COUNT_KEY = "sparql.retry.count";
+  private static final String RETRY_DELAY_KEY = "sparql.retry.delay";
+  private static final String PAGE_SIZE_KEY = "sparql.page_size";
+  private static final String CACHE_TTL_KEY = "sparql.cache.ttl";
+  private static final String CACHE_MAX_WEIGHT_KEY = "sparql.cache.max_weight";
+  private static final String CACHE_DISK_LOCATION_KEY = "sparql.cache.disk.location";
+
+  private static final String DEFAULT_ENDPOINT = "http://dbpedia.org/sparql";
+  private static final String DEFAULT_GRAPH = "http://dbpedia.org";
+  private static final int DEFAULT_POOL_SIZE = 20;
+  private static final long DEFAULT_CONNECT_TIMEOUT = 5000;
+  private static final long DEFAULT_QUERY_TIMEOUT = 10000;
+  private static final int DEFAULT_RETRY_COUNT = 5;
+  private static final long DEFAULT_RETRY_DELAY = 5000;
+  private static final long DEFAULT_PAGE_SIZE = 900;
+  // one day for now
+  private static final long DEFAULT_CACHE_TTL = 24L * 60L * 60L * 1000L;
+  private static final long DEFAULT_CACHE_MAX_WEIGHT = 50L * 1000L * 1000L;
+
+  private static SparqlQueryService instance = null;
+
+  private final String endpoint;
+  private final int retryCount;
+  private final long retryDelay;
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient httpClient;
+  // executes the queries of single pages, see execute
+  private final QueryExecutionFactory pageFactory;
+  private final long pageSize;
+  private final SparqlResultCache resultCache;
+  // number of failed queries whose errors were replaced by empty results
+  private final AtomicLong failureCount = new AtomicLong();
+
+  /**
+   * Constructs the query service with the values given in the configuration. Missing values are
+   * replaced by the defaults, i.e. DBpedia as endpoint.
+   *
+   * @param configuration configuration containing the SPARQL-specific settings
+   */
+  public SparqlQueryService(Configuration configuration) {
+    this(configuration.getString(ENDPOINT_KEY, DEFAULT_ENDPOINT),
+        configuration.getString(DEFAULT_GRAPH_KEY, DEFAULT_GRAPH),
+        configuration.getInt(POOL_SIZE_KEY, DEFAULT_POOL_SIZE),
+        configuration.getLong(CONNECT_TIMEOUT_KEY, DEFAULT_CONNECT_TIMEOUT),
+        configuration.getLong(QUERY_TIMEOUT_KEY, DEFAULT_QUERY_TIMEOUT),
+        configuration.getInt(RETRY_COUNT_KEY, DEFAULT_RETRY_COUNT),
+        configuration.getLong(RETRY_DELAY_KEY, DEFAULT_RETRY_DELAY),
+        configuration.getLong(PAGE_SIZE_KEY, DEFAULT_PAGE_SIZE),
+        configuration.getLong(CACHE_TTL_KEY, DEFAULT_CACHE_TTL),
+        configuration.getLong(CACHE_MAX_WEIGHT_KEY, DEFAULT_CACHE_MAX_WEIGHT),
+        configuration.getString(CACHE_DISK_LOCATION_KEY, ""));
+  }
+
+  /**
+   * Constructs the query service with the given parameters.
+   *
+   * @param endpoint URL of the SPARQL endpoint
+   * @param defaultGraph default graph used for the queries (may be null or empty)
+   * @param poolSize maximum number of simultaneously open connections to the endpoint
+   * @param connectTimeout timeout (in ms) for establishing a connection to the endpoint
+   * @param queryTimeout timeout (in ms) for the execution of a single query
+   * @param retryCount number of retries, if a query fails
+   * @param retryDelay delay (in ms) between two retries
+   * @param pageSize page size used for paginating the results
+   * @param cacheTimeToLive time (in ms) after which cached results expire
+   * @param cacheMaxWeight maximum number of characters held by the in-memory cache
+   * @param cacheLocation directory for the on-disk cache; null or empty disables it
+   */
+  public SparqlQueryService(String endpoint, String defaultGraph, int poolSize,
+      long connectTimeout, long queryTimeout, int retryCount, long retryDelay, long pageSize,
+      long cacheTimeToLive, long cacheMaxWeight, String cacheLocation) {
+    this.endpoint = endpoint;
+    this.retryCount = retryCount;
+    this.retryDelay = retryDelay;
+    this.pageSize = pageSize;
+    connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(poolSize);
+    connectionManager.setDefaultMaxPerRoute(poolSize);
+    RequestConfig requestConfig = RequestConfig.custom()
+        .setConnectTimeout((int) connectTimeout)
+        .setConnectionRequestTimeout((int) connectTimeout)
+        .setSocketTimeout((int) queryTimeout)
+        .build();
+    httpClient = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .build();
+
+    DatasetDescription datasetDescription = new DatasetDescription();
+    if (defaultGraph != null && !defaultGraph.isEmpty()) {
+      datasetDescription.addDefaultGraphURI(defaultGraph);
+    }
+    QueryExecutionFactory factory = new QueryExecutionFactoryHttp(endpoint, datasetDescription,
+        httpClient) {
+      @Override
+      public QueryExecution postProcesss(QueryEngineHTTP qe) {
+        // Jena replaces the default request config of the client by the one of the context, so
+        // without this context the queries would have no socket timeout and could block forever
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(requestConfig);
+        qe.setHttpContext(context);
+        // the default graph would replace the graphs given by the FROM-clauses of the query
+        if (qe.getQuery() != null && qe.getQuery().hasDatasetDescription()) {
+          return new QueryExecutionHttpWrapper(qe);
+        }
+        return super.postProcesss(qe);
+      }
+    };
+    factory = new QueryExecutionFactoryTimeout(factory, queryTimeout, TimeUnit.MILLISECONDS);
+    // retries are done by this class, as QueryExecutionFactoryRetry shuts its scheduler down
+    // after the first query and can therefore not be shared by all queries
+    if (cacheLocation != null && !cacheLocation.isEmpty()) {
+      log.debug("Caching query results additionally in directory '{}'.", cacheLocation);
+      factory = new QueryExecutionFactoryCacheEx(factory,
+          new CacheFrontendImpl(new CacheBackendFile(new File(cacheLocation), cacheTimeToLive)));
+    }
+    pageFactory = factory;
+    resultCache = new SparqlResultCache(cacheTimeToLive, cacheMaxWeight);
+    log.debug("Initialized SPARQL query service for endpoint {} with a pool of {} connections.",
+        endpoint, poolSize);
+  }
+
+  /**
+   * Provides the shared query service, which is built from the configuration on the first call.
+   *
+   * @return shared query service
+   */
+  public static synchronized SparqlQueryService getInstance() {
+    if (instance == null) {
+      instance = new SparqlQueryService(ConfigurationInitializer.getConfiguration());
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the URL of the endpoint used by this service.
+   *
+   * @return URL of the endpoint used by this service
+   */
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  /**
+   * Returns the values of the first result variable for the given SELECT-query. The results are
+   * taken from the cache, if possible. If the query fails, the error is logged and an empty set is
+   * returned.
+   *
+   * @param queryString valid SPARQL SELECT-query
+   * @return unmodifiable set of values of the first result variable
+   */
+  public Set<String> executeSelect(String queryString) {
+    try {
+      return resultCache.getSelectResult(queryString,
+          () -> Collections.unmodifiableSet(select(queryString)));
+    } catch (ExecutionException e) {
+      failureCount.incrementAndGet();
+      log.error("Error with query {}", queryString);
+      log.error(e.getCause().getLocalizedMessage());
+      return Collections.emptySet();
+    }
+  }
+
+  /**
+   * Returns the rows for the given SELECT-query, i.e. the values of all result variables in the
+   * order of their declaration. The rows are taken from the cache, if possible. If the query fails,
+   * the error is logged and an empty list is returned.
+   *
+   * @param queryString valid SPARQL SELECT-query
+   * @return unmodifiable list of rows; unbound values are represented by null
+   */
+  public List<List<String>> executeSelectRows(String queryString) {
+    try {
+      return executeSelectRowsOrFail(queryString);
+    } catch (QueryException e) {
+      failureCount.incrementAndGet();
+      log.error("Error with query {}", queryString);
+      log.error(e.getLocalizedMessage());
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Returns the rows for the given SELECT-query like {@link #executeSelectRows(String)}, but lets
+   * the caller handle a failed query, e.g. to fall back to other queries.
+   *
+   * @param queryString valid SPARQL SELECT-query
+   * @return unmodifiable list of rows; unbound values are represented by null
+   * @throws QueryException if the query failed or was cancelled
+   */
+  public List<List<String>> executeSelectRowsOrFail(String queryString) {
+    try {
+      return resultCache.getRowsResult(queryString,
+          () -> Collections.unmodifiableList(selectRows(queryString)));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof QueryException) {
+        throw (QueryException) e.getCause();
+      }
+      throw new QueryException(e.getCause().getLocalizedMessage(), e.getCause());
+    }
+  }
+
+  /**
+   * Executes the given ASK-query. The answer is taken from the cache, if possible. If the query
+   * fails, the error is logged and false is returned.
+   *
+   * @param queryString valid SPARQL ASK-query
+   * @return true if ASK-query true, false otherwise
+   */
+  public boolean executeAsk(String queryString) {
+    try {
+      return resultCache.getAskResult(queryString, () -> ask(queryString));
+    } catch (ExecutionException e) {
+      failureCount.incrementAndGet();
+      log.error("Error with query {}", queryString);
+      log.error(e.getCause().getLocalizedMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Returns the statistics of the result cache, i.e. the number of hits, misses and evictions.
+   *
+   * @return statistics of the result cache
+   */
+  public CacheStats getCacheStats() {
+    return resultCache.getStats();
+  }
+
+  /**
+   * Returns the number of queries which failed so far and for which an empty result (or false) was
+   * returned, so that callers can detect whether their results may be incomplete.
+   *
+   * @return number of failed queries so far
+   */
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+
+  private Set<String> select(String queryString) {
+    Set<String> finalSet = execute(queryString, qe -> toValueSet(qe.execSelect()));
+    log.trace("Query: '{}'. Found: {}", queryString, finalSet);
+    return finalSet;
+  }
+
+  private List<List<String>> selectRows(String queryString) {
+    List<List<String>> rows = execute(queryString, qe -> toRows(qe.execSelect()));
+    log.trace("Query: '{}'. Found {} rows.", queryString, rows.size());
+    return rows;
+  }
+
+  /**
+   * Executes the given query and retries it up to the configured number of times if it fails
+   * transiently (see {@link #isTransient(Throwable)}). Other failures are thrown immediately. If
+   * the current thread is interrupted, no further attempt is made.
+   *
+   * <p>The results are paginated. As the pagination replaces the failure of a page by an exception
+   * without any cause, the failures of the pages are recorded and thrown instead.</p>
+   *
+   * @param queryString valid SPARQL query
+   * @param execution executes the query and reads its results
+   * @param <T> type of the results
+   * @return results of the query
+   * @throws QueryCancelledException if the current thread was interrupted before the query
+   * succeeded
+   */
+  private <T> T execute(String queryString, Function<QueryExecution, T> execution) {
+    for (int attempt = 0; ; attempt++) {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new QueryCancelledException();
+      }
+      AtomicReference<RuntimeException> pageFailure = new AtomicReference<>();
+      QueryExecutionFactory qef =
+          new QueryExecutionFactoryPaginated(new FailureRecorder(pageFactory, pageFailure),
+              pageSize);
+      try (QueryExecution qe = qef.createQueryExecution(queryString)) {
+        return execution.apply(qe);
+      } catch (RuntimeException e) {
+        RuntimeException failure = pageFailure.get() != null ? pageFailure.get() : e;
+        if (attempt >= retryCount || !isTransient(failure)
+            || Thread.currentThread().isInterrupted()) {
+          throw failure;
+        }
+        log.debug("Query failed, retrying in {} ms: {}", retryDelay,
+            failure.getLocalizedMessage());
+      }
+      try {
+        Thread.sleep(retryDelay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Returns whether the given failure is transient, so that a retry may succeed, i.e. whether the
+   * endpoint was not reachable or did not answer in time (an IOException is among the causes), or
+   * whether it answered with a server error (5xx), a timeout (408) or because of too many requests
+   * (429).
+   *
+   * @param failure failure of a query
+   * @return true if the query should be retried
+   */
+  static boolean isTransient(Throwable failure) {
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException) {
+        return true;
+      }
+      int code = 0;
+      if (cause instanceof QueryExceptionHTTP) {
+        code = ((QueryExceptionHTTP) cause).getResponseCode();
+      } else if (cause instanceof HttpException) {
+        code = ((HttpException) cause).getResponseCode();
+      }
+      if (code >= 500 || code == 408 || code == 429) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Collects the values of the first result variable of the given result set.
+   *
+   * @param rs result set of a SELECT-query
+   * @return set of values of the first result variable
+   */
+  static Set<String> toValueSet(ResultSet rs) {
+    Set<String> values = new HashSet<>();
+    String varName = rs.getResultVars().get(0);
+    while (rs.hasNext()) {
+      QuerySolution qs = rs.next();
+      values.add(qs.get(varName).toString());
+    }
+    return values;
+  }
+
+  /**
+   * Collects the rows of the given result set, i.e. the values of all result variables in the order
+   * of their declaration.
+   *
+   * @param rs result set of a SELECT-query
+   * @return list of unmodifiable rows; unbound values are represented by null
+   */
+  static List<List<String>> toRows(ResultSet rs) {
+    List<List<String>> rows = new ArrayList<>();
+    List<String> varNames = rs.getResultVars();
+    while (rs.hasNext()) {
+      QuerySolution qs = rs.next();
+      List<String> row = new ArrayList<>(varNames.size());
+      for (String varName : varNames) {
+        row.add(qs.contains(varName) ? qs.get(varName).toString() : null);
+      }
+      rows.add(Collections.unmodifiableList(row));
+    }
+    return rows;
+  }
+
+  private boolean ask(String queryString) {
+    boolean answer = execute(queryString, QueryExecution::execAsk);
+    log.trace("Query: '{}'. Answer: {}", queryString, answer);
+    return answer;
+  }
+
+  /**
+   * Closes the pooled HTTP client and all of its connections.
+   */
+  @Override
+  public void close() {
+    try {
+      httpClient.close();
+    } catch (IOException ioE) {
+      log.error(ioE.getLocalizedMessage());
+    }
+    connectionManager.shutdown();
+  }
+
+  /**
+   * Records the first failure of the executions of the given factory.
+   */
+  private static class FailureRecorder extends QueryExecutionFactoryDecorator {
+
+    private final AtomicReference<RuntimeException> failure;
+
+    private FailureRecorder(QueryExecutionFactory decoratee,
+        AtomicReference<RuntimeException> failure) {
+      super(decoratee);
+      this.failure = failure;
+    }
+
+    @Override
+    public QueryExecution createQueryExecution(Query query) {
+      return record(super.createQueryExecution(query));
+    }
+
+    @Override
+    public QueryExecution createQueryExecution(String queryString) {
+      return record(super.createQueryExecution(queryString));
+    }
+
+    private QueryExecution record(QueryExecution qe) {
+      return new QueryExecutionDecorator(qe) {
+        @Override
+        public ResultSet execSelect() {
+          try {
+            return super.execSelect();
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+            throw e;
+          }
+        }
+
+        @Override
+        public boolean execAsk() {
+          try {
+            return super.execAsk();
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+            throw e;
+          }
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package org.aksw.sessa.importing.rdf;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class provides a bounded in-memory cache for the results of SPARQL queries. The entries are
+ * keyed by the normalized query string, expire after the given time to live and are evicted based
+ * on their weight, i.e. the number of characters in the query and its results, if the cache gets
+ * too big. The number of hits, misses and evictions is recorded and can be retrieved via {@link
+ * #getStats()}.
+ */
+public class SparqlResultCache {
+
+  private static final String ROWS_PREFIX = "rows:";
+
+  private final Cache<String, Object> cache;
+
+  /**
+   * Constructs the cache with the given time to live and maximum weight.
+   *
+   * @param timeToLive time (in ms) after which an entry expires
+   * @param maxWeight maximum weight of the cache, i.e. the maximum number of characters stored
+   */
+  public SparqlResultCache(long timeToLive, long maxWeight) {
+    cache = CacheBuilder.newBuilder()
+        .expireAfterWrite(timeToLive, TimeUnit.MILLISECONDS)
+        .maximumWeight(maxWeight)
+        .weigher(SparqlResultCache::weigh)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Returns the results of the given SELECT-query. If they are not cached, they are computed by the
+   * given loader and cached afterwards.
+   *
+   * @param queryString SPARQL SELECT-query
+   * @param loader computes the results if they are not cached
+   * @return results of the query
+   * @throws ExecutionException if the loader threw an exception, in which case nothing is cached
+   */
+  @SuppressWarnings("unchecked")
+  public Set<String> getSelectResult(String queryString, Callable<Set<String>> loader)
+      throws ExecutionException {
+    return (Set<String>) get(normalize(queryString), loader);
+  }
+
+  /**
+   * Returns the rows of the given SELECT-query. If they are not cached, they are computed by the
+   * given loader and cached afterwards.
+   *
+   * @param queryString SPARQL SELECT-query
+   * @param loader computes the rows if they are not cached
+   * @return rows of the query, each containing the values of the result variables in their order
+   * @throws ExecutionException if the loader threw an exception, in which case nothing is cached
+   */
+  @SuppressWarnings("unchecked")
+  public List<List<String>> getRowsResult(String queryString, Callable<List<List<String>>> loader)
+      throws ExecutionException {
+    // prefixed, so that the rows of a query do not collide with its single-variable results
+    return (List<List<String>>) get(ROWS_PREFIX + normalize(queryString), loader);
+  }
+
+  /**
+   * Returns the answer of the given ASK-query. If it is not cached, it is computed by the given
+   * loader and cached afterwards.
+   *
+   * @param queryString SPARQL ASK-query
+   * @param loader computes the answer if it is not cached
+   * @return answer of the query
+   * @throws ExecutionException if the loader threw an exception, in which case nothing is cached
+   */
+  public boolean getAskResult(String queryString, Callable<Boolean> loader)
+      throws ExecutionException {
+    return (Boolean) get(normalize(queryString), loader);
+  }
+
+  /**
+   * Returns the cached value for the given key or computes it with the given loader. Unchecked
+   * exceptions of the loader (e.g. HTTP errors of Jena) are wrapped into an ExecutionException as
+   * well, so that callers only have to handle one kind of failure.
+   */
+  private Object get(String key, Callable<?> loader) throws ExecutionException {
+    try {
+      return cache.get(key, loader::call);
+    } catch (UncheckedExecutionException e) {
+      throw new ExecutionException(e.getCause());
+    }
+  }
+
+  /**
+   * Returns the statistics of this cache, i.e. the number of hits, misses and evictions.
+   *
+   * @return statistics of this cache
+   */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Returns the number of entries in this cache.
+   *
+   * @return number of entries in this cache
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Normalizes the query string, so that queries which only differ in their white space share the
+   * same entry. White space inside of string literals (quoted with ' or ", also as long strings
+   * with three quotes) is kept, as it changes the meaning of the query.
+   *
+   * @param queryString query string to be normalized
+   * @return normalized query string
+   */
+  static String normalize(String queryString) {
+    String trimmed = queryString.trim();
+    StringBuilder normalized = new StringBuilder(trimmed.length());
+    int i = 0;
+    while (i < trimmed.length()) {
+      char c = trimmed.charAt(i);
+      if (Character.isWhitespace(c)) {
+        normalized.append(' ');
+        while (i < trimmed.length() && Character.isWhitespace(trimmed.charAt(i))) {
+          i++;
+        }
+      } else if (c == '"' || c == '\'') {
+        int end = endOfString(trimmed, i);
+        normalized.append(trimmed, i, end);
+        i = end;
+      } else {
+        normalized.append(c);
+        i++;
+      }
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * Returns the index after the string literal which starts at the given index, or the length of
+   * the query if the literal is not closed.
+   */
+  private static int endOfString(String queryString, int start) {
+    String delimiter = String.valueOf(queryString.charAt(start));
+    String longDelimiter = delimiter + delimiter + delimiter;
+    if (queryString.startsWith(longDelimiter, start)) {
+      delimiter = longDelimiter;
+    }
+    int i = start + delimiter.length();
+    while (i < queryString.length()) {
+      if (queryString.charAt(i) == '\\') {
+        // skips the escaped character, e.g. an escaped quote
+        i += 2;
+      } else if (queryString.startsWith(delimiter, i)) {
+        return i + delimiter.length();
+      } else {
+        i++;
+      }
+    }
+    return queryString.length();
+  }
+
+  private static int weigh(String key, Object value) {
+    return key.length() + weighValue(value);
+  }
+
+  private static int weighValue(Object value) {
+    if (value instanceof Collection) {
+      int weight = 0;
+      for (Object result : (Collection<?>) value) {
+        weight += weighValue(result);
+      }
+      return weight;
+    } else if (value instanceof String) {
+      return ((String) value).length();
+    }
+    return 0;
+  }
+}
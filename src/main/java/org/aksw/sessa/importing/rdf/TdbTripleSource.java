@@ -0,0 +1,127 @@
+package org.aksw.sessa.importing.rdf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb.TDB;
+import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.tdb.TDBLoader;
+import org.apache.jena.tdb.sys.TDBInternal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class provides a local triple source, which is backed by an embedded TDB store on disk. The
+ * store keeps the triples in B+-tree indexes for the SPO, POS and OSP permutations, which are
+ * memory-mapped on 64-bit systems, so the missing triple elements are found without any network
+ * round trips.
+ *
+ * <p>If the store is empty, it is built from the given RDF dumps (e.g. the N-Triples and Turtle
+ * files also used for the dictionary) using the bulk loader of TDB. Already built stores are
+ * reused.</p>
+ */
+public class TdbTripleSource implements TripleSourceInterface, AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(TdbTripleSource.class);
+
+  private final Dataset dataset;
+
+  /**
+   * Opens the store in the given directory without importing any files.
+   *
+   * @param location directory of the store
+   */
+  public TdbTripleSource(String location) {
+    this(location, null);
+  }
+
+  /**
+   * Opens the store in the given directory. If the store is empty, the given RDF files are
+   * imported.
+   *
+   * @param location directory of the store
+   * @param filesLocation RDF file or directory containing RDF files, which are imported if the
+   * store is empty; may be null or empty
+   */
+  public TdbTripleSource(String location, String filesLocation) {
+    log.info("Opening local triple store in '{}'.", location);
+    dataset = TDBFactory.createDataset(location);
+    // the bulk loader can only be used before the store is accessed in a transaction
+    if (dataset.asDatasetGraph().isEmpty() && filesLocation != null && !filesLocation.isEmpty()) {
+      load(filesLocation);
+    }
+  }
+
+  private void load(String filesLocation) {
+    List<String> files;
+    try (Stream<Path> paths = Files.walk(Paths.get(filesLocation))) {
+      files = paths.filter(Files::isRegularFile).map(Path::toString).sorted()
+          .collect(Collectors.toList());
+    } catch (IOException ioE) {
+      log.warn("Could not load any file in given path '{}'.", filesLocation);
+      return;
+    }
+    log.info("Building local triple store from {} files. This could take some time!",
+        files.size());
+    long startTime = System.nanoTime();
+    TDBLoader.load(TDBInternal.getBaseDatasetGraphTDB(dataset.asDatasetGraph()), files, false,
+        false);
+    TDB.sync(dataset);
+    log.info("Finished building local triple store (in {}sec).",
+        (System.nanoTime() - startTime) / (1000 * 1000 * 1000));
+  }
+
+  @Override
+  public Set<String> executeQuery(String queryString) {
+    return Txn.calculateRead(dataset, () -> {
+      try (QueryExecution qe = QueryExecutionFactory.create(queryString, dataset)) {
+        return SparqlQueryService.toValueSet(qe.execSelect());
+      } catch (RuntimeException e) {
+        log.error("Error with query {}", queryString);
+        log.error(e.getLocalizedMessage());
+        return Collections.emptySet();
+      }
+    });
+  }
+
+  @Override
+  public List<List<String>> executeRowQuery(String queryString) {
+    return Txn.calculateRead(dataset, () -> {
+      // errors are passed to the caller (see TripleSourceInterface#executeRowQuery(String))
+      try (QueryExecution qe = QueryExecutionFactory.create(queryString, dataset)) {
+        return SparqlQueryService.toRows(qe.execSelect());
+      }
+    });
+  }
+
+  @Override
+  public boolean askQuery(String queryString) {
+    return Txn.calculateRead(dataset, () -> {
+      try (QueryExecution qe = QueryExecutionFactory.create(queryString, dataset)) {
+        return qe.execAsk();
+      } catch (RuntimeException e) {
+        log.error("Error with query {}", queryString);
+        log.error(e.getLocalizedMessage());
+        return false;
+      }
+    });
+  }
+
+  /**
+   * Closes the store.
+   */
+  @Override
+  public void close() {
+    dataset.close();
+  }
+}
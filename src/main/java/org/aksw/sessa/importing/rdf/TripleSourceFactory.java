@@ -0,0 +1,99 @@
+package org.aksw.sessa.importing.rdf;
+
+import java.io.IOException;
+import org.aksw.sessa.importing.config.ConfigurationInitializer;
+import org.aksw.sessa.importing.rdf.compact.CompactTripleIndex;
+import org.apache.commons.configuration2.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class provides the triple source and the graph filler selected in the configuration.
+ * Supported types are
+ * <ul>
+ * <li>remote: the configured SPARQL endpoint (see {@link DbpediaSparqlQuery})</li>
+ * <li>local: an embedded TDB store (see {@link TdbTripleSource})</li>
+ * <li>compact: a compact, read-only triple index (see {@link CompactTripleIndex}), which is only
+ * used to expand the graph; other queries are sent to the SPARQL endpoint</li>
+ * </ul>
+ */
+public class TripleSourceFactory {
+
+  private static final Logger log = LoggerFactory.getLogger(TripleSourceFactory.class);
+
+  private static final String SOURCE_TYPE_KEY = "triples.source";
+  private static final String LOCAL_LOCATION_KEY = "triples.local.location";
+  private static final String LOCAL_FILES_KEY = "triples.local.files";
+  private static final String COMPACT_LOCATION_KEY = "triples.compact.location";
+
+  private static TripleSourceInterface instance = null;
+  private static CompactTripleIndex compactIndex = null;
+
+  private TripleSourceFactory() {
+  }
+
+  /**
+   * Provides the shared triple source, which is built from the configuration on the first call.
+   * If the configured type is unknown, the remote triple source is used.
+   *
+   * @return shared triple source
+   */
+  public static synchronized TripleSourceInterface getTripleSource() {
+    if (instance == null) {
+      instance = createTripleSource(ConfigurationInitializer.getConfiguration());
+    }
+    return instance;
+  }
+
+  /**
+   * Provides a graph filler for the configured type. For the compact type, the shared compact
+   * triple index is returned, which is opened on the first call. If it can not be opened, a graph
+   * filler using the SPARQL endpoint is returned.
+   *
+   * @return graph filler for the configured type
+   */
+  public static synchronized GraphFillerInterface getGraphFiller() {
+    Configuration configuration = ConfigurationInitializer.getConfiguration();
+    if ("compact".equals(configuration.getString(SOURCE_TYPE_KEY))) {
+      if (compactIndex == null) {
+        String location = configuration.getString(COMPACT_LOCATION_KEY);
+        try {
+          compactIndex = new CompactTripleIndex(location);
+        } catch (IOException ioE) {
+          log.error("Could not open compact triple index '{}'. Using SPARQL endpoint instead.",
+              location);
+          log.error(ioE.getLocalizedMessage());
+          return new SparqlGraphFiller();
+        }
+      }
+      return compactIndex;
+    }
+    return new SparqlGraphFiller();
+  }
+
+  /**
+   * Creates the triple source given in the configuration.
+   *
+   * @param configuration configuration containing the type and location of the triple source
+   * @return triple source given in the configuration
+   */
+  public static TripleSourceInterface createTripleSource(Configuration configuration) {
+    String type = configuration.getString(SOURCE_TYPE_KEY, "remote");
+    switch (type) {
+      case "local":
+        log.info("Using local triple store.");
+        return new TdbTripleSource(configuration.getString(LOCAL_LOCATION_KEY),
+            configuration.getString(LOCAL_FILES_KEY, ""));
+      case "remote":
+        log.info("Using remote SPARQL endpoint as triple source.");
+        return new DbpediaSparqlQuery();
+      case "compact":
+        log.info("Using remote SPARQL endpoint for queries not supported by the compact index.");
+        return new DbpediaSparqlQuery();
+      default:
+        log.error("Could not determine value of property '{}'. Given value: {}. Using remote.",
+            SOURCE_TYPE_KEY, type);
+        return new DbpediaSparqlQuery();
+    }
+  }
+}
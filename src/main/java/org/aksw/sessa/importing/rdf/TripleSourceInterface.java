@@ -0,0 +1,51 @@
+package org.aksw.sessa.importing.rdf;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Interface for sources of triples, which can be queried with SPARQL. The triple sources are used
+ * to find the missing triple elements while expanding the graph (see {@link SparqlGraphFiller})
+ * and during the post processing.
+ */
+public interface TripleSourceInterface {
+
+  /**
+   * Returns a set of results for the given query, i.e. the values of the first result variable.
+   *
+   * @param queryString valid SPARQL SELECT-query
+   * @return set of triple elements
+   */
+  Set<String> executeQuery(String queryString);
+
+  /**
+   * Returns all rows for the given query, i.e. the values of all result variables in the order of
+   * their declaration. In contrast to the other methods, a failed query is not answered with an
+   * empty result, so that the caller can tell it apart from a query without results.
+   *
+   * @param queryString valid SPARQL SELECT-query
+   * @return list of rows with the values of the result variables
+   * @throws org.apache.jena.query.QueryException if the query failed
+   */
+  List<List<String>> executeRowQuery(String queryString);
+
+  /**
+   * Executes the given ASK-query.
+   *
+   * @param queryString valid SPARQL ASK-query
+   * @return true if ASK-query true, false otherwise
+   */
+  boolean askQuery(String queryString);
+
+  /**
+   * Checks if the given triple is contained in this source.
+   *
+   * @param subject subject of the triple
+   * @param predicate predicate of the triple
+   * @param object object of the triple
+   * @return true if the triple is contained, false otherwise
+   */
+  default boolean askQuery(String subject, String predicate, String object) {
+    return askQuery(String.format("ASK{ <%1$s> <%2$s> <%3$s>. }", subject, predicate, object));
+  }
+}
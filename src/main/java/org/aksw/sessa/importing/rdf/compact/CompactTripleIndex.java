@@ -0,0 +1,358 @@
+package org.aksw.sessa.importing.rdf.compact;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.aksw.sessa.helper.files.MappedFile;
+import org.aksw.sessa.importing.rdf.GraphFillerInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class provides a compact, read-only index of triples in the style of HDT, which is used to
+ * find the missing triple elements locally. The index file is built by {@link
+ * CompactTripleIndexBuilder} and memory-mapped, so opening the index does not read its content.
+ *
+ * <p>The index consists of the following parts:</p>
+ * <ul>
+ * <li>a dictionary, which contains all terms (i.e. URIs and literals) sorted by their UTF-8
+ * bytes; the ID of a term is its position in the dictionary</li>
+ * <li>the triples in SPO order, i.e. for every subject the sorted list of its predicates and for
+ * every of these the sorted list of objects</li>
+ * <li>the triples in OPS order, i.e. for every object the sorted list of predicates pointing to it
+ * and for every of these the sorted list of subjects</li>
+ * </ul>
+ * The lists are stored as consecutive ID arrays, which are delimited by bitmaps. For every entry of
+ * the upper level, the bitmap contains a 0 for every entry of its list, followed by a 1. With the
+ * help of sampled positions of the 1s, the start of every list is found in (almost) constant
+ * time.
+ *
+ * <p>Instead of running a SPARQL query, the element completing two URIs is found by looking up the
+ * lists of the URIs and intersecting them.</p>
+ */
+public class CompactTripleIndex implements GraphFillerInterface, AutoCloseable {
+
+  /**
+   * Identifies the files containing a compact triple index.
+   */
+  static final long MAGIC = 0x5345535341484454L;
+  static final int VERSION = 1;
+  /**
+   * Every SAMPLE_RATE-th 1 of a bitmap has its position stored.
+   */
+  static final int SAMPLE_RATE = 512;
+
+  private static final Logger log = LoggerFactory.getLogger(CompactTripleIndex.class);
+  /**
+   * Maximum number of found elements per pair of URIs (same as for the SPARQL query).
+   */
+  private static final int RESULT_LIMIT = 100;
+
+  private final MappedFile file;
+  private final long termCount;
+  private final long tripleCount;
+  private final long termOffsetsPosition;
+  private final long termBytesPosition;
+  private final Levels spo;
+  private final Levels ops;
+
+  /**
+   * Opens the index in the given file.
+   *
+   * @param location path of the index file
+   * @throws IOException if the file could not be opened or is not a compact triple index
+   */
+  public CompactTripleIndex(String location) throws IOException {
+    file = new MappedFile(Paths.get(location));
+    if (file.size() < 32 || file.getLong(0) != MAGIC || file.getInt(8) != VERSION) {
+      file.close();
+      throw new IOException(String.format("'%s' is not a compact triple index.", location));
+    }
+    termCount = file.getLong(16);
+    tripleCount = file.getLong(24);
+    termOffsetsPosition = 32;
+    termBytesPosition = termOffsetsPosition + 8 * (termCount + 1);
+    long position = align(termBytesPosition + file.getLong(termOffsetsPosition + 8 * termCount));
+    spo = new Levels(position);
+    ops = new Levels(spo.end);
+    log.info("Opened compact triple index '{}' with {} terms and {} triples.", location,
+        termCount, tripleCount);
+  }
+
+  static long align(long position) {
+    return (position + 7) & ~7L;
+  }
+
+  /**
+   * Returns the number of (distinct) triples in the index.
+   *
+   * @return number of triples in the index
+   */
+  public long size() {
+    return tripleCount;
+  }
+
+  /**
+   * Returns the ID of the given term.
+   *
+   * @param term URI or literal
+   * @return ID of the term or -1 if the term is not contained in the index
+   */
+  public int getId(String term) {
+    byte[] key = term.getBytes(StandardCharsets.UTF_8);
+    long low = 0;
+    long high = termCount - 1;
+    while (low <= high) {
+      long mid = (low + high) >>> 1;
+      long start = file.getLong(termOffsetsPosition + 8 * mid);
+      int length = (int) (file.getLong(termOffsetsPosition + 8 * (mid + 1)) - start);
+      int cmp = file.compare(termBytesPosition + start, length, key);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return (int) mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the term with the given ID.
+   *
+   * @param id ID of the term
+   * @return term with the given ID
+   */
+  public String getTerm(int id) {
+    long start = file.getLong(termOffsetsPosition + 8L * id);
+    int length = (int) (file.getLong(termOffsetsPosition + 8L * (id + 1)) - start);
+    return file.getString(termBytesPosition + start, length);
+  }
+
+  /**
+   * Checks if the given triple is contained in the index.
+   *
+   * @param subject subject of the triple
+   * @param predicate predicate of the triple
+   * @param object object of the triple
+   * @return true if the triple is contained, false otherwise
+   */
+  public boolean contains(String subject, String predicate, String object) {
+    int s = getId(subject);
+    int p = getId(predicate);
+    int o = getId(object);
+    if (s < 0 || p < 0 || o < 0) {
+      return false;
+    }
+    long index = spo.find(s, p);
+    return index >= 0 && spo.containsChild(index, o);
+  }
+
+  @Override
+  public Set<String> findMissingTripleElement(String uri1, String uri2) {
+    Set<String> results = new HashSet<>();
+    int id1 = getId(uri1);
+    int id2 = getId(uri2);
+    if (id1 < 0 || id2 < 0) {
+      return results;
+    }
+    Set<Integer> found = new LinkedHashSet<>();
+    complete(id1, id2, found);
+    complete(id2, id1, found);
+    for (int id : found) {
+      results.add(getTerm(id));
+    }
+    return results;
+  }
+
+  /**
+   * Adds the IDs of all elements x with (a b x), (a x b) or (x a b) to the given set.
+   */
+  private void complete(int a, int b, Set<Integer> found) {
+    // a b ?x
+    long index = spo.find(a, b);
+    if (index >= 0) {
+      addChildren(spo, index, found);
+    }
+    // a ?x b: intersect the predicates of a (as subject) and b (as object)
+    long i = spo.start(a);
+    long iEnd = spo.end(a);
+    long j = ops.start(b);
+    long jEnd = ops.end(b);
+    while (i < iEnd && j < jEnd && found.size() < RESULT_LIMIT) {
+      int predicateOfA = spo.get(i);
+      int predicateOfB = ops.get(j);
+      if (predicateOfA < predicateOfB) {
+        i++;
+      } else if (predicateOfA > predicateOfB) {
+        j++;
+      } else {
+        if (spo.containsChild(i, b)) {
+          found.add(predicateOfA);
+        }
+        i++;
+        j++;
+      }
+    }
+    // ?x a b
+    index = ops.find(b, a);
+    if (index >= 0) {
+      addChildren(ops, index, found);
+    }
+  }
+
+  private void addChildren(Levels levels, long index, Set<Integer> found) {
+    long end = levels.childEnd(index);
+    for (long k = levels.childStart(index); k < end && found.size() < RESULT_LIMIT; k++) {
+      found.add(levels.getChild(k));
+    }
+  }
+
+  /**
+   * Closes the index file.
+   */
+  @Override
+  public void close() {
+    try {
+      file.close();
+    } catch (IOException ioE) {
+      log.error(ioE.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * Two levels of lists (e.g. predicates and objects for the SPO order) in the index file.
+   */
+  private class Levels {
+
+    private final Bitmap upperBitmap;
+    private final long upperPosition;
+    private final Bitmap lowerBitmap;
+    private final long lowerPosition;
+    private final long end;
+
+    private Levels(long position) {
+      upperBitmap = new Bitmap(position);
+      upperPosition = upperBitmap.end + 8;
+      lowerBitmap = new Bitmap(align(upperPosition + 4 * file.getLong(upperBitmap.end)));
+      lowerPosition = lowerBitmap.end + 8;
+      end = align(lowerPosition + 4 * file.getLong(lowerBitmap.end));
+    }
+
+    /**
+     * Returns the start of the upper-level list of the given term.
+     */
+    private long start(int id) {
+      return upperBitmap.listStart(id);
+    }
+
+    /**
+     * Returns the (exclusive) end of the upper-level list of the given term.
+     */
+    private long end(int id) {
+      return upperBitmap.listStart(id + 1L);
+    }
+
+    private int get(long index) {
+      return file.getInt(upperPosition + 4 * index);
+    }
+
+    /**
+     * Searches the upper-level list of the first term for the second term.
+     *
+     * @return index of the second term or -1 if it is not contained in the list
+     */
+    private long find(int id, int value) {
+      return binarySearch(upperPosition, start(id), end(id), value);
+    }
+
+    private long childStart(long index) {
+      return lowerBitmap.listStart(index);
+    }
+
+    private long childEnd(long index) {
+      return lowerBitmap.listStart(index + 1);
+    }
+
+    private int getChild(long index) {
+      return file.getInt(lowerPosition + 4 * index);
+    }
+
+    private boolean containsChild(long index, int value) {
+      return binarySearch(lowerPosition, childStart(index), childEnd(index), value) >= 0;
+    }
+
+    private long binarySearch(long arrayPosition, long from, long to, int value) {
+      long low = from;
+      long high = to - 1;
+      while (low <= high) {
+        long mid = (low + high) >>> 1;
+        int midValue = file.getInt(arrayPosition + 4 * mid);
+        if (midValue < value) {
+          low = mid + 1;
+        } else if (midValue > value) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Bitmap in the index file, which delimits the lists of a level.
+   */
+  private class Bitmap {
+
+    private final long wordsPosition;
+    private final long samplesPosition;
+    private final long end;
+
+    private Bitmap(long position) {
+      long wordCount = file.getLong(position + 8);
+      wordsPosition = position + 16;
+      long sampleCountPosition = wordsPosition + 8 * wordCount;
+      samplesPosition = sampleCountPosition + 8;
+      end = samplesPosition + 8 * file.getLong(sampleCountPosition);
+    }
+
+    /**
+     * Returns the start of the list with the given index, i.e. the number of 0s before the
+     * (index-1)-th 1.
+     */
+    private long listStart(long index) {
+      if (index == 0) {
+        return 0;
+      }
+      return select(index - 1) - (index - 1);
+    }
+
+    /**
+     * Returns the position of the k-th 1 (starting with 0).
+     */
+    private long select(long k) {
+      long sample = k / SAMPLE_RATE;
+      long position = file.getLong(samplesPosition + 8 * sample);
+      long remaining = k - sample * SAMPLE_RATE;
+      long wordIndex = position >>> 6;
+      long word = file.getLong(wordsPosition + 8 * wordIndex) & (-1L << (position & 63));
+      int count = Long.bitCount(word);
+      while (remaining >= count) {
+        remaining -= count;
+        wordIndex++;
+        word = file.getLong(wordsPosition + 8 * wordIndex);
+        count = Long.bitCount(word);
+      }
+      for (long r = 0; r < remaining; r++) {
+        // clears the lowest 1
+        word &= word - 1;
+      }
+      return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+    }
+  }
+}
@@ -0,0 +1,515 @@
+package org.aksw.sessa.importing.rdf.compact;
+
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.lucene.search.suggest.Sort;
+import org.apache.lucene.search.suggest.Sort.BufferSize;
+import org.apache.lucene.search.suggest.Sort.ByteSequencesReader;
+import org.apache.lucene.search.suggest.Sort.ByteSequencesWriter;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class converts RDF dumps (e.g. N-Triples or Turtle files) into a {@link
+ * CompactTripleIndex}. The dumps are read once, writing every occurrence of a term to a temporary
+ * file. The occurrences are sorted by term to assign the IDs, then by position to encode the
+ * triples with these IDs, and the encoded triples are sorted in SPO and OPS order. All sorting is
+ * done with an external merge sort (see {@link Sort}), which spills to temporary files, so the heap
+ * needed by the builder does not depend on the size of the dumps.
+ *
+ * <p>Usage: {@code CompactTripleIndexBuilder <index file> <RDF file or directory>...}</p>
+ */
+public class CompactTripleIndexBuilder {
+
+  private static final Logger log = LoggerFactory.getLogger(CompactTripleIndexBuilder.class);
+  /**
+   * Number of bytes of the position which is appended to a term in the records of its occurrences.
+   */
+  private static final int POSITION_BYTES = 8;
+  /**
+   * Maximum length of a record of the external sort, whose length is stored as short.
+   */
+  private static final int MAX_RECORD_LENGTH = Short.MAX_VALUE;
+
+  /**
+   * Orders the occurrences of the terms by the UTF-8 bytes of their terms (shorter terms first, if
+   * one is the prefix of the other) and then by their position.
+   */
+  static final Comparator<BytesRef> OCCURRENCE_ORDER = (occurrence1, occurrence2) -> {
+    int termLength1 = occurrence1.length - POSITION_BYTES;
+    int termLength2 = occurrence2.length - POSITION_BYTES;
+    int cmp = compareBytes(occurrence1.bytes, occurrence1.offset, termLength1,
+        occurrence2.bytes, occurrence2.offset, termLength2);
+    if (cmp != 0) {
+      return cmp;
+    }
+    return compareBytes(occurrence1.bytes, occurrence1.offset + termLength1, POSITION_BYTES,
+        occurrence2.bytes, occurrence2.offset + termLength2, POSITION_BYTES);
+  };
+
+  // used to represent the terms in the same way as the results of SPARQL queries
+  private final Model model = ModelFactory.createDefaultModel();
+  private final File tempDirectory;
+  private final BufferSize bufferSize;
+  private final List<File> tempFiles = new ArrayList<>();
+  private long termCount;
+  private CountingOutputStream counter;
+
+  /**
+   * Constructs the builder, which sorts in the default temporary directory with a buffer whose size
+   * depends on the available heap.
+   */
+  public CompactTripleIndexBuilder() {
+    this(null, 0);
+  }
+
+  /**
+   * Constructs the builder, which sorts in the given directory with a buffer of the given size.
+   *
+   * @param tempDirectory directory for the temporary files; if null, the default temporary
+   * directory is used
+   * @param bufferSizeMb size (in MB) of the buffer of the external sort; if smaller than 1, the
+   * size depends on the available heap
+   */
+  public CompactTripleIndexBuilder(File tempDirectory, int bufferSizeMb) {
+    this.tempDirectory = tempDirectory;
+    this.bufferSize =
+        bufferSizeMb < 1 ? BufferSize.automatic() : BufferSize.megabytes(bufferSizeMb);
+  }
+
+  /**
+   * Builds the index file from the RDF files given in the arguments.
+   *
+   * @param args path of the index file, followed by the RDF files or directories
+   * @throws IOException if a file could not be read or the index could not be written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println(
+          "Usage: CompactTripleIndexBuilder <index file> <RDF file or directory>...");
+      return;
+    }
+    new CompactTripleIndexBuilder()
+        .build(Arrays.asList(args).subList(1, args.length), Paths.get(args[0]));
+  }
+
+  /**
+   * Builds the index from the given RDF files and writes it to the given path.
+   *
+   * @param locations RDF files or directories containing RDF files
+   * @param output path of the index file
+   * @throws IOException if a file could not be read or the index could not be written, or if the
+   * dumps exceed the limits of the index (i.e. more than {@link Integer#MAX_VALUE} terms or a term
+   * longer than about 32 KB)
+   */
+  public void build(List<String> locations, Path output) throws IOException {
+    long startTime = System.nanoTime();
+    List<String> files = new ArrayList<>();
+    for (String location : locations) {
+      try (Stream<Path> paths = Files.walk(Paths.get(location))) {
+        files.addAll(paths.filter(Files::isRegularFile).map(Path::toString).sorted()
+            .collect(Collectors.toList()));
+      }
+    }
+
+    try {
+      log.info("Collecting terms of {} files.", files.size());
+      File occurrences = createTempFile();
+      long tripleCount;
+      try (ByteSequencesWriter writer = new ByteSequencesWriter(occurrences)) {
+        tripleCount = collectOccurrences(files, writer);
+      }
+      File sortedOccurrences = sort(occurrences, OCCURRENCE_ORDER);
+
+      log.info("Assigning IDs to the terms of {} triples.", tripleCount);
+      File termOffsets = createTempFile();
+      File termBytes = createTempFile();
+      File positionIds = createTempFile();
+      assignIds(sortedOccurrences, termOffsets, termBytes, positionIds);
+      File sortedPositionIds = sort(positionIds, Sort.DEFAULT_COMPARATOR);
+
+      log.info("Encoding triples with {} terms.", termCount);
+      File spo = createTempFile();
+      encodeTriples(sortedPositionIds, spo);
+      File sortedSpo = sort(spo, Sort.DEFAULT_COMPARATOR);
+
+      log.info("Writing triples to '{}'.", output);
+      File ops = createTempFile();
+      long distinctTripleCount;
+      counter = new CountingOutputStream(
+          new BufferedOutputStream(new FileOutputStream(output.toFile()), 1 << 20));
+      try (DataOutputStream out = new DataOutputStream(counter)) {
+        out.writeLong(CompactTripleIndex.MAGIC);
+        out.writeInt(CompactTripleIndex.VERSION);
+        out.writeInt(0);
+        out.writeLong(termCount);
+        // the number of distinct triples is only known after writing them
+        out.writeLong(0);
+        copy(termOffsets, out);
+        copy(termBytes, out);
+        pad(out);
+        // triples are sorted in SPO order, subjects and objects are swapped to get the OPS order
+        try (ByteSequencesWriter opsWriter = new ByteSequencesWriter(ops)) {
+          distinctTripleCount = writeLevels(sortedSpo, out, opsWriter);
+        }
+        writeLevels(sort(ops, Sort.DEFAULT_COMPARATOR), out, null);
+      }
+      try (RandomAccessFile file = new RandomAccessFile(output.toFile(), "rw")) {
+        file.seek(24);
+        file.writeLong(distinctTripleCount);
+      }
+      log.info("Finished building compact triple index with {} triples (in {}sec).",
+          distinctTripleCount, (System.nanoTime() - startTime) / (1000 * 1000 * 1000));
+    } finally {
+      for (File file : tempFiles) {
+        if (file.exists() && !file.delete()) {
+          log.debug("Could not delete temporary file '{}'", file);
+        }
+      }
+      tempFiles.clear();
+    }
+  }
+
+  /**
+   * Writes every occurrence of a term in the given files as term followed by its position, i.e. 3
+   * times the number of the triple plus the index of the term in the triple.
+   *
+   * @return number of read triples
+   */
+  private long collectOccurrences(List<String> files, ByteSequencesWriter writer)
+      throws IOException {
+    long[] tripleCount = {0};
+    for (String file : files) {
+      log.debug("Reading file '{}'.", file);
+      try {
+        RDFDataMgr.parse(new StreamRDFBase() {
+          @Override
+          public void triple(Triple triple) {
+            long position = 3 * tripleCount[0];
+            try {
+              writeOccurrence(writer, triple.getSubject(), position);
+              writeOccurrence(writer, triple.getPredicate(), position + 1);
+              writeOccurrence(writer, triple.getObject(), position + 2);
+            } catch (IOException ioE) {
+              throw new UncheckedIOException(ioE);
+            }
+            tripleCount[0]++;
+          }
+        }, file);
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+    return tripleCount[0];
+  }
+
+  private void writeOccurrence(ByteSequencesWriter writer, Node node, long position)
+      throws IOException {
+    byte[] term = toTerm(node).getBytes(StandardCharsets.UTF_8);
+    if (term.length + POSITION_BYTES > MAX_RECORD_LENGTH) {
+      throw new IOException(String.format("Term of %d bytes exceeds the maximum length of %d "
+              + "bytes: %s...", term.length, MAX_RECORD_LENGTH - POSITION_BYTES,
+          new String(term, 0, 100, StandardCharsets.UTF_8)));
+    }
+    byte[] occurrence = Arrays.copyOf(term, term.length + POSITION_BYTES);
+    writeLong(occurrence, term.length, position);
+    writer.write(occurrence);
+  }
+
+  private String toTerm(Node node) {
+    return model.asRDFNode(node).toString();
+  }
+
+  /**
+   * Reads the occurrences sorted by term, writes every distinct term to the dictionary (i.e. the
+   * offsets and the bytes of the terms) and writes the pairs of position and term ID.
+   */
+  private void assignIds(File sortedOccurrences, File termOffsets, File termBytes,
+      File positionIds) throws IOException {
+    termCount = 0;
+    try (ByteSequencesReader reader = new ByteSequencesReader(sortedOccurrences);
+        DataOutputStream offsets = createOutput(termOffsets);
+        DataOutputStream bytes = createOutput(termBytes);
+        ByteSequencesWriter writer = new ByteSequencesWriter(positionIds)) {
+      BytesRef occurrence = new BytesRef();
+      BytesRef previousTerm = new BytesRef();
+      byte[] positionId = new byte[POSITION_BYTES + 4];
+      long offset = 0;
+      offsets.writeLong(offset);
+      while (reader.read(occurrence)) {
+        BytesRef term = new BytesRef(occurrence.bytes, occurrence.offset,
+            occurrence.length - POSITION_BYTES);
+        if (termCount == 0 || !term.bytesEquals(previousTerm)) {
+          if (termCount == Integer.MAX_VALUE) {
+            throw new IOException(String.format(
+                "The dumps contain more than %d terms, which is the maximum of the index.",
+                Integer.MAX_VALUE));
+          }
+          bytes.write(term.bytes, term.offset, term.length);
+          offset += term.length;
+          offsets.writeLong(offset);
+          previousTerm.copyBytes(term);
+          termCount++;
+        }
+        System.arraycopy(occurrence.bytes, term.offset + term.length, positionId, 0,
+            POSITION_BYTES);
+        writeInt(positionId, POSITION_BYTES, (int) (termCount - 1));
+        writer.write(positionId);
+      }
+    }
+  }
+
+  /**
+   * Reads the pairs of position and term ID sorted by position and writes the triples, i.e. the
+   * IDs of the three consecutive positions of every triple.
+   */
+  private void encodeTriples(File sortedPositionIds, File triples) throws IOException {
+    try (ByteSequencesReader reader = new ByteSequencesReader(sortedPositionIds);
+        ByteSequencesWriter writer = new ByteSequencesWriter(triples)) {
+      BytesRef positionId = new BytesRef();
+      byte[] triple = new byte[12];
+      int index = 0;
+      while (reader.read(positionId)) {
+        System.arraycopy(positionId.bytes, positionId.offset + POSITION_BYTES, triple, 4 * index,
+            4);
+        index++;
+        if (index == 3) {
+          writer.write(triple);
+          index = 0;
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the (sorted) triples as two levels of lists, i.e. the lists of the second elements for
+   * every term and the lists of the third elements for every entry of these lists. Duplicates are
+   * skipped.
+   *
+   * @param sortedTriples triples sorted by their first, second and third element
+   * @param out output of the index
+   * @param swapped if not null, every written triple is written to it with its first and third
+   * element swapped
+   * @return number of written (i.e. distinct) triples
+   */
+  private long writeLevels(File sortedTriples, DataOutputStream out, ByteSequencesWriter swapped)
+      throws IOException {
+    BitmapBuilder upperBitmap = new BitmapBuilder();
+    BitmapBuilder lowerBitmap = new BitmapBuilder();
+    IntListBuilder upper = new IntListBuilder();
+    IntListBuilder lower = new IntListBuilder();
+    try (ByteSequencesReader reader = new ByteSequencesReader(sortedTriples)) {
+      BytesRef triple = new BytesRef();
+      byte[] swappedTriple = new byte[12];
+      boolean hasTriple = reader.read(triple);
+      int[] previous = {-1, -1, -1};
+      for (long term = 0; term < termCount; term++) {
+        while (hasTriple && readInt(triple, 0) == term) {
+          int second = readInt(triple, 1);
+          upper.add(second);
+          upperBitmap.add(false);
+          while (hasTriple && readInt(triple, 0) == term && readInt(triple, 1) == second) {
+            int third = readInt(triple, 2);
+            if (previous[0] != term || previous[1] != second || previous[2] != third) {
+              lower.add(third);
+              lowerBitmap.add(false);
+              if (swapped != null) {
+                writeInt(swappedTriple, 0, third);
+                writeInt(swappedTriple, 4, second);
+                writeInt(swappedTriple, 8, (int) term);
+                swapped.write(swappedTriple);
+              }
+              previous[0] = (int) term;
+              previous[1] = second;
+              previous[2] = third;
+            }
+            hasTriple = reader.read(triple);
+          }
+          lowerBitmap.add(true);
+        }
+        upperBitmap.add(true);
+      }
+    }
+    upperBitmap.write(out);
+    upper.write(out);
+    lowerBitmap.write(out);
+    lower.write(out);
+    return lower.count;
+  }
+
+  /**
+   * Pads the output with zeros, so that the next value starts at a position divisible by 8.
+   */
+  private void pad(DataOutputStream out) throws IOException {
+    long count = counter.getCount();
+    for (long i = count; i < CompactTripleIndex.align(count); i++) {
+      out.writeByte(0);
+    }
+  }
+
+  private File sort(File input, Comparator<BytesRef> comparator) throws IOException {
+    File output = createTempFile();
+    Sort.SortInfo info = new Sort(comparator, bufferSize,
+        tempDirectory == null ? Sort.defaultTempDir() : tempDirectory, Sort.MAX_TEMPFILES)
+        .sort(input, output);
+    log.debug("Sorted '{}': {}", input, info);
+    if (!input.delete()) {
+      log.debug("Could not delete temporary file '{}'", input);
+    }
+    return output;
+  }
+
+  private File createTempFile() throws IOException {
+    File file = File.createTempFile("sessa-triples-", ".tmp",
+        tempDirectory == null ? Sort.defaultTempDir() : tempDirectory);
+    file.deleteOnExit();
+    tempFiles.add(file);
+    return file;
+  }
+
+  private static DataOutputStream createOutput(File file) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+  }
+
+  private static void copy(File file, DataOutputStream out) throws IOException {
+    Files.copy(file.toPath(), out);
+    if (!file.delete()) {
+      log.debug("Could not delete temporary file '{}'", file);
+    }
+  }
+
+  private static int compareBytes(byte[] bytes1, int offset1, int length1, byte[] bytes2,
+      int offset2, int length2) {
+    int length = Math.min(length1, length2);
+    for (int i = 0; i < length; i++) {
+      int cmp = Integer.compare(bytes1[offset1 + i] & 0xFF, bytes2[offset2 + i] & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(length1, length2);
+  }
+
+  private static int readInt(BytesRef triple, int index) {
+    int offset = triple.offset + 4 * index;
+    return ((triple.bytes[offset] & 0xFF) << 24) | ((triple.bytes[offset + 1] & 0xFF) << 16)
+        | ((triple.bytes[offset + 2] & 0xFF) << 8) | (triple.bytes[offset + 3] & 0xFF);
+  }
+
+  private static void writeInt(byte[] bytes, int offset, int value) {
+    for (int i = 3; i >= 0; i--) {
+      bytes[offset + i] = (byte) value;
+      value >>>= 8;
+    }
+  }
+
+  private static void writeLong(byte[] bytes, int offset, long value) {
+    for (int i = 7; i >= 0; i--) {
+      bytes[offset + i] = (byte) value;
+      value >>>= 8;
+    }
+  }
+
+  /**
+   * Writes a list of IDs to a temporary file, which is copied to the output together with the
+   * number of IDs.
+   */
+  private class IntListBuilder {
+
+    private final File file;
+    private final DataOutputStream values;
+    private long count = 0;
+
+    private IntListBuilder() throws IOException {
+      file = createTempFile();
+      values = createOutput(file);
+    }
+
+    private void add(int value) throws IOException {
+      values.writeInt(value);
+      count++;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      values.close();
+      out.writeLong(count);
+      copy(file, out);
+      pad(out);
+    }
+  }
+
+  /**
+   * Builds a bitmap together with the positions of every {@link CompactTripleIndex#SAMPLE_RATE}-th
+   * 1. The words and the samples are written to temporary files, which are copied to the output.
+   */
+  private class BitmapBuilder {
+
+    private final File wordsFile;
+    private final DataOutputStream words;
+    private final File samplesFile;
+    private final DataOutputStream samples;
+    private long word = 0;
+    private long bitCount = 0;
+    private long sampleCount = 0;
+    private long oneCount = 0;
+
+    private BitmapBuilder() throws IOException {
+      wordsFile = createTempFile();
+      words = createOutput(wordsFile);
+      samplesFile = createTempFile();
+      samples = createOutput(samplesFile);
+    }
+
+    private void add(boolean bit) throws IOException {
+      if (bit) {
+        word |= 1L << (bitCount & 63);
+        if (oneCount % CompactTripleIndex.SAMPLE_RATE == 0) {
+          samples.writeLong(bitCount);
+          sampleCount++;
+        }
+        oneCount++;
+      }
+      bitCount++;
+      if ((bitCount & 63) == 0) {
+        words.writeLong(word);
+        word = 0;
+      }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      if ((bitCount & 63) != 0) {
+        words.writeLong(word);
+      }
+      words.close();
+      samples.close();
+      out.writeLong(bitCount);
+      out.writeLong((bitCount + 63) >>> 6);
+      copy(wordsFile, out);
+      out.writeLong(sampleCount);
+      copy(samplesFile, out);
+    }
+  }
+}
@@ -1,14 +1,22 @@
 package org.aksw.sessa.main;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.aksw.sessa.candidate.Candidate;
 import org.aksw.sessa.candidate.CandidateGenerator;
@@ -21,10 +29,14 @@ import org.aksw.sessa.helper.graph.GraphInterface;
 import org.aksw.sessa.helper.graph.Node;
 import org.aksw.sessa.importing.config.ConfigurationInitializer;
 import org.aksw.sessa.importing.config.exception.MalformedConfigurationException;
+import org.aksw.sessa.importing.dictionary.CachingDictionary;
 import org.aksw.sessa.importing.dictionary.FileBasedDictionary;
 import org.aksw.sessa.importing.dictionary.energy.EnergyFunctionInterface;
 import org.aksw.sessa.importing.dictionary.energy.LevenshteinDistanceFunction;
+import org.aksw.sessa.importing.dictionary.energy.LocalPageRankFunction;
 import org.aksw.sessa.importing.dictionary.energy.PageRankFunction;
+import org.aksw.sessa.importing.dictionary.energy.PageRankStore;
+import org.aksw.sessa.importing.dictionary.implementation.FstDictionary;
 import org.aksw.sessa.importing.dictionary.implementation.HashMapDictionary;
 import org.aksw.sessa.importing.dictionary.implementation.LuceneDictionary;
 import org.aksw.sessa.importing.dictionary.util.Filter;
@@ -54,9 +66,26 @@ public class SESSA {
   private static final String FILTER_NAMES_KEY = "dictionary.filter.names";
   private static final String LUCENE_LOCATION_KEY = "dictionary.lucene.location";
   private static final String LUCENE_OVERRIDE_KEY = "dictionary.lucene.override_on_start";
+  private static final String PAGERANK_LOCATION_KEY = "dictionary.pagerank.location";
+  private static final String BULK_IMPORT_KEY = "dictionary.lucene.bulk_import";
+  private static final String CACHE_MAX_WEIGHT_KEY = "dictionary.cache.max_weight";
+  private static final String CACHE_TTL_KEY = "dictionary.cache.ttl";
+  private static final String LOOKUP_PARALLELISM_KEY = "candidate.lookup.parallelism";
+  private static final String LOOKUP_TIMEOUT_KEY = "candidate.lookup.timeout";
+  private static final String ANSWER_DEADLINE_KEY = "sessa.answer.deadline";
 
   private FileBasedDictionary dictionary;
+  // caches the lookups of the dictionary; filters and energy functions are set via the cache
+  private CachingDictionary cachingDictionary;
+  // executes the dictionary lookups of a question concurrently; null to look them up sequentially
+  private ExecutorService lookupExecutor;
+  private long lookupTimeout;
+  // maximum time (in ms) for answering a single question; values smaller than 1 disable the limit
+  private long answerDeadline;
   private QueryProcessingInterface queryProcess;
+  private PageRankStore pageRankStore;
+  // one instance per function name, so that filters and energy calculation share their scores
+  private Map<String, EnergyFunctionInterface> energyFunctions = new HashMap<>();
 
   private Configuration configuration;
 
@@ -81,9 +110,20 @@ public class SESSA {
     queryProcess = new SimpleQueryProcessing();
     this.configuration = configuration;
     dictionary = initDictionary();
+    cachingDictionary = new CachingDictionary(dictionary,
+        configuration.getLong(CACHE_MAX_WEIGHT_KEY, 0),
+        configuration.getLong(CACHE_TTL_KEY, 60L * 60L * 1000L));
+    int lookupParallelism = configuration.getInt(LOOKUP_PARALLELISM_KEY, 1);
+    if (lookupParallelism > 1) {
+      lookupExecutor = Executors.newFixedThreadPool(lookupParallelism,
+          new ThreadFactoryBuilder().setNameFormat("candidate-lookup-%d").setDaemon(true).build());
+    }
+    lookupTimeout = configuration.getLong(LOOKUP_TIMEOUT_KEY, Long.MAX_VALUE);
+    answerDeadline = configuration.getLong(ANSWER_DEADLINE_KEY, 0);
 
-    if (!configuration.getBoolean(LUCENE_OVERRIDE_KEY) &&
-        dictionary.size() > 0) {
+    // the Lucene dictionary skips the files which were already imported and did not change (see
+    // ImportProgress), so the files are always given to it to resume interrupted imports
+    if (!(dictionary instanceof LuceneDictionary) && dictionary.size() > 0) {
       log.info("Skipping building dictionary.");
     } else {
       log.info("Building dictionary from files. This could take some time!");
@@ -103,6 +143,7 @@ public class SESSA {
    */
   public void loadFileToDictionary(FileHandlerInterface handler) {
     dictionary.putAll(handler);
+    cachingDictionary.invalidate();
   }
 
 
@@ -113,7 +154,7 @@ public class SESSA {
    * candidates.
    */
   public void addFilter(Filter filter) {
-    dictionary.addFilter(filter);
+    cachingDictionary.addFilter(filter);
   }
 
   /**
@@ -122,7 +163,16 @@ public class SESSA {
    * @param function energy function to be applied to all nodes
    */
   public void setEnergyFunction(EnergyFunctionInterface function) {
-    dictionary.setEnergyFunction(function);
+    cachingDictionary.setEnergyFunction(function);
+  }
+
+  /**
+   * Returns the statistics of the cache of dictionary lookups, e.g. its hit rate.
+   *
+   * @return statistics of the cache of dictionary lookups
+   */
+  public CacheStats getDictionaryCacheStats() {
+    return cachingDictionary.getStats();
   }
 
   /**
@@ -139,27 +189,7 @@ public class SESSA {
     if (question.equals("")) {
       return null;
     } else {
-      QAModel qaModel = new QAModel();
-      qaModel.setQuestion(question);
-      NGramHierarchy nGramHierarchy = queryProcess.processQuery(question);
-      qaModel.setNGramHierarchy(nGramHierarchy);
-      CandidateGenerator canGen = new CandidateGenerator(dictionary);
-      Map<NGramEntryPosition, Set<Candidate>> canMap = canGen.getCandidateMapping(nGramHierarchy);
-      qaModel.setCandidateMap(canMap);
-      log.debug("Candidate map content:");
-      for (Entry<NGramEntryPosition, Set<Candidate>> entry : canMap.entrySet()) {
-        NGramEntryPosition pos = entry.getKey();
-        log.debug("\t{}='{}'=>{}",
-            pos,
-            nGramHierarchy.getNGram(pos.getLength(), pos.getPosition()),
-            entry.getValue());
-      }
-      ColorSpreader colorSpreader = new ColorSpreader(canMap);
-      colorSpreader.spreadColors();
-      log.debug("{}", colorSpreader.getGraph());
-      qaModel.setResults(colorSpreader.getResult());
-      PostProcessing postProc = new PostProcessing();
-      qaModel = postProc.process(qaModel);
+      QAModel qaModel = answerQuestion(question);
       Set<String> stringResults = new HashSet<>();
       for (Node result : qaModel.getResults()) {
         stringResults.add(result.getContent().toString());
@@ -168,6 +198,25 @@ public class SESSA {
     }
   }
 
+  /**
+   * Answers the given question within the configured time. If the time runs out, e.g. because the
+   * SPARQL endpoint is slow, the best results found until then are returned and the model is
+   * marked as partial (see {@link QAModel#isPartial()}).
+   *
+   * @param question question in natural language (see {@link #answer(String)})
+   * @return QA-model with the results for the question
+   */
+  public QAModel answerQuestion(String question) {
+    long deadline = newDeadline();
+    QAModel qaModel = spreadColors(question, deadline);
+    PostProcessing postProc = new PostProcessing();
+    qaModel = postProc.process(qaModel, deadline);
+    if (qaModel.isPartial()) {
+      log.warn("Returning partial answer for '{}', as the time for answering ran out.", question);
+    }
+    return qaModel;
+  }
+
   /**
    * This method is mainly for testing purposes. It returns the graph for a given question
    *
@@ -175,20 +224,7 @@ public class SESSA {
    * @return fully colored graph
    */
   GraphInterface getGraphFor(String question) {
-    NGramHierarchy nGramHierarchy = queryProcess.processQuery(question);
-    CandidateGenerator canGen = new CandidateGenerator(dictionary);
-    Map<NGramEntryPosition, Set<Candidate>> canMap = canGen.getCandidateMapping(nGramHierarchy);
-    log.debug("Candidate map content:");
-    for (Entry<NGramEntryPosition, Set<Candidate>> entry : canMap.entrySet()) {
-      NGramEntryPosition pos = entry.getKey();
-      log.debug("\t{}='{}'=>{}",
-          pos,
-          nGramHierarchy.getNGram(pos.getLength(), pos.getPosition()),
-          entry.getValue());
-    }
-    ColorSpreader colorSpreader = new ColorSpreader(canMap);
-    colorSpreader.spreadColors();
-    return colorSpreader.getGraph();
+    return spreadColors(question, newDeadline()).getGraph();
   }
 
   /**
@@ -201,32 +237,65 @@ public class SESSA {
     if (question.equals("")) {
       return null;
     } else {
-      QAModel qaModel = new QAModel();
-      qaModel.setQuestion(question);
-      NGramHierarchy nGramHierarchy = queryProcess.processQuery(question);
-      qaModel.setNGramHierarchy(nGramHierarchy);
-      CandidateGenerator canGen = new CandidateGenerator(dictionary);
-      Map<NGramEntryPosition, Set<Candidate>> canMap = canGen.getCandidateMapping(nGramHierarchy);
-      qaModel.setCandidateMap(canMap);
-      log.debug("Candidate map content:");
-      for (Entry<NGramEntryPosition, Set<Candidate>> entry : canMap.entrySet()) {
-        NGramEntryPosition pos = entry.getKey();
-        log.debug("\t{}='{}'=>{}",
-            pos,
-            nGramHierarchy.getNGram(pos.getLength(), pos.getPosition()),
-            entry.getValue());
-      }
-      ColorSpreader colorSpreader = new ColorSpreader(canMap);
-      colorSpreader.spreadColors();
-      log.debug("{}", colorSpreader.getGraph());
-      qaModel.setGraph(colorSpreader.getGraph());
-      qaModel.setResults(colorSpreader.getResult());
+      long deadline = newDeadline();
+      QAModel qaModel = spreadColors(question, deadline);
       PostProcessing postProc = new PostProcessing();
-      QAModel postQaModel = postProc.process(qaModel);
+      QAModel postQaModel = postProc.process(qaModel, deadline);
       return new QAModel[]{qaModel, postQaModel};
     }
   }
 
+  /**
+   * Finds the candidates for the n-grams of the given question and spreads the colors in the
+   * resulting graph, both until the given deadline.
+   *
+   * @param question question for which the candidates should be found
+   * @param deadline point in time (in ms) until which the question should be answered
+   * @return QA-model with the graph and the results of the color spreading
+   */
+  private QAModel spreadColors(String question, long deadline) {
+    QAModel qaModel = new QAModel();
+    qaModel.setQuestion(question);
+    NGramHierarchy nGramHierarchy = queryProcess.processQuery(question);
+    qaModel.setNGramHierarchy(nGramHierarchy);
+    CandidateGenerator canGen = newCandidateGenerator();
+    Map<NGramEntryPosition, Set<Candidate>> canMap =
+        canGen.getCandidateMapping(nGramHierarchy, deadline);
+    qaModel.setCandidateMap(canMap);
+    log.debug("Candidate map content:");
+    for (Entry<NGramEntryPosition, Set<Candidate>> entry : canMap.entrySet()) {
+      NGramEntryPosition pos = entry.getKey();
+      log.debug("\t{}='{}'=>{}",
+          pos,
+          nGramHierarchy.getNGram(pos.getLength(), pos.getPosition()),
+          entry.getValue());
+    }
+    ColorSpreader colorSpreader = new ColorSpreader(canMap);
+    colorSpreader.spreadColors(deadline);
+    log.debug("{}", colorSpreader.getGraph());
+    qaModel.setGraph(colorSpreader.getGraph());
+    qaModel.setResults(colorSpreader.getResult());
+    qaModel.setPartial(canGen.isPartial() || colorSpreader.isPartial());
+    return qaModel;
+  }
+
+  /**
+   * Returns the point in time (in ms) until which a question, whose answering starts now, should be
+   * answered.
+   */
+  private long newDeadline() {
+    long deadline = System.currentTimeMillis() + answerDeadline;
+    if (answerDeadline < 1 || deadline < answerDeadline) {
+      // no time limit or overflow
+      return Long.MAX_VALUE;
+    }
+    return deadline;
+  }
+
+  private CandidateGenerator newCandidateGenerator() {
+    return new CandidateGenerator(cachingDictionary, lookupExecutor, lookupTimeout);
+  }
+
   private FileBasedDictionary initDictionary()
       throws MalformedConfigurationException {
     switch (configuration.getString(DICTIONARY_TYPE)) {
@@ -241,6 +310,9 @@ public class SESSA {
       case "hashmap":
         log.info("Using HashMap-based Dictionary.");
         return new HashMapDictionary();
+      case "fst":
+        log.info("Using FST-based Dictionary.");
+        return new FstDictionary();
       default:
         throw new MalformedConfigurationException(
             String.format("Could not determine value of property '%s'", DICTIONARY_TYPE));
@@ -252,22 +324,36 @@ public class SESSA {
     HierarchicalConfiguration subConfig = configuration.configurationAt(FILES_KEY);
     if (subConfig.containsKey("rdf")) {
       log.info("Found entry for rdf-files in configuration file. Importing...");
-      loadSingleDictionary(new RdfFileHandler(), subConfig.getString("rdf"));
+      loadSingleDictionary(RdfFileHandler::new, subConfig.getString("rdf"));
     }
     if (subConfig.containsKey("tsv")) {
       log.info("Found entry for tsv-files in configuration file. Importing...");
-      loadSingleDictionary(new TsvFileHandler(), subConfig.getString("tsv"));
+      loadSingleDictionary(TsvFileHandler::new, subConfig.getString("tsv"));
     }
     if (subConfig.containsKey("reverse_tsv")) {
       log.info("Found entry for reverse tsv-files in configuration file. Importing...");
-      loadSingleDictionary(new ReverseTsvFileHandler(), subConfig.getString("reverse_tsv"));
+      loadSingleDictionary(ReverseTsvFileHandler::new, subConfig.getString("reverse_tsv"));
     }
   }
 
 
-  private void loadSingleDictionary(FileHandlerInterface handler,
+  private void loadSingleDictionary(Supplier<FileHandlerInterface> handlerFactory,
       String pathString) {
     log.debug("Path to files is '{}'", pathString);
+    if (dictionary instanceof LuceneDictionary
+        && configuration.getBoolean(BULK_IMPORT_KEY, false)) {
+      try (Stream<Path> path = Files.walk(Paths.get(pathString))) {
+        List<String> files = path.filter(Files::isRegularFile).map(Path::toString).sorted()
+            .collect(Collectors.toList());
+        ((LuceneDictionary) dictionary).putAllBulk(files, handlerFactory);
+        cachingDictionary.invalidate();
+      } catch (IOException ioE) {
+        log.warn(
+            "Could not load any file in given path '{}'.", pathString);
+      }
+      return;
+    }
+    FileHandlerInterface handler = handlerFactory.get();
     try (Stream<Path> path = Files.walk(Paths.get(pathString))) {
       path
           .filter(Files::isRegularFile)
@@ -319,12 +405,35 @@ public class SESSA {
 
   private EnergyFunctionInterface getFunction(String functionName)
       throws MalformedConfigurationException {
+    EnergyFunctionInterface function = energyFunctions.get(functionName);
+    if (function == null) {
+      function = createFunction(functionName);
+      energyFunctions.put(functionName, function);
+    }
+    return function;
+  }
+
+  private EnergyFunctionInterface createFunction(String functionName)
+      throws MalformedConfigurationException {
     switch (functionName) {
       case "levenshtein":
         log.debug("Add Levenshtein filter.");
         return new LevenshteinDistanceFunction();
       case "pagerank":
         log.debug("Add PageRank filter.");
+        String location = configuration.getString(PAGERANK_LOCATION_KEY, "");
+        if (!location.isEmpty()) {
+          try {
+            if (pageRankStore == null) {
+              pageRankStore = new PageRankStore(location);
+            }
+            return new LocalPageRankFunction(pageRankStore);
+          } catch (IOException ioE) {
+            log.error("Could not open PageRank store '{}'. Using SPARQL endpoint instead.",
+                location);
+            log.error(ioE.getLocalizedMessage());
+          }
+        }
         return new PageRankFunction();
       default:
         throw new MalformedConfigurationException(
@@ -0,0 +1,106 @@
+package org.aksw.sessa.query.models;
+
+/**
+ * Provides the bitmask representation of colors. As every color (see {@link NGramEntryPosition})
+ * covers a contiguous interval of words, it can be encoded as a {@code long} in which the bit
+ * {@code i} is set iff the color covers the {@code i}-th word. The position is then given by the
+ * number of trailing zeros and the length by the number of set bits. The union of several colors,
+ * e.g. all words covered by a node, is simply the disjunction of their masks.
+ *
+ * <p>This only works for the first {@link #MAX_WORDS} words of a question, so the callers have to
+ * fall back to the {@link NGramEntryPosition} methods for longer questions (see {@link
+ * #isRepresentable(NGramEntryPosition)}).</p>
+ */
+public final class ColorMask {
+
+  /**
+   * Maximum number of words which can be represented by a mask.
+   */
+  public static final int MAX_WORDS = Long.SIZE;
+
+  private ColorMask() {
+  }
+
+  /**
+   * Returns true if the given color can be represented by a mask, i.e. if it ends within the first
+   * {@link #MAX_WORDS} words.
+   *
+   * @param color color that should be represented by a mask
+   * @return true if the given color can be represented by a mask
+   */
+  public static boolean isRepresentable(NGramEntryPosition color) {
+    return color.getLength() > 0 && color.getPosition() >= 0
+        && color.getPosition() + color.getLength() <= MAX_WORDS;
+  }
+
+  /**
+   * Returns the mask of the color with the given length and position.
+   *
+   * @param length length of the n-gram
+   * @param position position of the n-gram in its "row"
+   * @return mask of the color
+   * @see #isRepresentable(NGramEntryPosition)
+   */
+  public static long of(int length, int position) {
+    return (-1L >>> (MAX_WORDS - length)) << position;
+  }
+
+  /**
+   * Returns the length of the color represented by the given mask.
+   *
+   * @param mask mask of a color
+   * @return length of the color
+   */
+  public static int getLength(long mask) {
+    return Long.bitCount(mask);
+  }
+
+  /**
+   * Returns the position of the color represented by the given mask.
+   *
+   * @param mask mask of a color
+   * @return position of the color
+   */
+  public static int getPosition(long mask) {
+    return Long.numberOfTrailingZeros(mask);
+  }
+
+  /**
+   * Returns true if the given masks share at least one word.
+   *
+   * @param mask mask of a color or a union of colors
+   * @param otherMask mask of a color or a union of colors
+   * @return true if the given masks share at least one word
+   * @see NGramEntryPosition#isOverlappingWith(NGramEntryPosition)
+   */
+  public static boolean isOverlapping(long mask, long otherMask) {
+    return (mask & otherMask) != 0;
+  }
+
+  /**
+   * Returns true if one of the given colors covers all words of the other one, i.e. if the colors
+   * are equal or one is an ancestor of the other.
+   *
+   * @param mask mask of a color
+   * @param otherMask mask of a color
+   * @return true if the given colors are related
+   * @see NGramEntryPosition#isRelatedTo(NGramEntryPosition)
+   */
+  public static boolean isRelated(long mask, long otherMask) {
+    long common = mask & otherMask;
+    return common == mask || common == otherMask;
+  }
+
+  /**
+   * Returns true if the given colors are mergeable, i.e. if they are related or don't overlap.
+   *
+   * @param mask mask of a color
+   * @param otherMask mask of a color
+   * @return true if the given colors are mergeable
+   * @see NGramEntryPosition#isMergeable(NGramEntryPosition)
+   */
+  public static boolean isMergeable(long mask, long otherMask) {
+    long common = mask & otherMask;
+    return common == 0 || common == mask || common == otherMask;
+  }
+}
@@ -48,35 +48,30 @@ public class NGramEntryPosition {
   }
 
   /**
-   * Returns a set of all positional information of descendants of this n-gram entry.
+   * Returns the bitmask of the words covered by this entry, which is only valid if {@link
+   * ColorMask#isRepresentable(NGramEntryPosition)} holds.
    *
-   * @return all positional informtion of descendats of this entry
+   * @return bitmask of the words covered by this entry
+   * @see ColorMask
    */
-  public Set<NGramEntryPosition> getAllDescendants() {
-    return getAllDescendants(this);
+  public long getWordMask() {
+    return ColorMask.of(length, position);
   }
 
   /**
-   * This method is used for recursive calls to get all decendants for this n-gram position.
+   * Returns a set of all positional information of descendants of this n-gram entry.
    *
-   * @param pos position of the ngram entry for which the decendants should be searched for
-   * @return all descendants of the given node
-   * @see #getAllDescendants()
+   * @return all positional informtion of descendats of this entry
    */
-  private Set<NGramEntryPosition> getAllDescendants(NGramEntryPosition pos) {
-    if (pos.getLength() == 1) {
-      return new HashSet<>();
-    } else {
-      Set<NGramEntryPosition> descendants = new HashSet<>();
-      NGramEntryPosition child1 = new NGramEntryPosition(pos.getLength() - 1, pos.getPosition());
-      NGramEntryPosition child2 = new NGramEntryPosition(pos.getLength() - 1,
-          pos.getPosition() + 1);
-      descendants.add(child1);
-      descendants.add(child2);
-      descendants.addAll(getAllDescendants(child1));
-      descendants.addAll(getAllDescendants(child2));
-      return descendants;
+  public Set<NGramEntryPosition> getAllDescendants() {
+    Set<NGramEntryPosition> descendants = new HashSet<>();
+    // every shorter n-gram within the words of this entry is a descendant
+    for (int l = length - 1; l > 0; l--) {
+      for (int i = position; i + l <= position + length; i++) {
+        descendants.add(new NGramEntryPosition(l, i));
+      }
     }
+    return descendants;
   }
 
   /**
@@ -169,7 +164,10 @@ public class NGramEntryPosition {
    * @return true if this color is an ancestor of the given color, false otherwise
    */
   public boolean isAncestorOf(NGramEntryPosition otherColor) {
-    return this.getAllDescendants().contains(otherColor);
+    return this.getLength() > otherColor.getLength()
+        && this.getPosition() <= otherColor.getPosition()
+        && otherColor.getPosition() + otherColor.getLength()
+        <= this.getPosition() + this.getLength();
   }
 
   /**
@@ -21,6 +21,8 @@ public class QAModel {
   private Map<NGramEntryPosition, Set<Candidate>> candidateMap;
   private int explanationScore;
   private int maxPossibleExplanationScore;
+  // true if the results are only the best ones found before the deadline of the question
+  private boolean partial;
 
   public QAModel() {
     question = "";
@@ -31,6 +33,7 @@ public class QAModel {
     candidateMap = null;
     explanationScore = 0;
     maxPossibleExplanationScore = 0;
+    partial = false;
   }
 
   public QAModel(QAModel other) {
@@ -42,6 +45,7 @@ public class QAModel {
     candidateMap = other.getCandidateMap();
     explanationScore = other.getExplanationScore();
     maxPossibleExplanationScore = other.getMaxPossibleExplanationScore();
+    partial = other.isPartial();
   }
 
 
@@ -107,6 +111,14 @@ public class QAModel {
     return maxPossibleExplanationScore;
   }
 
+  public boolean isPartial() {
+    return partial;
+  }
+
+  public void setPartial(boolean partial) {
+    this.partial = partial;
+  }
+
 
   @Override
   public String toString() {
@@ -117,6 +129,7 @@ public class QAModel {
         ", results=" + results +
         ", nGramHierarchy=" + nGramHierarchy +
         ", candidateMap=" + candidateMap +
+        ", partial=" + partial +
         '}';
   }
 }
@@ -1,11 +1,19 @@
 package org.aksw.sessa.query.processing.post;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.aksw.sessa.helper.graph.GraphInterface;
 import org.aksw.sessa.helper.graph.Node;
 import org.aksw.sessa.importing.config.ConfigurationInitializer;
-import org.aksw.sessa.importing.rdf.DbpediaSparqlQuery;
+import org.aksw.sessa.importing.rdf.TripleSourceFactory;
+import org.aksw.sessa.importing.rdf.TripleSourceInterface;
 import org.aksw.sessa.query.models.QAModel;
 import org.apache.commons.configuration2.Configuration;
 import org.slf4j.Logger;
@@ -14,14 +22,34 @@ import org.slf4j.LoggerFactory;
 public class PostProcessing {
 
   private static final Logger log = LoggerFactory.getLogger(PostProcessing.class);
+  private static final String PARALLELISM_KEY = "post_processing.parallelism";
+  private static final int DEFAULT_PARALLELISM = 4;
+  // executes the ASK-queries, so that waiting for them can be given up at the deadline
+  private static ExecutorService sharedExecutor;
 
   private final String RDF_TYPE_URI = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
 
   private final String MESSAGE_FOUND = "Found post processing case";
   private final int MAX_RESULT_SIZE = 20;
 
+  private TripleSourceInterface dbpQuery = TripleSourceFactory.getTripleSource();
+
 
   public QAModel process(QAModel qAModel) {
+    return process(qAModel, Long.MAX_VALUE);
+  }
+
+  /**
+   * Post processes the given model. Queries which are not answered before the given deadline are
+   * given up; the results found until then are returned and marked as partial (see {@link
+   * QAModel#isPartial()}).
+   *
+   * @param qAModel model with the results of the color spreading
+   * @param deadline point in time (in ms, see {@link System#currentTimeMillis()}) after which no
+   * more queries are awaited
+   * @return post processed model
+   */
+  public QAModel process(QAModel qAModel, long deadline) {
     log.debug("Starting post processing...");
     QAModel newQAModel = new QAModel(qAModel);
     Set<Node> results = qAModel.getResults();
@@ -50,14 +78,14 @@ public class PostProcessing {
       // handling rdf:type-answers
       if (node.getContent().toString().equals(RDF_TYPE_URI)) {
         log.debug("{}: rdf:type is the only answer.", MESSAGE_FOUND);
-        newQAModel = handleRdfTypeAnswer(qAModel);
+        newQAModel = handleRdfTypeAnswer(qAModel, deadline);
       }
     }
     return newQAModel;
   }
 
 
-  private QAModel handleRdfTypeAnswer(QAModel qaModel) {
+  private QAModel handleRdfTypeAnswer(QAModel qaModel, long deadline) {
     QAModel postProcessModel = new QAModel(qaModel);
     GraphInterface originalGraph = qaModel.getGraph();
     Node rdfType = qaModel.getResults().iterator().next();
@@ -69,9 +97,14 @@ public class PostProcessing {
     for (Node factNode : path.getNeighborsLeadingTo(rdfType)) {
       for (Node neighbor1 : path.getNeighborsLeadingTo(factNode)) {
         for (Node neighbor2 : path.getNeighborsLeadingTo(factNode)) {
-          if (neighbor1 != neighbor2 && isRdfTypeOf(neighbor1, neighbor2)) {
-            log.debug("Found node that is instance of another: {}", neighbor2);
-            results.add(neighbor2);
+          if (neighbor1 != neighbor2 && !postProcessModel.isPartial()) {
+            if (isRdfTypeOf(neighbor1, neighbor2, deadline)) {
+              log.debug("Found node that is instance of another: {}", neighbor2);
+              results.add(neighbor2);
+            } else if (System.currentTimeMillis() >= deadline) {
+              log.warn("Deadline reached, stopping the post processing.");
+              postProcessModel.setPartial(true);
+            }
           }
         }
       }
@@ -80,12 +113,49 @@ public class PostProcessing {
     return postProcessModel;
   }
 
-  private boolean isRdfTypeOf(Node classNode, Node instanceNode) {
-    DbpediaSparqlQuery dbpQuery = new DbpediaSparqlQuery();
-    return dbpQuery.askQuery(
+  /**
+   * Returns the executor shared by all post processings. Its number of threads, i.e. the maximum
+   * number of concurrent ASK-queries, is given by the configuration.
+   *
+   * @return executor shared by all post processings
+   */
+  private static synchronized ExecutorService getSharedExecutor() {
+    if (sharedExecutor == null) {
+      int parallelism = ConfigurationInitializer.getConfiguration()
+          .getInt(PARALLELISM_KEY, DEFAULT_PARALLELISM);
+      sharedExecutor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+          new ThreadFactoryBuilder().setNameFormat("post-processing-%d").setDaemon(true).build());
+    }
+    return sharedExecutor;
+  }
+
+  /**
+   * Checks if the given instance node is of the type of the given class node. If the query is not
+   * answered before the given deadline, false is returned.
+   */
+  private boolean isRdfTypeOf(Node classNode, Node instanceNode, long deadline) {
+    long remaining = deadline - System.currentTimeMillis();
+    if (remaining <= 0) {
+      return false;
+    }
+    Future<Boolean> answer = getSharedExecutor().submit(() -> dbpQuery.askQuery(
         instanceNode.getContent().toString(),
         RDF_TYPE_URI,
-        classNode.getContent().toString());
+        classNode.getContent().toString()));
+    try {
+      return answer.get(remaining, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      log.debug("Gave up on checking if {} is of type {}.", instanceNode, classNode);
+    } catch (ExecutionException e) {
+      log.error("Could not check if {} is of type {}: {}", instanceNode, classNode,
+          e.getCause().getLocalizedMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // interrupts the query, so that it is not retried and ends at the latest after the query
+    // timeout (see sparql.timeout.query) instead of keeping a thread of the executor busy
+    answer.cancel(true);
+    return false;
   }
 
 }
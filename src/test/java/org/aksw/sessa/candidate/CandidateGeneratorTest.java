@@ -1,5 +1,6 @@
 package org.aksw.sessa.candidate;
 
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.core.IsNot.not;
 
@@ -7,6 +8,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.aksw.sessa.importing.dictionary.DictionaryInterface;
 import org.aksw.sessa.importing.dictionary.implementation.SimpleMapDictionary;
 import org.aksw.sessa.query.models.NGramEntryPosition;
 import org.aksw.sessa.query.models.NGramHierarchy;
@@ -27,10 +33,11 @@ public class CandidateGeneratorTest {
   HashSet<String> spouse;
   HashSet<String> birthPlace;
   HashSet<String> gates;
+  Map<String, Set<String>> candidateEntities;
 
   @Before
   public void initialize() {
-    Map<String, Set<String>> candidateEntities = new HashMap<>();
+    candidateEntities = new HashMap<>();
     spouse = new HashSet<>();
     spouse.add("dbo:spouse");
     candidateEntities.put("spouse", spouse);
@@ -81,4 +88,84 @@ public class CandidateGeneratorTest {
     Assert.assertThat(candidates, not(hasItem(billGates)));
   }
 
+  @Test
+  public void testGet_UriKeptAtLongestNGrams() {
+    Map<String, Set<String>> entities = new HashMap<>();
+    Set<String> uri = new HashSet<>();
+    uri.add("dbr:X");
+    entities.put("a b", uri);
+    entities.put("b c", uri);
+    entities.put("b", uri);
+    entities.put("c", uri);
+    entities.put("d", uri);
+    Map<NGramEntryPosition, Set<Candidate>> mapping =
+        new CandidateGenerator(new SimpleMapDictionary(entities))
+            .getCandidateMapping(new NGramHierarchy("a b c d"));
+    // overlapping n-grams are no ancestors of each other, so both keep the URI
+    Assert.assertThat(mapping.get(new NGramEntryPosition(2, 0)).size(), equalTo(1));
+    Assert.assertThat(mapping.get(new NGramEntryPosition(2, 1)).size(), equalTo(1));
+    Assert.assertThat(mapping.get(new NGramEntryPosition(1, 1)).isEmpty(), equalTo(true));
+    Assert.assertThat(mapping.get(new NGramEntryPosition(1, 2)).isEmpty(), equalTo(true));
+    Assert.assertThat(mapping.get(new NGramEntryPosition(1, 3)).size(), equalTo(1));
+  }
+
+  @Test
+  public void testGet_ConcurrentLookupsSameAsSequential() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      CandidateGenerator concurrentGenerator = new CandidateGenerator(
+          new SimpleMapDictionary(candidateEntities), executor, 10000L);
+      NGramHierarchy runningExample = new NGramHierarchy("birthplace bill gates wife");
+      Assert.assertThat(concurrentGenerator.getCandidateMapping(runningExample),
+          equalTo(candidateMapping));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testGet_PassedDeadlineSkipsLookups() {
+    Assert.assertThat(candidateGenerator.isPartial(), equalTo(false));
+    NGramHierarchy runningExample = new NGramHierarchy("birthplace bill gates wife");
+    Map<NGramEntryPosition, Set<Candidate>> mapping =
+        candidateGenerator.getCandidateMapping(runningExample, 0L);
+    Assert.assertThat(candidateGenerator.isPartial(), equalTo(true));
+    for (Set<Candidate> candidates : mapping.values()) {
+      Assert.assertThat(candidates.isEmpty(), equalTo(true));
+    }
+  }
+
+  @Test
+  public void testGet_SlowLookupsAreSkipped() throws InterruptedException {
+    CountDownLatch interrupted = new CountDownLatch(1);
+    DictionaryInterface dictionary = new SimpleMapDictionary(candidateEntities) {
+      @Override
+      public Set<Candidate> get(String nGram) {
+        if (nGram.equals("wife")) {
+          try {
+            Thread.sleep(5000);
+          } catch (InterruptedException e) {
+            interrupted.countDown();
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.get(nGram);
+      }
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      CandidateGenerator concurrentGenerator = new CandidateGenerator(dictionary, executor, 200L);
+      NGramHierarchy runningExample = new NGramHierarchy("birthplace bill gates wife");
+      Map<NGramEntryPosition, Set<Candidate>> mapping =
+          concurrentGenerator.getCandidateMapping(runningExample);
+      Assert.assertThat(mapping.get(new NGramEntryPosition(1, 3)).isEmpty(), equalTo(true));
+      Assert.assertThat(mapping.get(new NGramEntryPosition(2, 1)),
+          hasItem(new Candidate("dbr:Bill_Gates", "bill gates")));
+      // the abandoned lookup is interrupted instead of keeping its thread busy
+      Assert.assertThat(interrupted.await(1, TimeUnit.SECONDS), equalTo(true));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
 }
@@ -2,12 +2,18 @@ package org.aksw.sessa.colorspreading;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import org.aksw.sessa.candidate.Candidate;
+import org.aksw.sessa.helper.graph.CompactGraph;
 import org.aksw.sessa.helper.graph.GraphInterface;
 import org.aksw.sessa.helper.graph.Node;
 import org.aksw.sessa.query.models.NGramEntryPosition;
@@ -85,4 +91,117 @@ public class ColorSpreaderTest {
     System.out.println(graph.toString());
     Assert.assertThat(graph.getNodes(), hasSize(7));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testSpreadColors_prebuiltGraph() {
+    Node<String> birthPlace = new Node<>("birthPlace");
+    birthPlace.addColor(new NGramEntryPosition(1, 0));
+    birthPlace.setEnergy(2);
+    Node<String> billGates = new Node<>("Bill_Gates");
+    billGates.addColor(new NGramEntryPosition(1, 1));
+    billGates.setEnergy(3);
+    Node<String> dallas = new Node<>("Dallas");
+    Node<Integer> factNode = new Node<>(0);
+    factNode.setNodeType(true);
+    for (Node node : new Node[]{dallas, factNode}) {
+      node.addColors(birthPlace.getColors());
+      node.addColors(billGates.getColors());
+    }
+    // only one neighbor of this fact node is activated, so it must not be activated
+    Node<String> seattle = new Node<>("Seattle");
+    Node<Integer> inactiveFactNode = new Node<>(1);
+    inactiveFactNode.setNodeType(true);
+    inactiveFactNode.addColors(birthPlace.getColors());
+
+    CompactGraph graph = new CompactGraph();
+    for (Node node : new Node[]{birthPlace, billGates, dallas, factNode, seattle,
+        inactiveFactNode}) {
+      graph.addNode(node);
+    }
+    graph.addEdge(birthPlace, factNode);
+    graph.addEdge(billGates, factNode);
+    graph.addEdge(factNode, dallas);
+    graph.addEdge(birthPlace, inactiveFactNode);
+    graph.addEdge(inactiveFactNode, seattle);
+
+    colorSpread = new ColorSpreader(graph);
+    Set<Node> results = colorSpread.spreadColors();
+    Assert.assertThat(results, hasSize(1));
+    Assert.assertThat(results.iterator().next().getContent(), is("Dallas"));
+    Assert.assertThat(factNode.getEnergy(), is(5f));
+    Assert.assertThat(inactiveFactNode.getEnergy(), is(0f));
+    Assert.assertThat(seattle.getEnergy(), is(0f));
+  }
+
+  @Test
+  public void testSpreadColors_parallelSameAsSequential() {
+    for (int seed = 0; seed < 10; seed++) {
+      CompactGraph sequentialGraph = randomGraph(seed);
+      colorSpread = new ColorSpreader(sequentialGraph);
+      colorSpread.setParallelThreshold(0);
+      Set<Node> sequentialResult = colorSpread.spreadColors();
+
+      CompactGraph parallelGraph = randomGraph(seed);
+      colorSpread = new ColorSpreader(parallelGraph);
+      colorSpread.setParallelThreshold(1);
+      Set<Node> parallelResult = colorSpread.spreadColors();
+
+      Assert.assertThat(parallelResult, equalTo(sequentialResult));
+      for (int id = 0; id < sequentialGraph.getNodeCount(); id++) {
+        Assert.assertThat(parallelGraph.getEnergy(id), is(sequentialGraph.getEnergy(id)));
+      }
+    }
+  }
+
+  @Test
+  public void testSpreadColors_deadlineStillSpreadsCurrentGraph() {
+    CompactGraph fullGraph = randomGraph(0);
+    Set<Node> expected = new ColorSpreader(fullGraph).spreadColors();
+    CompactGraph graph = randomGraph(0);
+    colorSpread = new ColorSpreader(graph);
+    Set<Node> results = colorSpread.spreadColors(0L);
+    Assert.assertThat(colorSpread.isPartial(), is(true));
+    // the graph is not expanded anymore, but the colors are spread over it
+    Assert.assertThat(results, equalTo(expected));
+    for (int id = 0; id < graph.getNodeCount(); id++) {
+      Assert.assertThat(graph.getEnergy(id), is(fullGraph.getEnergy(id)));
+    }
+  }
+
+  /**
+   * Builds a graph for a question with 8 words, in which nodes for random n-grams are connected by
+   * fact nodes (with one or two further neighbors).
+   */
+  private CompactGraph randomGraph(int seed) {
+    Random random = new Random(seed);
+    CompactGraph graph = new CompactGraph();
+    List<Node> nodes = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      int length = 1 + random.nextInt(3);
+      Node<String> node = new Node<>("node-" + i);
+      node.addColor(new NGramEntryPosition(length, random.nextInt(9 - length)));
+      node.setEnergy(random.nextInt(10));
+      graph.addNode(node);
+      nodes.add(node);
+    }
+    for (int i = 0; i < 300; i++) {
+      Node node1 = nodes.get(random.nextInt(nodes.size()));
+      Node node2 = nodes.get(random.nextInt(nodes.size()));
+      Node<String> factNode = new Node<>("fact-" + i);
+      factNode.setNodeType(true);
+      factNode.addColors(node1.getColors());
+      factNode.addColors(node2.getColors());
+      Node<String> newNode = new Node<>("new-" + i);
+      newNode.addColors(factNode.getColors());
+      graph.addNode(factNode);
+      graph.addNode(newNode);
+      graph.addEdge(node1, factNode);
+      graph.addEdge(node2, factNode);
+      graph.addEdge(factNode, newNode);
+      if (random.nextBoolean()) {
+        graph.addEdge(factNode, nodes.get(random.nextInt(nodes.size())));
+      }
+    }
+    return graph;
+  }
+}
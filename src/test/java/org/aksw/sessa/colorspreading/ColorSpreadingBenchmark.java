@@ -0,0 +1,118 @@
+package org.aksw.sessa.colorspreading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.aksw.sessa.helper.graph.CompactGraph;
+import org.aksw.sessa.helper.graph.Node;
+import org.aksw.sessa.query.models.NGramEntryPosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the color checks and the spreading of colors on synthetic graphs. Every n-gram of up
+ * to three words of a question with the given number of words is mapped to a few nodes, and random
+ * pairs of these nodes are connected by fact nodes, which carry the colors of both nodes.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.aksw.sessa.colorspreading.ColorSpreadingBenchmark}.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorSpreadingBenchmark {
+
+  private static final int MAX_LENGTH = 3;
+  private static final int NODES_PER_N_GRAM = 3;
+  private static final int FACT_NODES = 2000;
+
+  @Param({"8", "32"})
+  private int words;
+
+  // minimum number of candidates of an activation step which are checked in parallel (0: never)
+  @Param({"0", "1"})
+  private int parallelThreshold;
+
+  private CompactGraph graph;
+  private List<Node> nodes;
+  private List<Node> factNodes;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(ColorSpreadingBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+
+  /**
+   * The graph is only built once. Spreading changes the energy scores, but they stay positive, so
+   * every invocation activates the same nodes.
+   */
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    graph = new CompactGraph();
+    nodes = new ArrayList<>();
+    factNodes = new ArrayList<>();
+    for (int length = 1; length <= MAX_LENGTH; length++) {
+      for (int position = 0; position + length <= words; position++) {
+        for (int i = 0; i < NODES_PER_N_GRAM; i++) {
+          Node<String> node = new Node<>("node-" + length + "-" + position + "-" + i);
+          node.addColor(new NGramEntryPosition(length, position));
+          node.setEnergy(1 + random.nextInt(10));
+          graph.addNode(node);
+          nodes.add(node);
+        }
+      }
+    }
+    while (factNodes.size() < FACT_NODES) {
+      Node node1 = nodes.get(random.nextInt(nodes.size()));
+      Node node2 = nodes.get(random.nextInt(nodes.size()));
+      if (node1.isOverlappingWith(node2)) {
+        continue;
+      }
+      Node<String> factNode = new Node<>("fact-" + factNodes.size());
+      factNode.setNodeType(true);
+      factNode.addColors(node1.getColors());
+      factNode.addColors(node2.getColors());
+      graph.addNode(factNode);
+      graph.addEdge(node1, factNode);
+      graph.addEdge(factNode, node2);
+      factNodes.add(factNode);
+    }
+  }
+
+  @Benchmark
+  public void spreadColors(Blackhole blackhole) {
+    ColorSpreader colorSpreader = new ColorSpreader(graph);
+    colorSpreader.setParallelThreshold(parallelThreshold);
+    blackhole.consume(colorSpreader.spreadColors());
+  }
+
+  @Benchmark
+  public void checkColors(Blackhole blackhole) {
+    for (int i = 0; i < factNodes.size(); i++) {
+      Node factNode = factNodes.get(i);
+      Node node = nodes.get(i % nodes.size());
+      blackhole.consume(factNode.colorsAreMergeable(node.getColors()));
+      blackhole.consume(factNode.isOverlappingWith(node));
+      blackhole.consume(factNode.getExplanation());
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package org.aksw.sessa.helper.graph;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.aksw.sessa.query.models.NGramEntryPosition;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactGraphTest {
+
+  private List<Node> nodes;
+  private CompactGraph graph;
+  private Graph referenceGraph;
+
+  @Before
+  public void initialize() {
+    graph = new CompactGraph();
+    referenceGraph = new Graph();
+    nodes = new ArrayList<>();
+    for (int i = 0; i <= 9; i++) {
+      Node<Integer> node = new Node<>(i);
+      nodes.add(node);
+      graph.addNode(node);
+      referenceGraph.addNode(node);
+    }
+    Random random = new Random(42);
+    for (int i = 0; i < 30; i++) {
+      Node from = nodes.get(random.nextInt(nodes.size()));
+      Node to = nodes.get(random.nextInt(nodes.size()));
+      graph.addEdge(from, to);
+      referenceGraph.addEdge(from, to);
+    }
+  }
+
+  @Test
+  public void testGetNeighbors_SameAsGraph() {
+    for (Node node : nodes) {
+      Assert.assertThat(graph.getNeighborsLeadingFrom(node),
+          equalTo(referenceGraph.getNeighborsLeadingFrom(node)));
+      Assert.assertThat(graph.getNeighborsLeadingTo(node),
+          equalTo(referenceGraph.getNeighborsLeadingTo(node)));
+    }
+    for (Node node : nodes) {
+      Set<Node> allNeighbors = new HashSet<>();
+      allNeighbors.addAll(referenceGraph.getNeighborsLeadingFrom(node));
+      allNeighbors.addAll(referenceGraph.getNeighborsLeadingTo(node));
+      Assert.assertThat(graph.getAllNeighbors(node), equalTo(allNeighbors));
+      Assert.assertThat(graph.getNeighborCount(graph.getId(node)), is(allNeighbors.size()));
+    }
+    Assert.assertThat(graph.getEdges(), equalTo(referenceGraph.getEdges()));
+  }
+
+  @Test
+  public void testGetAllNeighbors_DoesNotChangeEdges() {
+    Set<Node> neighborsLeadingFrom = graph.getNeighborsLeadingFrom(nodes.get(0));
+    graph.getAllNeighbors(nodes.get(0));
+    Assert.assertThat(graph.getNeighborsLeadingFrom(nodes.get(0)), equalTo(neighborsLeadingFrom));
+  }
+
+  @Test
+  public void testGetNeighbor_AddedEdgesAreAppended() {
+    Node<Integer> newNode = new Node<>(10);
+    graph.addNode(newNode);
+    for (Node node : nodes) {
+      int id = graph.getId(node);
+      int[] neighbors = new int[graph.getNeighborCount(id)];
+      for (int i = 0; i < neighbors.length; i++) {
+        neighbors[i] = graph.getNeighbor(id, i);
+      }
+      graph.addEdge(node, newNode);
+      Assert.assertThat(graph.getNeighborCount(id), is(neighbors.length + 1));
+      for (int i = 0; i < neighbors.length; i++) {
+        Assert.assertThat(graph.getNeighbor(id, i), is(neighbors[i]));
+      }
+      Assert.assertThat(graph.getNeighbor(id, neighbors.length), is(graph.getId(newNode)));
+    }
+  }
+
+  @Test
+  public void testAddNode_KeepsIds() {
+    graph.addNode(new Node<>(3));
+    Assert.assertThat(graph.getNodeCount(), is(nodes.size()));
+    for (int i = 0; i < nodes.size(); i++) {
+      Assert.assertThat(graph.getId(nodes.get(i)), is(i));
+      Assert.assertThat(graph.getNode(i), is(nodes.get(i)));
+    }
+    Assert.assertThat(graph.getId(new Node<>(42)), is(-1));
+  }
+
+  @Test
+  public void testAttributes_SameAsNodes() {
+    Node<String> node = new Node<>("node");
+    node.addColor(new NGramEntryPosition(2, 0));
+    node.setEnergy(3);
+    Node<String> factNode = new Node<>("fact");
+    factNode.setNodeType(true);
+    factNode.addColor(new NGramEntryPosition(1, 1));
+    graph.addNode(node);
+    graph.addNode(factNode);
+    int id = graph.getId(node);
+    int factId = graph.getId(factNode);
+    Assert.assertThat(graph.getEnergy(id), is(3f));
+    Assert.assertThat(graph.getExplanation(id), is(2));
+    Assert.assertThat(graph.isFactNode(id), is(false));
+    Assert.assertThat(graph.isFactNode(factId), is(true));
+    Assert.assertThat(graph.colorsAreMergeable(id, factId), is(true));
+
+    graph.setEnergy(id, 5);
+    Assert.assertThat(node.getEnergy(), is(5f));
+    factNode.addColor(new NGramEntryPosition(2, 1));
+    graph.updateNodes();
+    Assert.assertThat(graph.getExplanation(factId), is(2));
+    Assert.assertThat(graph.colorsAreMergeable(id, factId), is(false));
+    Assert.assertThat(graph.colorsAreMergeable(id, factId),
+        is(node.colorsAreMergeable(factNode)));
+  }
+}
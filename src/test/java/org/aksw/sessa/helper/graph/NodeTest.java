@@ -4,6 +4,7 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 import org.aksw.sessa.query.models.NGramEntryPosition;
 import org.junit.Assert;
@@ -131,5 +132,50 @@ public class NodeTest {
     Assert.assertThat(node1.getEnergy(), equalTo(energy));
   }
 
+  @Test
+  public void testColorsAreMergeable_SameAsColorChecks() {
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      // some questions are longer than the masks, so that the checks fall back to the sets
+      int words = random.nextBoolean() ? 10 : 70;
+      Node<Integer> node1 = randomlyColoredNode(random, words);
+      Node<Integer> node2 = randomlyColoredNode(random, words);
+      boolean mergeable = true;
+      boolean overlapping = false;
+      for (NGramEntryPosition color : node1.getColors()) {
+        mergeable &= color.isMergeable(node2.getColors());
+        for (NGramEntryPosition otherColor : node2.getColors()) {
+          overlapping |= color.isOverlappingWith(otherColor);
+        }
+      }
+      Assert.assertThat(node1.colorsAreMergeable(node2), is(mergeable));
+      Assert.assertThat(node1.colorsAreMergeable(node2.getColors()), is(mergeable));
+      Assert.assertThat(node1.isOverlappingWith(node2), is(overlapping));
+    }
+  }
+
+  @Test
+  public void testColorsAreMergeable_RelatedColors() {
+    Node<Integer> node1 = new Node<>(1);
+    node1.addColor(new NGramEntryPosition(1, 2));
+    Node<Integer> node2 = new Node<>(2);
+    node2.addColor(new NGramEntryPosition(3, 1));
+    Node<Integer> node3 = new Node<>(3);
+    node3.addColor(new NGramEntryPosition(2, 2));
+    Assert.assertTrue(node1.colorsAreMergeable(node2));
+    Assert.assertTrue(node2.colorsAreMergeable(node3));
+    Assert.assertTrue(node1.colorsAreMergeable(node3));
+    node3.addColor(new NGramEntryPosition(2, 0));
+    // "birthplace bill" and "bill gates wife" overlap, but are not related
+    Assert.assertFalse(node2.colorsAreMergeable(node3));
+  }
 
-}
\ No newline at end of file
+  private static Node<Integer> randomlyColoredNode(Random random, int words) {
+    Node<Integer> node = new Node<>(random.nextInt());
+    for (int i = random.nextInt(3); i >= 0; i--) {
+      int length = 1 + random.nextInt(3);
+      node.addColor(new NGramEntryPosition(length, random.nextInt(words - length + 1)));
+    }
+    return node;
+  }
+}
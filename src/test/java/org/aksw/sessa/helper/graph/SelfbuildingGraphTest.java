@@ -1,5 +1,12 @@
 package org.aksw.sessa.helper.graph;
 
+import static org.hamcrest.core.Is.is;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.aksw.sessa.importing.rdf.GraphFillerInterface;
+import org.aksw.sessa.query.models.NGramEntryPosition;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -23,4 +30,39 @@ public class SelfbuildingGraphTest {
   public void testUpdateGraph() {
     //FIXME: Tests for this probably would not differ from ColorSpreaderTest and GraphTest
   }
+
+  @Test
+  public void testExpand_OnlyExpandsExplicitly() {
+    Set<Node> nodes = new HashSet<>();
+    for (int position = 0; position < 3; position++) {
+      Node<String> node = new Node<>("node-" + position);
+      node.addColor(new NGramEntryPosition(1, position));
+      nodes.add(node);
+    }
+    // finds one node for every pair of nodes
+    GraphFillerInterface filler = (uri1, uri2) -> {
+      Set<String> found = new HashSet<>();
+      found.add(uri1 + "+" + uri2);
+      return found;
+    };
+    graph = new SelfBuildingGraph(nodes, filler);
+    for (Node node : nodes) {
+      graph.getAllNeighbors(node);
+      graph.getNeighborCount(graph.getId(node));
+    }
+    Assert.assertThat(graph.getNodeCount(), is(3));
+    Assert.assertThat(graph.getExpansionRounds(), is(0));
+
+    Assert.assertThat(graph.expand(), is(true));
+    // one fact node and one new node for each of the three pairs
+    Assert.assertThat(graph.getNodeCount(), is(9));
+    Assert.assertThat(graph.getQueriedPairs(), is(3));
+    while (graph.expand()) {
+      Assert.assertThat(graph.getExpansionRounds() <= SelfBuildingGraph.DEFAULT_MAX_EXPANSIONS,
+          is(true));
+    }
+    int nodeCount = graph.getNodeCount();
+    Assert.assertThat(graph.expand(), is(false));
+    Assert.assertThat(graph.getNodeCount(), is(nodeCount));
+  }
 }
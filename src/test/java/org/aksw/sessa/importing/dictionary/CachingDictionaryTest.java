@@ -0,0 +1,195 @@
+package org.aksw.sessa.importing.dictionary;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.core.Is.is;
+
+import com.google.common.base.Ticker;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.aksw.sessa.candidate.Candidate;
+import org.aksw.sessa.importing.dictionary.energy.EnergyFunctionInterface;
+import org.aksw.sessa.importing.dictionary.energy.LevenshteinDistanceFunction;
+import org.aksw.sessa.importing.dictionary.util.Filter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingDictionaryTest {
+
+  private CountingDictionary dictionary;
+  private CachingDictionary cache;
+
+  @Before
+  public void init() {
+    dictionary = new CountingDictionary();
+    cache = new CachingDictionary(dictionary, 100000L, 60000L);
+  }
+
+  @Test
+  public void testGet_SecondCallIsHit() {
+    Set<Candidate> first = cache.get("bill gates");
+    Set<Candidate> second = cache.get("bill gates");
+    Assert.assertThat(second, equalTo(first));
+    Assert.assertThat(dictionary.calls.get(), is(1));
+    Assert.assertThat(cache.getStats().hitCount(), is(1L));
+    Assert.assertThat(cache.getStats().missCount(), is(1L));
+  }
+
+  @Test
+  public void testGet_ReturnedCandidatesAreCopies() {
+    cache.get("bill gates").iterator().next().setEnergy(42);
+    Set<Candidate> hit = cache.get("bill gates");
+    hit.iterator().next().setEnergy(21);
+    hit.clear();
+    Set<Candidate> result = cache.get("bill gates");
+    Assert.assertThat(result.size(), is(1));
+    Assert.assertThat(result.iterator().next().getEnergy(), is(1f));
+  }
+
+  @Test
+  public void testGet_UnknownNGramIsCached() {
+    Assert.assertThat(cache.get("unknown"), is(nullValue()));
+    Assert.assertThat(cache.get("unknown"), is(nullValue()));
+    Assert.assertThat(dictionary.calls.get(), is(1));
+  }
+
+  @Test
+  public void testAddFilter_Invalidates() {
+    cache.get("bill gates");
+    cache.addFilter(new Filter(new LevenshteinDistanceFunction(), 10));
+    cache.get("bill gates");
+    Assert.assertThat(dictionary.calls.get(), is(2));
+    Assert.assertThat(dictionary.filters, is(1));
+  }
+
+  @Test
+  public void testSetEnergyFunction_Invalidates() {
+    cache.get("bill gates");
+    cache.setEnergyFunction(new LevenshteinDistanceFunction());
+    cache.get("bill gates");
+    Assert.assertThat(dictionary.calls.get(), is(2));
+  }
+
+  @Test
+  public void testGet_FullCacheRejectsRareNGrams() {
+    // the weight only allows a few entries
+    cache = new CachingDictionary(dictionary, 2000L, 60000L);
+    for (int i = 0; i < 100; i++) {
+      cache.get("popular");
+      cache.get("rare " + i);
+    }
+    Assert.assertThat(cache.getRejectedCount() > 0, is(true));
+    int calls = dictionary.calls.get();
+    cache.get("popular");
+    Assert.assertThat(dictionary.calls.get(), is(calls));
+  }
+
+  @Test
+  public void testGet_FullCacheKeepsMorePopularVictims() {
+    // the weight only allows three entries
+    cache = new CachingDictionary(dictionary, 500L, 60000L);
+    for (int i = 0; i < 5; i++) {
+      cache.get("a");
+      cache.get("b");
+      cache.get("c");
+    }
+    cache.get("d");
+    cache.get("d");
+    cache.get("d");
+    // "d" was looked up less often than the least recently used entry "a"
+    Assert.assertThat(dictionary.calls.get(), is(6));
+    Assert.assertThat(cache.getRejectedCount(), is(3L));
+    for (int i = 0; i < 5; i++) {
+      cache.get("d");
+    }
+    int calls = dictionary.calls.get();
+    cache.get("d");
+    cache.get("b");
+    Assert.assertThat(dictionary.calls.get(), is(calls));
+    Assert.assertThat(cache.getStats().evictionCount(), is(1L));
+  }
+
+  @Test
+  public void testGet_ExpiresAfterWrite() {
+    AtomicLong time = new AtomicLong();
+    cache = new CachingDictionary(dictionary, 100000L, 1000L, new Ticker() {
+      @Override
+      public long read() {
+        return time.get();
+      }
+    });
+    cache.get("bill gates");
+    time.set(TimeUnit.MILLISECONDS.toNanos(999));
+    cache.get("bill gates");
+    Assert.assertThat(dictionary.calls.get(), is(1));
+    time.set(TimeUnit.MILLISECONDS.toNanos(1000));
+    cache.get("bill gates");
+    Assert.assertThat(dictionary.calls.get(), is(2));
+  }
+
+  @Test
+  public void testGet_DegradedResultIsNotCached() {
+    Assert.assertThat(cache.get("failing").isEmpty(), is(true));
+    Assert.assertThat(cache.get("failing").isEmpty(), is(true));
+    Assert.assertThat(dictionary.calls.get(), is(2));
+    Assert.assertThat(cache.cacheSize(), is(0L));
+  }
+
+  @Test
+  public void testGet_DisabledCache() {
+    cache = new CachingDictionary(dictionary, 0L, 60000L);
+    cache.get("bill gates");
+    cache.get("bill gates");
+    Assert.assertThat(dictionary.calls.get(), is(2));
+    Assert.assertThat(cache.cacheSize(), is(0L));
+  }
+
+  /**
+   * Returns one candidate for every n-gram except "unknown" and counts the lookups. The lookup of
+   * "failing" fails and returns no candidates.
+   */
+  private static class CountingDictionary implements DictionaryInterface {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicLong failures = new AtomicLong();
+    private int filters = 0;
+
+    @Override
+    public Set<Candidate> get(String nGram) {
+      calls.incrementAndGet();
+      if (nGram.equals("unknown")) {
+        return null;
+      }
+      if (nGram.equals("failing")) {
+        failures.incrementAndGet();
+        return new HashSet<>();
+      }
+      Set<Candidate> candidates = new HashSet<>();
+      candidates.add(new Candidate("http://dbpedia.org/resource/" + nGram, nGram, 1));
+      return candidates;
+    }
+
+    @Override
+    public void addFilter(Filter filter) {
+      filters++;
+    }
+
+    @Override
+    public void setEnergyFunction(EnergyFunctionInterface energyFunction) {
+    }
+
+    @Override
+    public long getFailureCount() {
+      return failures.get();
+    }
+
+    @Override
+    public int size() {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package org.aksw.sessa.importing.dictionary.energy;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.search.spell.LuceneLevenshteinDistance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the Levenshtein energy function with the former implementation, which created a {@link
+ * LuceneLevenshteinDistance} and lower-cased both strings for every candidate. Every invocation
+ * scores the candidate keys of one n-gram, similar to what a filter does.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.aksw.sessa.importing.dictionary.energy.LevenshteinDistanceBenchmark}.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevenshteinDistanceBenchmark {
+
+  private static final String N_GRAM = "Bill Gates";
+  private static final int NUMBER_OF_KEYS = 100;
+
+  private final LevenshteinDistanceFunction function = new LevenshteinDistanceFunction();
+  private String[] keys;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(LevenshteinDistanceBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    String alphabet = "abcdefghijklmnopqrstuvwxyz BILGATES";
+    keys = new String[NUMBER_OF_KEYS];
+    for (int i = 0; i < keys.length; i++) {
+      StringBuilder key = new StringBuilder();
+      int length = 5 + random.nextInt(20);
+      for (int k = 0; k < length; k++) {
+        key.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      keys[i] = key.toString();
+    }
+  }
+
+  @Benchmark
+  public void lucene(Blackhole blackhole) {
+    for (String key : keys) {
+      LuceneLevenshteinDistance levenshtein = new LuceneLevenshteinDistance();
+      blackhole.consume(levenshtein.getDistance(N_GRAM.toLowerCase(), key.toLowerCase()));
+    }
+  }
+
+  @Benchmark
+  public void reusedBuffers(Blackhole blackhole) {
+    for (String key : keys) {
+      blackhole.consume(function.calculateEnergyScore(N_GRAM, "", key));
+    }
+  }
+
+  @Benchmark
+  public void reusedBuffersWithMinScore(Blackhole blackhole) {
+    for (String key : keys) {
+      blackhole.consume(function.calculateEnergyScore(N_GRAM, "", key, 0.5F));
+    }
+  }
+}
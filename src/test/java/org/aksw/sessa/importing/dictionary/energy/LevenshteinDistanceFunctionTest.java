@@ -5,6 +5,9 @@ import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 
+import java.util.Arrays;
+import java.util.List;
+import org.aksw.sessa.candidate.Candidate;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -56,5 +59,19 @@ public class LevenshteinDistanceFunctionTest {
     Assert.assertThat(score1, equalTo(score2));
   }
 
-
-}
\ No newline at end of file
+  @Test
+  public void testCalculateEnergyScores_SameAsSingleScores() {
+    EnergyFunctionInterface energyFunction = new LevenshteinDistanceFunction();
+    List<Candidate> candidates = Arrays.asList(
+        new Candidate("http://dbpedia.org/resource/Stadium", "stadium"),
+        new Candidate("http://dbpedia.org/resource/Stadium2", "stadium 2"),
+        new Candidate("http://dbpedia.org/resource/StadiumX", "stadiumx"));
+    float[] scores = energyFunction.calculateEnergyScores("stadium", candidates);
+    Assert.assertThat(scores.length, equalTo(candidates.size()));
+    for (int i = 0; i < scores.length; i++) {
+      Candidate candidate = candidates.get(i);
+      Assert.assertThat(scores[i], equalTo(energyFunction
+          .calculateEnergyScore("stadium", candidate.getUri(), candidate.getKey())));
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package org.aksw.sessa.importing.dictionary.energy;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.Random;
+import org.apache.lucene.search.spell.LuceneLevenshteinDistance;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LevenshteinSimilarityTest {
+
+  // contains upper case, non-ASCII and supplementary characters
+  private static final String[] ALPHABET = {"a", "b", "c", "A", "B", " ", "\u00e9", "\u00c9",
+      "\u0130", "\ud835\udd38"};
+
+  private static float luceneSimilarity(String s1, String s2) {
+    return new LuceneLevenshteinDistance().getDistance(s1.toLowerCase(), s2.toLowerCase());
+  }
+
+  private static String randomString(Random random, int maxLength, boolean asciiOnly) {
+    StringBuilder builder = new StringBuilder();
+    int length = random.nextInt(maxLength + 1);
+    for (int i = 0; i < length; i++) {
+      builder.append(ALPHABET[random.nextInt(asciiOnly ? 6 : ALPHABET.length)]);
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void testSimilarity_SameAsLucene() {
+    String[][] pairs = {{"stadium", "stadium"}, {"stadium", "Stadium2"}, {"stadium", "stadium x"},
+        {"bill gates", "Bill_Gates"}, {"ab", "ba"}, {"", ""}, {"", "abc"}, {"abc", ""},
+        {"birthplace", "birth place"}, {"wife", "wives"}};
+    for (String[] pair : pairs) {
+      Assert.assertThat(pair[0] + "/" + pair[1],
+          LevenshteinSimilarity.similarity(pair[0], pair[1]),
+          equalTo(luceneSimilarity(pair[0], pair[1])));
+    }
+  }
+
+  @Test
+  public void testSimilarity_RandomSameAsLucene() {
+    Random random = new Random(42);
+    for (int i = 0; i < 20000; i++) {
+      boolean asciiOnly = random.nextBoolean();
+      String s1 = randomString(random, 12, asciiOnly);
+      String s2 = randomString(random, 12, asciiOnly);
+      Assert.assertThat(s1 + "/" + s2, LevenshteinSimilarity.similarity(s1, s2),
+          equalTo(luceneSimilarity(s1, s2)));
+    }
+  }
+
+  @Test
+  public void testSimilarity_LongStrings() {
+    Random random = new Random(7);
+    String s1 = randomString(random, 500, true);
+    String s2 = randomString(random, 500, true);
+    Assert.assertThat(LevenshteinSimilarity.similarity(s1, s2),
+        equalTo(luceneSimilarity(s1, s2)));
+  }
+
+  @Test
+  public void testSimilarity_MinSimilarity() {
+    Random random = new Random(23);
+    for (int i = 0; i < 20000; i++) {
+      String s1 = randomString(random, 12, true);
+      String s2 = randomString(random, 12, true);
+      float expected = luceneSimilarity(s1, s2);
+      float minSimilarity = random.nextInt(5) == 0 ? expected : 2 * random.nextFloat() - 1;
+      float bounded = LevenshteinSimilarity.similarity(s1, s2, minSimilarity);
+      if (expected >= minSimilarity) {
+        Assert.assertThat(s1 + "/" + s2 + "/" + minSimilarity, bounded, equalTo(expected));
+      } else {
+        Assert.assertThat(s1 + "/" + s2 + "/" + minSimilarity, bounded, lessThan(minSimilarity));
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package org.aksw.sessa.importing.dictionary.energy;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.core.Is.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PageRankStoreTest {
+
+  // characters with 2, 3 and 4 bytes in UTF-8
+  private static final String SUFFIX = "_\u00e4\u20ac\ud83d\ude00";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private PageRankStore build(String content) throws IOException {
+    File input = folder.newFile("ranks.ttl");
+    try (PrintWriter writer = new PrintWriter(input, "UTF-8")) {
+      writer.println("@prefix vrank: <http://purl.org/voc/vrank#> .");
+      writer.println("@prefix xsd: <http://www.w3.org/2001/XMLSchema#> .");
+      writer.print(content);
+    }
+    File output = folder.newFile("ranks.store");
+    new PageRankStoreBuilder().build(Collections.singletonList(input.getPath()), output.toPath());
+    return new PageRankStore(output.getPath());
+  }
+
+  @Test
+  public void testGetRank_BothNotations() throws IOException {
+    try (PageRankStore store = build(
+        "<http://dbpedia.org/resource/Seattle> "
+            + "vrank:hasRank [ vrank:rankValue \"123.5\"^^xsd:float ] .\n"
+            + "_:r vrank:rankValue \"7.25\"^^xsd:float .\n"
+            + "<http://dbpedia.org/resource/Bill_Gates> vrank:hasRank _:r .\n")) {
+      Assert.assertThat(store.size(), is(2L));
+      Assert.assertThat(store.getRank("http://dbpedia.org/resource/Seattle"), equalTo(123.5F));
+      Assert.assertThat(store.getRank("http://dbpedia.org/resource/Bill_Gates"), equalTo(7.25F));
+    }
+  }
+
+  @Test
+  public void testGetRank_MissingUriHasRankZero() throws IOException {
+    try (PageRankStore store = build(
+        "<http://dbpedia.org/resource/Seattle> vrank:hasRank [ vrank:rankValue 1.5 ] .\n")) {
+      Assert.assertThat(store.contains("http://dbpedia.org/resource/Seattl"), is(false));
+      Assert.assertThat(store.getRank("http://dbpedia.org/resource/Seattle_"), equalTo(0F));
+      Assert.assertThat(new LocalPageRankFunction(store)
+              .calculateEnergyScore("seattle", "http://dbpedia.org/resource/Seattle", "seattle"),
+          equalTo(1.5F));
+    }
+  }
+
+  @Test
+  public void testGetRank_ManyEntries() throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 3000; i++) {
+      content.append(String.format(
+          "<http://dbpedia.org/resource/R%d%s> vrank:hasRank [ vrank:rankValue %d.5 ] .%n",
+          i, SUFFIX, i));
+    }
+    try (PageRankStore store = build(content.toString())) {
+      Assert.assertThat(store.size(), is(3000L));
+      for (int i = 0; i < 3000; i++) {
+        Assert.assertThat(store.getRank("http://dbpedia.org/resource/R" + i + SUFFIX),
+            equalTo(i + 0.5F));
+      }
+      Assert.assertThat(store.contains("http://dbpedia.org/resource/R3000" + SUFFIX), is(false));
+    }
+  }
+}
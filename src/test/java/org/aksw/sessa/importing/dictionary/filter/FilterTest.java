@@ -1,9 +1,17 @@
 package org.aksw.sessa.importing.dictionary.filter;
 
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.core.IsCollectionContaining.hasItem;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import org.aksw.sessa.importing.dictionary.energy.EnergyFunctionInterface;
+import org.aksw.sessa.importing.dictionary.energy.EnergyScoreCache;
 import org.aksw.sessa.importing.dictionary.energy.LevenshteinDistanceFunction;
 import org.aksw.sessa.importing.dictionary.energy.PageRankFunction;
 import org.aksw.sessa.importing.dictionary.util.Filter;
@@ -39,4 +47,62 @@ public class FilterTest {
     Assert.assertThat(filter.filter("stadium", testSet), hasItem(exactEntry));
   }
 
+  @Test
+  public void testFilter_SameAsSorting() {
+    Random random = new Random(42);
+    // scores with many ties, derived from the URI
+    EnergyFunctionInterface function = (nGram, uri, key) -> uri.hashCode() % 7;
+    for (boolean descending : new boolean[]{true, false}) {
+      for (int limit = 1; limit < 30; limit++) {
+        Set<Candidate> testSet = new HashSet<>();
+        int size = random.nextInt(40);
+        for (int i = 0; i < size; i++) {
+          testSet.add(new Candidate("http://dbpedia.org/resource/R" + random.nextInt(1000), "r"));
+        }
+        Set<Candidate> result = new Filter(function, descending, limit).filter("r", testSet);
+        List<Float> expected = new ArrayList<>();
+        for (Candidate candidate : testSet) {
+          expected.add(function.calculateEnergyScore("r", candidate.getUri(), candidate.getKey()));
+        }
+        expected.sort(descending ? Comparator.reverseOrder() : Comparator.naturalOrder());
+        List<Float> actual = new ArrayList<>();
+        for (Candidate candidate : result) {
+          actual.add(function.calculateEnergyScore("r", candidate.getUri(), candidate.getKey()));
+        }
+        actual.sort(descending ? Comparator.reverseOrder() : Comparator.naturalOrder());
+        Assert.assertThat(actual, equalTo(expected.subList(0, Math.min(limit, testSet.size()))));
+      }
+    }
+  }
+
+  @Test
+  public void testFilter_NotMoreCandidatesThanLimit() {
+    int[] calls = new int[1];
+    Filter filter = new Filter((nGram, uri, key) -> calls[0]++, 5);
+    Set<Candidate> testSet = new HashSet<>();
+    testSet.add(new Candidate("http://dbpedia.org/resource/Stadium", "stadium"));
+    testSet.add(new Candidate("http://dbpedia.org/resource/StadiumX", "stadiumx"));
+    Assert.assertThat(filter.filter("stadium", testSet), sameInstance(testSet));
+    Assert.assertThat(calls[0], equalTo(0));
+  }
+
+  @Test
+  public void testFilter_CachesScores() {
+    Filter filter = new Filter(new LevenshteinDistanceFunction(), 1);
+    Set<Candidate> testSet = new HashSet<>();
+    Candidate exactEntry = new Candidate("http://dbpedia.org/resource/Stadium", "stadium");
+    testSet.add(exactEntry);
+    testSet.add(new Candidate("http://dbpedia.org/resource/Stadium2", "stadium 2"));
+    testSet.add(new Candidate("http://dbpedia.org/resource/Something", "something else"));
+    EnergyScoreCache cache = new EnergyScoreCache();
+    Assert.assertThat(filter.filter("stadium", testSet, cache), equalTo(singleton(exactEntry)));
+    Assert.assertThat(cache.getScore(filter.getEnergyFunction(), "stadium", exactEntry),
+        equalTo(1F));
+  }
+
+  private static Set<Candidate> singleton(Candidate candidate) {
+    Set<Candidate> set = new HashSet<>();
+    set.add(candidate);
+    return set;
+  }
 }
@@ -2,11 +2,18 @@ package org.aksw.sessa.importing.dictionary.implementation;
 
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 import org.aksw.sessa.helper.files.handler.FileHandlerInterface;
 import org.aksw.sessa.helper.files.handler.ReverseTsvFileHandler;
 import org.aksw.sessa.importing.dictionary.FileBasedDictionary;
+import org.aksw.sessa.importing.dictionary.energy.EnergyFunctionInterface;
+import org.aksw.sessa.importing.dictionary.energy.EnergyScoreCache;
+import org.aksw.sessa.importing.dictionary.util.Filter;
 import org.aksw.sessa.candidate.Candidate;
 import org.junit.Assert;
 import org.junit.Test;
@@ -69,4 +76,26 @@ public abstract class FileBasedDictionaryTest {
     candidate = new Candidate(uri, nGram);
     Assert.assertThat(dictionary.get(nGram), hasItem(candidate));
   }
+
+  @Test
+  public void get_ScoresEveryCandidateOnce() {
+    Set<String> scoredCandidates = new HashSet<>();
+    int[] calls = new int[1];
+    EnergyFunctionInterface function = (nGram, uri, key) -> {
+      calls[0]++;
+      scoredCandidates.add(uri + " " + key);
+      return 1;
+    };
+    dictionary.addFilter(new Filter(function, 1000));
+    dictionary.setEnergyFunction(function);
+    EnergyScoreCache cache = new EnergyScoreCache();
+    Set<Candidate> candidates = dictionary.get("bill gates", cache);
+    Assert.assertThat(candidates, not(empty()));
+    Assert.assertThat(calls[0], equalTo(scoredCandidates.size()));
+    Assert.assertThat(calls[0], equalTo(cache.size()));
+
+    // same n-gram of another question part: all scores are cached
+    dictionary.get("bill gates", cache);
+    Assert.assertThat(calls[0], equalTo(scoredCandidates.size()));
+  }
 }
@@ -0,0 +1,42 @@
+package org.aksw.sessa.importing.dictionary.implementation;
+
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.aksw.sessa.helper.files.handler.FileHandlerInterface;
+import org.aksw.sessa.helper.files.handler.TsvFileHandler;
+import org.aksw.sessa.candidate.Candidate;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FstDictionaryTest extends FileBasedDictionaryTest {
+
+  @Before
+  public void init() throws IOException {
+    FileHandlerInterface handler = new TsvFileHandler(TEST_FILE1);
+    dictionary = new FstDictionary(handler);
+  }
+
+  @Test
+  public void get_SameAsHashMapDictionary() throws IOException {
+    HashMapDictionary hashMapDictionary = new HashMapDictionary(new TsvFileHandler(TEST_FILE1));
+    int size = 0;
+    for (Entry<String, Set<String>> entry : hashMapDictionary.entrySet()) {
+      String nGram = entry.getKey();
+      Set<Candidate> expected = hashMapDictionary.get(nGram);
+      Assert.assertThat(nGram, dictionary.get(nGram), equalTo(expected));
+      size += entry.getValue().size();
+    }
+    Assert.assertThat(dictionary.size(), equalTo(size));
+  }
+
+  @Test
+  public void putAll_SameFileTwice() throws IOException {
+    int size = dictionary.size();
+    dictionary.putAll(new TsvFileHandler(TEST_FILE1));
+    Assert.assertThat(dictionary.size(), equalTo(size));
+  }
+}
@@ -5,11 +5,20 @@ import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReference;
 import org.aksw.sessa.helper.files.handler.FileHandlerInterface;
 import org.aksw.sessa.helper.files.handler.RdfFileHandler;
+import org.aksw.sessa.helper.files.handler.ReverseTsvFileHandler;
 import org.aksw.sessa.helper.files.handler.TsvFileHandler;
 import org.aksw.sessa.candidate.Candidate;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -75,4 +84,184 @@ public class LuceneDictionaryTest extends FileBasedDictionaryTest {
     Assert.assertThat(dictionary.size(), equalTo(size + 1));
   }
 
+  @Test
+  public void get_WhileImporting() throws Exception {
+    String nGram = "bill gates";
+    Candidate candidate = new Candidate("http://dbpedia.org/resource/Bill_Gates", nGram);
+    ((LuceneDictionary) dictionary).setBufferSize(10);
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread importer = new Thread(() -> {
+      try {
+        dictionary.putAll(new ReverseTsvFileHandler(TEST_FILE2));
+      } catch (Throwable t) {
+        error.set(t);
+      }
+    });
+    importer.start();
+    while (importer.isAlive()) {
+      Assert.assertThat(dictionary.get(nGram), hasItem(candidate));
+    }
+    importer.join();
+    Assert.assertThat(error.get(), equalTo(null));
+    Assert.assertThat(dictionary.get("siberian peashrub"), not(empty()));
+  }
+
+  @Test
+  public void putAllBulk_SameAsPutAll() {
+    int size = dictionary.size();
+    ((LuceneDictionary) dictionary).clearIndex();
+    ((LuceneDictionary) dictionary)
+        .putAllBulk(Arrays.asList(TEST_FILE1), TsvFileHandler::new);
+    Assert.assertThat(dictionary.size(), equalTo(size));
+    Candidate candidate = new Candidate("http://dbpedia.org/resource/Bill_Gates", "bill gates");
+    Assert.assertThat(dictionary.get("bill gates"), hasItem(candidate));
+  }
+
+  @Test
+  public void putAllBulk_SkipsEntriesInIndex() {
+    int size = dictionary.size();
+    // forget that the file was imported, so that all entries are read again
+    ((LuceneDictionary) dictionary).getImportProgress().clear();
+    ((LuceneDictionary) dictionary)
+        .putAllBulk(Arrays.asList(TEST_FILE1, TEST_FILE1), TsvFileHandler::new);
+    Assert.assertThat(dictionary.size(), equalTo(size));
+  }
+
+  @Test
+  public void putAll_SkipsImportedFile() throws IOException {
+    int size = dictionary.size();
+    CountingFileHandler handler = new CountingFileHandler(new TsvFileHandler(TEST_FILE1), -1);
+    dictionary.putAll(handler);
+    Assert.assertThat(handler.count, equalTo(0));
+    Assert.assertThat(dictionary.size(), equalTo(size));
+  }
+
+  @Test
+  public void putAll_ResumesInterruptedImport() throws IOException {
+    LuceneDictionary luceneDictionary = (LuceneDictionary) dictionary;
+    // duplicates are only detected within the buffer, so the reference uses the same buffer size
+    luceneDictionary.setBufferSize(10);
+    luceneDictionary.clearIndex();
+    luceneDictionary.putAll(new TsvFileHandler(TEST_FILE1));
+    int size = dictionary.size();
+    luceneDictionary.clearIndex();
+    try {
+      // interrupt the import after the second commit
+      luceneDictionary.putAll(new CountingFileHandler(new TsvFileHandler(TEST_FILE1), 20));
+      Assert.fail("Import was not interrupted.");
+    } catch (IllegalStateException expected) {
+      // the import was interrupted
+    }
+    luceneDictionary.close();
+
+    dictionary = new LuceneDictionary(null, TEST_INDEX_LOCATION);
+    ((LuceneDictionary) dictionary).setBufferSize(10);
+    ImportProgress.FileProgress progress =
+        ((LuceneDictionary) dictionary).getImportProgress().get(TEST_FILE1);
+    Assert.assertThat(progress.isComplete(), equalTo(false));
+    Assert.assertThat(progress.getReadEntries(), equalTo(20L));
+    dictionary.putAll(new TsvFileHandler(TEST_FILE1));
+    Assert.assertThat(dictionary.size(), equalTo(size));
+    Assert.assertThat(
+        ((LuceneDictionary) dictionary).getImportProgress().get(TEST_FILE1).isComplete(),
+        equalTo(true));
+  }
+
+  @Test
+  public void putAll_SkippedEntriesDoNotCommit() throws IOException {
+    LuceneDictionary luceneDictionary = (LuceneDictionary) dictionary;
+    luceneDictionary.setBufferSize(1);
+    luceneDictionary.clearIndex();
+    long generation = getLastCommitGeneration();
+    // the first entry fills the buffer, all further entries are duplicates of it
+    luceneDictionary.putAll(new RepeatingFileHandler(TEST_FILE1, 50));
+    Assert.assertThat(dictionary.size(), equalTo(1));
+    // one commit for the full buffer and one at the end of the file
+    Assert.assertThat(getLastCommitGeneration(), equalTo(generation + 2));
+    // neither the index nor the progress changed, so nothing is committed
+    luceneDictionary.putAll(new RepeatingFileHandler(TEST_FILE1, 50));
+    Assert.assertThat(getLastCommitGeneration(), equalTo(generation + 2));
+  }
+
+  private long getLastCommitGeneration() throws IOException {
+    try (Directory directory = FSDirectory.open(new File(TEST_INDEX_LOCATION))) {
+      return SegmentInfos.getLastCommitGeneration(directory);
+    }
+  }
+
+  /**
+   * Returns the same entry the given number of times for the given file.
+   */
+  private static class RepeatingFileHandler implements FileHandlerInterface {
+
+    private final String fileName;
+    private int remaining;
+
+    private RepeatingFileHandler(String fileName, int count) {
+      this.fileName = fileName;
+      this.remaining = count;
+    }
+
+    @Override
+    public Entry<String, String> nextEntry() {
+      if (remaining == 0) {
+        return null;
+      }
+      remaining--;
+      // lower-cased, as the duplicate detection compares the lower-cased URIs of the index
+      return new SimpleEntry<>("seattle", "http://dbpedia.org/resource/seattle");
+    }
+
+    @Override
+    public String getFileName() {
+      return fileName;
+    }
+
+    @Override
+    public void loadFile(String file) {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  /**
+   * Counts the read entries and fails after the given number of entries.
+   */
+  private static class CountingFileHandler implements FileHandlerInterface {
+
+    private final FileHandlerInterface handler;
+    private final int failAfter;
+    private int count = 0;
+
+    private CountingFileHandler(FileHandlerInterface handler, int failAfter) {
+      this.handler = handler;
+      this.failAfter = failAfter;
+    }
+
+    @Override
+    public Entry<String, String> nextEntry() throws IOException {
+      if (count == failAfter) {
+        throw new IllegalStateException("Import interrupted.");
+      }
+      count++;
+      return handler.nextEntry();
+    }
+
+    @Override
+    public String getFileName() {
+      return handler.getFileName();
+    }
+
+    @Override
+    public void loadFile(String file) throws IOException {
+      handler.loadFile(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+      handler.close();
+    }
+  }
 }
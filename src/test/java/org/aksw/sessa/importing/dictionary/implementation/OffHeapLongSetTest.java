@@ -0,0 +1,43 @@
+package org.aksw.sessa.importing.dictionary.implementation;
+
+import static org.hamcrest.core.Is.is;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapLongSetTest {
+
+  @Test
+  public void testAdd_DuplicatesAreSkipped() {
+    OffHeapLongSet set = new OffHeapLongSet();
+    Random random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      Assert.assertThat(set.add(random.nextLong()), is(true));
+    }
+    random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      Assert.assertThat(set.add(random.nextLong()), is(false));
+    }
+    Assert.assertThat(set.size(), is(10000L));
+  }
+
+  @Test
+  public void testAdd_ContainedValueOfFullSegment() {
+    // the values 1 to 15 fill the 16 slots of the first segment except the last empty one
+    OffHeapLongSet set = new OffHeapLongSet(16);
+    for (long value = 1; value < 16; value++) {
+      Assert.assertThat(set.add(value), is(true));
+    }
+    Assert.assertThat(set.add(7), is(false));
+    Assert.assertThat(set.size(), is(15L));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAdd_NewValueOfFullSegment() {
+    OffHeapLongSet set = new OffHeapLongSet(16);
+    for (long value = 1; value < 17; value++) {
+      set.add(value);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package org.aksw.sessa.importing.dictionary.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.aksw.sessa.helper.files.handler.TsvFileHandler;
+import org.aksw.sessa.importing.dictionary.util.FuzzyKeyMatcher.Match;
+import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FuzzyKeyMatcherTest {
+
+  private static final String TEST_FILE = "src/test/resources/en_surface_forms_small.tsv";
+  private static final String FIELD = "key";
+
+  private final DictionaryEntrySimilarity similarity = new DictionaryEntrySimilarity();
+  private final List<String> keys = new ArrayList<>();
+  private RAMDirectory directory;
+  private IndexReader reader;
+
+  @Before
+  public void init() throws IOException {
+    directory = new RAMDirectory();
+    IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_46,
+        new SimpleAnalyzer(Version.LUCENE_46));
+    config.setSimilarity(similarity);
+    try (IndexWriter writer = new IndexWriter(directory, config);
+        TsvFileHandler handler = new TsvFileHandler(TEST_FILE)) {
+      for (Entry<String, String> entry; (entry = handler.nextEntry()) != null; ) {
+        Document doc = new Document();
+        doc.add(new TextField(FIELD, entry.getKey(), Store.YES));
+        writer.addDocument(doc);
+        keys.add(entry.getKey());
+      }
+    }
+    reader = DirectoryReader.open(directory);
+  }
+
+  @After
+  public void end() throws IOException {
+    reader.close();
+    directory.close();
+  }
+
+  private Set<Integer> queryDocs(String nGram) throws IOException {
+    BooleanQuery query = new BooleanQuery();
+    for (String word : nGram.split(" ")) {
+      Query wordQuery;
+      if (word.length() < 4) {
+        wordQuery = new TermQuery(new Term(FIELD, word));
+      } else {
+        wordQuery = new FuzzyQuery(new Term(FIELD, word), 1);
+      }
+      query.add(wordQuery, Occur.MUST);
+    }
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setSimilarity(similarity);
+    Set<Integer> docs = new HashSet<>();
+    for (ScoreDoc hit : searcher.search(query, reader.maxDoc()).scoreDocs) {
+      docs.add(hit.doc);
+    }
+    return docs;
+  }
+
+  private Set<Integer> matcherDocs(String nGram) throws IOException {
+    Set<Integer> docs = new HashSet<>();
+    FuzzyKeyMatcher matcher = new FuzzyKeyMatcher(1, 4, similarity);
+    for (Match match : matcher.match(reader, FIELD, nGram, reader.maxDoc())) {
+      docs.add(match.getDoc());
+    }
+    return docs;
+  }
+
+  @Test
+  public void testMatch_SameAsFuzzyQuery() throws IOException {
+    String[] nGrams = {"bill gates", "bill gatse", "birthplace", "brithplace", "wife",
+        "barack obama", "obama", "of the", "doesnotexist", "city"};
+    for (String nGram : nGrams) {
+      Assert.assertThat(nGram, matcherDocs(nGram), equalTo(queryDocs(nGram)));
+    }
+  }
+
+  @Test
+  public void testMatch_KeysSameAsFuzzyQuery() throws IOException {
+    // every word of the keys (and a misspelled version of it) is looked up
+    Set<String> nGrams = new HashSet<>();
+    for (String key : keys.subList(0, Math.min(200, keys.size()))) {
+      nGrams.add(key);
+      if (key.length() > 5) {
+        nGrams.add(key.substring(0, 2) + key.charAt(3) + key.charAt(2) + key.substring(4));
+      }
+    }
+    for (String nGram : nGrams) {
+      if (!nGram.matches("[a-z ]+")) {
+        // the analyzer splits the keys at all non-letters, the n-grams only at spaces
+        continue;
+      }
+      Assert.assertThat(nGram, matcherDocs(nGram), equalTo(queryDocs(nGram)));
+    }
+  }
+
+  @Test
+  public void testMatch_ExactMatchFirst() throws IOException {
+    FuzzyKeyMatcher matcher = new FuzzyKeyMatcher(1, 4, similarity);
+    List<Match> matches = matcher.match(reader, FIELD, "birthplace", 10);
+    Assert.assertThat(matches.isEmpty(), equalTo(false));
+    Assert.assertThat(matches.get(0).getEdits(), equalTo(0));
+    Assert.assertThat(reader.document(matches.get(0).getDoc()).get(FIELD), equalTo("birthplace"));
+  }
+
+  @Test
+  public void testMatch_MisspelledWordHasEdits() throws IOException {
+    FuzzyKeyMatcher matcher = new FuzzyKeyMatcher(1, 4, similarity);
+    List<Match> matches = matcher.match(reader, FIELD, "bill gatse", 10);
+    Assert.assertThat(matches.isEmpty(), equalTo(false));
+    Assert.assertThat(matches.get(0).getEdits(), equalTo(1));
+    Assert.assertThat(reader.document(matches.get(0).getDoc()).get(FIELD).toLowerCase(),
+        startsWith("bill gates"));
+  }
+}
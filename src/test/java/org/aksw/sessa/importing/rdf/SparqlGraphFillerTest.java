@@ -1,6 +1,22 @@
 package org.aksw.sessa.importing.rdf;
 
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.query.QueryException;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -23,4 +39,191 @@ public class SparqlGraphFillerTest {
     boolean contains = resultSet.contains("http://dbpedia.org/ontology/birthPlace");
     Assert.assertTrue(contains);
   }
+
+  @Test
+  public void testFindMissingTripleElements_sameAsSinglePairs() {
+    String bg = "http://dbpedia.org/resource/Bill_Gates";
+    String seattle = "http://dbpedia.org/resource/Seattle";
+    String birthPlace = "http://dbpedia.org/ontology/birthPlace";
+
+    SparqlGraphFiller sgf = new SparqlGraphFiller();
+    Map<Entry<String, String>, Set<String>> results = sgf.findMissingTripleElements(
+        Arrays.asList(new SimpleEntry<>(seattle, bg), new SimpleEntry<>(bg, birthPlace)));
+
+    Assert.assertEquals(sgf.findMissingTripleElement(seattle, bg),
+        results.get(SparqlGraphFiller.toPairKey(bg, seattle)));
+    Assert.assertEquals(sgf.findMissingTripleElement(bg, birthPlace),
+        results.get(SparqlGraphFiller.toPairKey(birthPlace, bg)));
+  }
+
+  @Test
+  public void testFindMissingTripleElements_queriesRunConcurrently() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    SparqlGraphFiller sgf = new SparqlGraphFiller(new SleepingSparqlQuery(500), 1, executor,
+        10000);
+    List<Entry<String, String>> pairs = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      pairs.add(new SimpleEntry<>("http://example.org/a" + i, "http://example.org/b" + i));
+    }
+
+    long start = System.currentTimeMillis();
+    Map<Entry<String, String>, Set<String>> results = sgf.findMissingTripleElements(pairs);
+    long duration = System.currentTimeMillis() - start;
+    executor.shutdownNow();
+
+    Assert.assertEquals(4, results.size());
+    Assert.assertEquals(Collections.singleton("http://example.org/o"),
+        results.get(SparqlGraphFiller.toPairKey("http://example.org/a2", "http://example.org/b2")));
+    Assert.assertTrue("Queries were not executed concurrently.", duration < 4 * 500);
+  }
+
+  @Test
+  public void testFindMissingTripleElements_deadlineReached() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    SparqlGraphFiller sgf = new SparqlGraphFiller(new SleepingSparqlQuery(5000), 1, executor,
+        10000);
+    List<Entry<String, String>> pairs = Arrays.asList(
+        new SimpleEntry<>("http://example.org/a", "http://example.org/b"),
+        new SimpleEntry<>("http://example.org/c", "http://example.org/d"));
+
+    long start = System.currentTimeMillis();
+    Map<Entry<String, String>, Set<String>> results =
+        sgf.findMissingTripleElements(pairs, start + 200);
+    long duration = System.currentTimeMillis() - start;
+    executor.shutdownNow();
+
+    Assert.assertEquals(2, results.size());
+    Assert.assertTrue(results.get(
+        SparqlGraphFiller.toPairKey("http://example.org/a", "http://example.org/b")).isEmpty());
+    Assert.assertTrue("Deadline was not respected.", duration < 5000);
+  }
+
+  @Test
+  public void testFindMissingTripleElements_timedOutQueriesAreInterrupted() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    SparqlGraphFiller sgf = new SparqlGraphFiller(new SleepingSparqlQuery(5000), 1, executor,
+        200);
+    List<Entry<String, String>> pairs = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      pairs.add(new SimpleEntry<>("http://example.org/a" + i, "http://example.org/b" + i));
+    }
+
+    long start = System.currentTimeMillis();
+    Map<Entry<String, String>, Set<String>> results = sgf.findMissingTripleElements(pairs);
+    long duration = System.currentTimeMillis() - start;
+    // only finishes in time if the executor is not blocked by the abandoned queries anymore
+    Future<?> next = executor.submit(() -> {
+    });
+    next.get(1000, TimeUnit.MILLISECONDS);
+    executor.shutdownNow();
+
+    Assert.assertEquals(3, results.size());
+    Assert.assertTrue("Timeout was not shared by the queries.", duration < 1000);
+  }
+
+  @Test
+  public void testFindMissingTripleElements_batchLimitedPerPair() {
+    String hub = "http://example.org/Seattle";
+    String birthPlace = "http://example.org/birthPlace";
+    String spouse = "http://example.org/spouse";
+    String person = "http://example.org/person";
+    Model model = ModelFactory.createDefaultModel();
+    for (int i = 0; i < 150; i++) {
+      model.add(model.createResource("http://example.org/p" + i),
+          model.createProperty(birthPlace), model.createResource(hub));
+    }
+    model.add(model.createResource(person), model.createProperty(spouse),
+        model.createResource("http://example.org/other"));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    SparqlGraphFiller sgf = new SparqlGraphFiller(new ModelTripleSource(model), 20, executor,
+        10000);
+
+    Map<Entry<String, String>, Set<String>> results = sgf.findMissingTripleElements(
+        Arrays.asList(new SimpleEntry<>(birthPlace, hub), new SimpleEntry<>(person, spouse)));
+    executor.shutdownNow();
+
+    Assert.assertEquals(100, results.get(SparqlGraphFiller.toPairKey(hub, birthPlace)).size());
+    Assert.assertEquals(sgf.findMissingTripleElement(person, spouse),
+        results.get(SparqlGraphFiller.toPairKey(person, spouse)));
+    Assert.assertEquals(Collections.singleton("http://example.org/other"),
+        results.get(SparqlGraphFiller.toPairKey(person, spouse)));
+  }
+
+  @Test
+  public void testFindMissingTripleElements_failedBatchResolvedOneByOne() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    SparqlGraphFiller sgf = new SparqlGraphFiller(new SleepingSparqlQuery(0) {
+      @Override
+      public List<List<String>> executeRowQuery(String queryString) {
+        throw new QueryException("Service unavailable");
+      }
+    }, 20, executor, 10000);
+    List<Entry<String, String>> pairs = Arrays.asList(
+        new SimpleEntry<>("http://example.org/a", "http://example.org/b"),
+        new SimpleEntry<>("http://example.org/c", "http://example.org/d"));
+
+    Map<Entry<String, String>, Set<String>> results = sgf.findMissingTripleElements(pairs);
+    executor.shutdownNow();
+
+    Assert.assertEquals(2, results.size());
+    for (Set<String> found : results.values()) {
+      Assert.assertEquals(Collections.singleton("http://example.org/o"), found);
+    }
+  }
+
+  /**
+   * Triple source that answers the queries with the given in-memory model.
+   */
+  private static class ModelTripleSource implements TripleSourceInterface {
+
+    private final Model model;
+
+    ModelTripleSource(Model model) {
+      this.model = model;
+    }
+
+    @Override
+    public Set<String> executeQuery(String queryString) {
+      try (QueryExecution qe = QueryExecutionFactory.create(queryString, model)) {
+        return SparqlQueryService.toValueSet(qe.execSelect());
+      }
+    }
+
+    @Override
+    public List<List<String>> executeRowQuery(String queryString) {
+      try (QueryExecution qe = QueryExecutionFactory.create(queryString, model)) {
+        return SparqlQueryService.toRows(qe.execSelect());
+      }
+    }
+
+    @Override
+    public boolean askQuery(String queryString) {
+      try (QueryExecution qe = QueryExecutionFactory.create(queryString, model)) {
+        return qe.execAsk();
+      }
+    }
+  }
+
+  /**
+   * Query interface that answers every query with the same element after the given delay.
+   */
+  private static class SleepingSparqlQuery extends DbpediaSparqlQuery {
+
+    private final long delay;
+
+    SleepingSparqlQuery(long delay) {
+      super(null);
+      this.delay = delay;
+    }
+
+    @Override
+    public Set<String> executeQuery(String queryString) {
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return Collections.singleton("http://example.org/o");
+    }
+  }
 }
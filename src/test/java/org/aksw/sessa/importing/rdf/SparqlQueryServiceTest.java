@@ -0,0 +1,91 @@
+package org.aksw.sessa.importing.rdf;
+
+import static org.hamcrest.core.Is.is;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.jena.query.QueryException;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SparqlQueryServiceTest {
+
+  private final String QUERY = "SELECT ?o WHERE { <http://a> <http://b> ?o. }";
+  private HttpServer server;
+  private AtomicInteger requests;
+
+  @Before
+  public void init() throws IOException {
+    requests = new AtomicInteger();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/unavailable", exchange -> {
+      requests.incrementAndGet();
+      exchange.sendResponseHeaders(503, -1);
+      exchange.close();
+    });
+    server.createContext("/bad_request", exchange -> {
+      requests.incrementAndGet();
+      exchange.sendResponseHeaders(400, -1);
+      exchange.close();
+    });
+    server.start();
+  }
+
+  @After
+  public void end() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testIsTransient() {
+    Assert.assertThat(SparqlQueryService.isTransient(new QueryExceptionHTTP(503)), is(true));
+    Assert.assertThat(SparqlQueryService.isTransient(new QueryExceptionHTTP(408)), is(true));
+    Assert.assertThat(SparqlQueryService.isTransient(
+        new RuntimeException(new QueryExceptionHTTP(new SocketTimeoutException()))), is(true));
+    Assert.assertThat(SparqlQueryService.isTransient(new QueryExceptionHTTP(400)), is(false));
+    Assert.assertThat(SparqlQueryService.isTransient(new QueryParseException("", 1, 1)),
+        is(false));
+  }
+
+  @Test
+  public void testExecuteSelectRowsOrFail_ServerErrorIsRetried() {
+    try (SparqlQueryService service = createService("/unavailable")) {
+      service.executeSelectRowsOrFail(QUERY);
+      Assert.fail("Failure of the query was not propagated.");
+    } catch (QueryException expected) {
+      Assert.assertThat(SparqlQueryService.isTransient(expected), is(true));
+    }
+    Assert.assertThat(requests.get(), is(3));
+  }
+
+  @Test
+  public void testExecuteSelectRowsOrFail_ClientErrorIsNotRetried() {
+    try (SparqlQueryService service = createService("/bad_request")) {
+      service.executeSelectRowsOrFail(QUERY);
+      Assert.fail("Failure of the query was not propagated.");
+    } catch (QueryException expected) {
+      // the query is malformed for the endpoint
+    }
+    Assert.assertThat(requests.get(), is(1));
+  }
+
+  @Test(expected = QueryParseException.class)
+  public void testExecuteSelectRowsOrFail_ParseErrorIsNotRetried() {
+    try (SparqlQueryService service = createService("/unavailable")) {
+      service.executeSelectRowsOrFail("SELECT ?o WHERE { ?s ?p ?o");
+    }
+  }
+
+  private SparqlQueryService createService(String path) {
+    String endpoint = "http://localhost:" + server.getAddress().getPort() + path;
+    return new SparqlQueryService(endpoint, null, 2, 1000L, 1000L, 2, 10L, 900L, 60L * 1000L,
+        1000L, null);
+  }
+}
@@ -0,0 +1,101 @@
+package org.aksw.sessa.importing.rdf;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.core.Is.is;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SparqlResultCacheTest {
+
+  private final String QUERY = "SELECT ?o WHERE { <http://a> <http://b> ?o. }";
+  private SparqlResultCache cache;
+  private AtomicInteger calls;
+
+  @Before
+  public void init() {
+    cache = new SparqlResultCache(60L * 1000L, 1000L);
+    calls = new AtomicInteger();
+  }
+
+  private Set<String> load() {
+    calls.incrementAndGet();
+    return Collections.singleton("http://c");
+  }
+
+  @Test
+  public void testGetSelectResult_SecondCallIsHit() throws Exception {
+    cache.getSelectResult(QUERY, this::load);
+    Set<String> result = cache.getSelectResult(QUERY, this::load);
+    Assert.assertThat(result, equalTo(Collections.singleton("http://c")));
+    Assert.assertThat(calls.get(), is(1));
+    Assert.assertThat(cache.getStats().hitCount(), is(1L));
+    Assert.assertThat(cache.getStats().missCount(), is(1L));
+  }
+
+  @Test
+  public void testGetSelectResult_WhitespaceIsNormalized() throws Exception {
+    cache.getSelectResult(QUERY, this::load);
+    cache.getSelectResult("  SELECT ?o\n WHERE {\t<http://a> <http://b> ?o. } ", this::load);
+    Assert.assertThat(calls.get(), is(1));
+  }
+
+  @Test
+  public void testNormalize_KeepsWhitespaceInLiterals() {
+    String query = " SELECT ?s\n WHERE {  ?s ?p \"Bill  Gates\" ;\t?q 'a \\'  b' ;  "
+        + "?r \"\"\"x \"  y\"\"\" } ";
+    Assert.assertThat(SparqlResultCache.normalize(query), equalTo(
+        "SELECT ?s WHERE { ?s ?p \"Bill  Gates\" ; ?q 'a \\'  b' ; ?r \"\"\"x \"  y\"\"\" }"));
+  }
+
+  @Test
+  public void testGetSelectResult_LiteralsWithDifferentWhitespaceAreNotShared() throws Exception {
+    cache.getSelectResult("SELECT ?s WHERE { ?s ?p \"Bill Gates\" }", this::load);
+    cache.getSelectResult("SELECT ?s WHERE { ?s ?p \"Bill  Gates\" }", this::load);
+    Assert.assertThat(calls.get(), is(2));
+  }
+
+  @Test
+  public void testGetSelectResult_FailuresAreNotCached() throws Exception {
+    try {
+      cache.getSelectResult(QUERY, () -> {
+        throw new IOException("endpoint not reachable");
+      });
+      Assert.fail("Exception of the loader was not propagated.");
+    } catch (ExecutionException e) {
+      Assert.assertThat(cache.size(), is(0L));
+    }
+    cache.getSelectResult(QUERY, this::load);
+    Assert.assertThat(calls.get(), is(1));
+  }
+
+  @Test
+  public void testGetSelectResult_UncheckedFailuresAreNotCached() throws Exception {
+    try {
+      cache.getSelectResult(QUERY, () -> {
+        throw new QueryExceptionHTTP(503, "Service Unavailable");
+      });
+      Assert.fail("Exception of the loader was not propagated.");
+    } catch (ExecutionException e) {
+      Assert.assertThat(e.getCause() instanceof QueryExceptionHTTP, is(true));
+      Assert.assertThat(cache.size(), is(0L));
+    }
+    cache.getSelectResult(QUERY, this::load);
+    Assert.assertThat(calls.get(), is(1));
+  }
+
+  @Test
+  public void testGetSelectResult_EvictsIfTooHeavy() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      cache.getSelectResult(QUERY + i, this::load);
+    }
+    Assert.assertThat(cache.getStats().evictionCount() > 0, is(true));
+  }
+}
@@ -0,0 +1,79 @@
+package org.aksw.sessa.importing.rdf;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.core.Is.is;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TdbTripleSourceTest {
+
+  private static final String BILL_GATES = "http://dbpedia.org/resource/Bill_Gates";
+  private static final String SEATTLE = "http://dbpedia.org/resource/Seattle";
+  private static final String MELINDA_GATES = "http://dbpedia.org/resource/Melinda_Gates";
+  private static final String BIRTH_PLACE = "http://dbpedia.org/ontology/birthPlace";
+  private static final String SPOUSE = "http://dbpedia.org/ontology/spouse";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+  private TdbTripleSource source;
+
+  @Before
+  public void init() {
+    source = new TdbTripleSource(folder.getRoot().getAbsolutePath(),
+        "src/test/resources/triple_source_sample.nt");
+  }
+
+  @After
+  public void close() {
+    source.close();
+  }
+
+  @Test
+  public void testAskQuery_ContainedTriple() {
+    Assert.assertThat(source.askQuery(BILL_GATES, BIRTH_PLACE, SEATTLE), is(true));
+    Assert.assertThat(source.askQuery(SEATTLE, BIRTH_PLACE, BILL_GATES), is(false));
+  }
+
+  @Test
+  public void testFindMissingTripleElement_BothOrders() {
+    SparqlGraphFiller filler = new SparqlGraphFiller(source);
+    Assert.assertThat(filler.findMissingTripleElement(SEATTLE, BILL_GATES),
+        equalTo(Collections.singleton(BIRTH_PLACE)));
+    Assert.assertThat(filler.findMissingTripleElement(BIRTH_PLACE, BILL_GATES),
+        equalTo(Collections.singleton(SEATTLE)));
+  }
+
+  @Test
+  public void testFindMissingTripleElements_SameAsSinglePairs() {
+    SparqlGraphFiller filler = new SparqlGraphFiller(source, 20);
+    Map<Entry<String, String>, Set<String>> results = filler.findMissingTripleElements(
+        Arrays.asList(new SimpleEntry<>(SEATTLE, BILL_GATES),
+            new SimpleEntry<>(BILL_GATES, SPOUSE),
+            new SimpleEntry<>(MELINDA_GATES, BIRTH_PLACE)));
+    Assert.assertThat(results.size(), is(3));
+    Assert.assertThat(results.get(SparqlGraphFiller.toPairKey(BILL_GATES, SEATTLE)),
+        equalTo(filler.findMissingTripleElement(BILL_GATES, SEATTLE)));
+    Assert.assertThat(results.get(SparqlGraphFiller.toPairKey(BILL_GATES, SPOUSE)),
+        equalTo(Collections.singleton(MELINDA_GATES)));
+    Assert.assertThat(results.get(SparqlGraphFiller.toPairKey(MELINDA_GATES, BIRTH_PLACE)),
+        equalTo(Collections.singleton("http://dbpedia.org/resource/Dallas")));
+  }
+
+  @Test
+  public void testReopen_KeepsTriples() {
+    source.close();
+    source = new TdbTripleSource(folder.getRoot().getAbsolutePath());
+    Assert.assertThat(source.askQuery(BILL_GATES, SPOUSE, MELINDA_GATES), is(true));
+  }
+}
@@ -0,0 +1,157 @@
+package org.aksw.sessa.importing.rdf.compact;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.core.Is.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompactTripleIndexTest {
+
+  private static final String BILL_GATES = "http://dbpedia.org/resource/Bill_Gates";
+  private static final String SEATTLE = "http://dbpedia.org/resource/Seattle";
+  private static final String MELINDA_GATES = "http://dbpedia.org/resource/Melinda_Gates";
+  private static final String BIRTH_PLACE = "http://dbpedia.org/ontology/birthPlace";
+  private static final String SPOUSE = "http://dbpedia.org/ontology/spouse";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+  private CompactTripleIndex index;
+
+  @Before
+  public void init() throws IOException {
+    index = build("src/test/resources/triple_source_sample.nt");
+  }
+
+  @After
+  public void close() {
+    index.close();
+  }
+
+  private CompactTripleIndex build(String location) throws IOException {
+    File output = folder.newFile();
+    new CompactTripleIndexBuilder()
+        .build(Collections.singletonList(location), output.toPath());
+    return new CompactTripleIndex(output.getPath());
+  }
+
+  @Test
+  public void testSize_NumberOfTriples() {
+    Assert.assertThat(index.size(), is(4L));
+  }
+
+  @Test
+  public void testGetId_RoundTrip() {
+    int id = index.getId(SEATTLE);
+    Assert.assertThat(index.getTerm(id), equalTo(SEATTLE));
+    Assert.assertThat(index.getId("http://dbpedia.org/resource/Unknown"), is(-1));
+  }
+
+  @Test
+  public void testContains() {
+    Assert.assertThat(index.contains(BILL_GATES, BIRTH_PLACE, SEATTLE), is(true));
+    Assert.assertThat(index.contains(SEATTLE, BIRTH_PLACE, BILL_GATES), is(false));
+  }
+
+  @Test
+  public void testFindMissingTripleElement_AllPositions() {
+    Assert.assertThat(index.findMissingTripleElement(SEATTLE, BILL_GATES),
+        equalTo(Collections.singleton(BIRTH_PLACE)));
+    Assert.assertThat(index.findMissingTripleElement(BILL_GATES, BIRTH_PLACE),
+        equalTo(Collections.singleton(SEATTLE)));
+    Assert.assertThat(index.findMissingTripleElement(SPOUSE, MELINDA_GATES),
+        equalTo(Collections.singleton(BILL_GATES)));
+    Assert.assertThat(index.findMissingTripleElement(SEATTLE, MELINDA_GATES).isEmpty(), is(true));
+  }
+
+  @Test
+  public void testFindMissingTripleElement_SameAsNaiveSearch() throws IOException {
+    // enough terms and triples to need several samples of the bitmaps
+    Random random = new Random(42);
+    List<String[]> triples = new ArrayList<>();
+    File file = folder.newFile("random.nt");
+    try (PrintWriter writer = new PrintWriter(file)) {
+      for (int i = 0; i < 5000; i++) {
+        String[] triple = {"http://example.org/r" + random.nextInt(1500),
+            "http://example.org/p" + random.nextInt(20),
+            "http://example.org/r" + random.nextInt(1500)};
+        triples.add(triple);
+        writer.printf("<%s> <%s> <%s> .%n", triple[0], triple[1], triple[2]);
+      }
+    }
+    try (CompactTripleIndex randomIndex = build(file.getPath())) {
+      for (int i = 0; i < 200; i++) {
+        String[] triple = triples.get(random.nextInt(triples.size()));
+        int first = random.nextInt(3);
+        int second = (first + 1 + random.nextInt(2)) % 3;
+        String uri1 = triple[first];
+        String uri2 = triple[second];
+        Assert.assertThat(randomIndex.findMissingTripleElement(uri1, uri2),
+            equalTo(findNaive(triples, uri1, uri2)));
+      }
+    }
+  }
+
+  @Test
+  public void testBuild_SpillingSortSameAsInMemory() throws IOException {
+    // a buffer of 1 MB is too small for the terms of these triples, so the sort has to merge
+    Random random = new Random(42);
+    File file = folder.newFile("spill.nt");
+    try (PrintWriter writer = new PrintWriter(file)) {
+      for (int i = 0; i < 30000; i++) {
+        writer.printf("<http://example.org/resource/r%d> <http://example.org/property/p%d> "
+                + "\"literal %d\"@en .%n", random.nextInt(20000), random.nextInt(50),
+            random.nextInt(20000));
+      }
+    }
+    File output = folder.newFile();
+    new CompactTripleIndexBuilder()
+        .build(Collections.singletonList(file.getPath()), output.toPath());
+    File tempDirectory = folder.newFolder();
+    File spilledOutput = folder.newFile();
+    new CompactTripleIndexBuilder(tempDirectory, 1)
+        .build(Collections.singletonList(file.getPath()), spilledOutput.toPath());
+
+    Assert.assertThat(Files.readAllBytes(spilledOutput.toPath()),
+        equalTo(Files.readAllBytes(output.toPath())));
+    Assert.assertThat(tempDirectory.list().length, is(0));
+  }
+
+  @Test(expected = IOException.class)
+  public void testBuild_TermTooLong() throws IOException {
+    File file = folder.newFile("long.nt");
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.printf("<%s> <%s> \"%s\" .%n", BILL_GATES, SPOUSE,
+          String.join("", Collections.nCopies(40000, "a")));
+    }
+    build(file.getPath());
+  }
+
+  private Set<String> findNaive(List<String[]> triples, String uri1, String uri2) {
+    Set<String> found = new HashSet<>();
+    for (String[] triple : triples) {
+      for (int i = 0; i < 3; i++) {
+        for (int j = 0; j < 3; j++) {
+          if (i != j && triple[i].equals(uri1) && triple[j].equals(uri2)) {
+            found.add(triple[3 - i - j]);
+          }
+        }
+      }
+    }
+    return found;
+  }
+}